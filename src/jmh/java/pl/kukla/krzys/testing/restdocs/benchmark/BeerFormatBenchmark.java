@@ -0,0 +1,101 @@
+package pl.kukla.krzys.testing.restdocs.benchmark;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import pl.kukla.krzys.testing.restdocs.web.mapper.BeerMapper;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerDto;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerPagedList;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//the same payloads as BeerJsonBenchmark written and read in every format the API negotiates
+//JMH does not measure size, so bytes on the wire of single beer and of page are printed once per format in setup
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BeerFormatBenchmark {
+
+    @Param({"json", "cbor", "smile"})
+    private String format;
+
+    private ObjectWriter beerWriter;
+    private ObjectReader beerReader;
+    private ObjectWriter pageWriter;
+    private ObjectReader pageReader;
+
+    private BeerDto beerDto;
+    private BeerPagedList page;
+    private byte[] beerBytes;
+    private byte[] pageBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().factory(jsonFactory()).build();
+        beerWriter = objectMapper.writerFor(BeerDto.class);
+        beerReader = objectMapper.readerFor(BeerDto.class);
+        pageWriter = objectMapper.writerFor(BeerPagedList.class);
+        pageReader = objectMapper.readerFor(BeerJsonBenchmark.PagePayload.class);
+
+        BeerMapper beerMapper = BenchmarkData.beerMapper();
+        beerDto = beerMapper.BeerToBeerDto(BenchmarkData.beer(1));
+        page = BenchmarkData.page(beerMapper);
+        beerBytes = beerWriter.writeValueAsBytes(beerDto);
+        pageBytes = pageWriter.writeValueAsBytes(page);
+        System.out.printf("%n%s: beer %d bytes, page of %d beers %d bytes%n",
+            format, beerBytes.length, BenchmarkData.PAGE_SIZE, pageBytes.length);
+    }
+
+    private JsonFactory jsonFactory() {
+        switch (format) {
+            case "cbor":
+                return new CBORFactory();
+            case "smile":
+                return new SmileFactory();
+            default:
+                return new JsonFactory();
+        }
+    }
+
+    @Benchmark
+    public byte[] writeBeer() throws IOException {
+        return beerWriter.writeValueAsBytes(beerDto);
+    }
+
+    @Benchmark
+    public BeerDto readBeer() throws IOException {
+        return beerReader.readValue(beerBytes);
+    }
+
+    @Benchmark
+    public byte[] writePage() throws IOException {
+        return pageWriter.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public BeerJsonBenchmark.PagePayload readPage() throws IOException {
+        return pageReader.readValue(pageBytes);
+    }
+}
@@ -0,0 +1,144 @@
+package pl.kukla.krzys.testing.restdocs.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+import pl.kukla.krzys.testing.restdocs.domain.TimeOrderedUuidGenerator;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//inserts 'rows' beers into empty file based H2 table with the same primary key and (created_date, id) index as Beer
+//VARCHAR_RANDOM is the former mapping, BINARY_RANDOM shows gain of storage alone, BINARY_TIME_ORDERED is current one
+//score is time of whole insert; after every iteration two sizes of database file are printed - as written, which shows
+// how many index pages were rewritten by inserts (H2 store is append only), and after compaction, which is size of data
+//plain JDBC is used, so Hibernate cost (the same for all mappings) does not hide the difference
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BeerIdBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+
+    public enum IdMapping {
+        VARCHAR_RANDOM("varchar(36)"),
+        BINARY_RANDOM("binary(16)"),
+        BINARY_TIME_ORDERED("binary(16)");
+
+        private final String columnType;
+
+        IdMapping(String columnType) {
+            this.columnType = columnType;
+        }
+    }
+
+    @Param
+    private IdMapping idMapping;
+
+    @Param("1000000")
+    private int rows;
+
+    private Path directory;
+    private Connection connection;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("beer-id-benchmark");
+        connection = DriverManager.getConnection("jdbc:h2:" + directory.resolve("beer"));
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create table beer (id " + idMapping.columnType + " not null, version bigint, "
+                + "created_date timestamp, last_modified_date timestamp, beer_name varchar(255), beer_style varchar(255), "
+                + "upc bigint, price decimal(19,2), min_on_hand integer, quantity_to_brew integer, primary key (id))");
+            statement.execute("create index ix_beer_created_date_id on beer (created_date, id)");
+        }
+        connection.commit();
+    }
+
+    @Benchmark
+    public void insert() throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement("insert into beer (id, version, created_date, "
+            + "last_modified_date, beer_name, beer_style, upc, price) values (?, 0, ?, ?, ?, 'IPA', ?, ?)")) {
+            for (int i = 0; i < rows; i++) {
+                Timestamp now = new Timestamp(System.currentTimeMillis());
+                insert.setObject(1, id());
+                insert.setTimestamp(2, now);
+                insert.setTimestamp(3, now);
+                insert.setString(4, "Beer " + i);
+                insert.setLong(5, i);
+                insert.setBigDecimal(6, BigDecimal.valueOf(1299, 2));
+                insert.addBatch();
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    insert.executeBatch();
+                    connection.commit();
+                }
+            }
+            insert.executeBatch();
+            connection.commit();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws Exception {
+        Path file = directory.resolve("beer.mv.db");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("checkpoint sync");
+            long written = Files.size(file);
+            statement.execute("shutdown compact");
+            System.out.printf("%n%s: database file %.1f MB as written, %.1f MB compacted%n", idMapping,
+                megabytes(written), megabytes(Files.size(file)));
+        }
+        connection.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    private Object id() {
+        switch (idMapping) {
+            case VARCHAR_RANDOM:
+                return UUID.randomUUID().toString();
+            case BINARY_RANDOM:
+                return bytes(UUID.randomUUID());
+            default:
+                return bytes(TimeOrderedUuidGenerator.nextUuid());
+        }
+    }
+
+    private static double megabytes(long bytes) {
+        return bytes / 1024.0 / 1024.0;
+    }
+
+    //the same byte order as Hibernate 'uuid-binary' type
+    private static byte[] bytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+            .putLong(uuid.getMostSignificantBits())
+            .putLong(uuid.getLeastSignificantBits())
+            .array();
+    }
+}
@@ -0,0 +1,95 @@
+package pl.kukla.krzys.testing.restdocs.benchmark;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.Data;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import pl.kukla.krzys.testing.restdocs.web.mapper.BeerMapper;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerDto;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerPagedList;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//JSON write and read of single beer and of page of beers, ObjectMapper is configured the same way as Spring Boot does it
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BeerJsonBenchmark {
+
+    private ObjectWriter beerWriter;
+    private ObjectReader beerReader;
+    private ObjectWriter pageWriter;
+    private ObjectReader pageReader;
+
+    private BeerDto beerDto;
+    private BeerPagedList page;
+    private byte[] beerJson;
+    private byte[] pageJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        beerWriter = objectMapper.writerFor(BeerDto.class);
+        beerReader = objectMapper.readerFor(BeerDto.class);
+        pageWriter = objectMapper.writerFor(BeerPagedList.class);
+        pageReader = objectMapper.readerFor(PagePayload.class);
+
+        BeerMapper beerMapper = BenchmarkData.beerMapper();
+        beerDto = beerMapper.BeerToBeerDto(BenchmarkData.beer(1));
+        page = BenchmarkData.page(beerMapper);
+        beerJson = beerWriter.writeValueAsBytes(beerDto);
+        pageJson = pageWriter.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] writeBeer() throws IOException {
+        return beerWriter.writeValueAsBytes(beerDto);
+    }
+
+    @Benchmark
+    public BeerDto readBeer() throws IOException {
+        return beerReader.readValue(beerJson);
+    }
+
+    @Benchmark
+    public byte[] writePage() throws IOException {
+        return pageWriter.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public PagePayload readPage() throws IOException {
+        return pageReader.readValue(pageJson);
+    }
+
+    //BeerPagedList can not be read back, so client side view of the page is used
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class PagePayload {
+
+        private List<BeerDto> content;
+        private Long totalElements;
+        private Integer totalPages;
+        private int number;
+        private int size;
+    }
+}
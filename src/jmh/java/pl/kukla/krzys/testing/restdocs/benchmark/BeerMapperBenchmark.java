@@ -0,0 +1,51 @@
+package pl.kukla.krzys.testing.restdocs.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.kukla.krzys.testing.restdocs.domain.Beer;
+import pl.kukla.krzys.testing.restdocs.web.mapper.BeerMapper;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerDto;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//cost of single MapStruct mapping in both directions, dates conversion included
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BeerMapperBenchmark {
+
+    private BeerMapper beerMapper;
+    private Beer beer;
+    private BeerDto beerDto;
+
+    @Setup
+    public void setUp() {
+        beerMapper = BenchmarkData.beerMapper();
+        beer = BenchmarkData.beer(1);
+        beerDto = beerMapper.BeerToBeerDto(beer);
+    }
+
+    @Benchmark
+    public BeerDto beerToBeerDto() {
+        return beerMapper.BeerToBeerDto(beer);
+    }
+
+    @Benchmark
+    public Beer beerDtoToBeer() {
+        return beerMapper.BeerDtoToBeer(beerDto);
+    }
+}
@@ -0,0 +1,109 @@
+package pl.kukla.krzys.testing.restdocs.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.kukla.krzys.testing.restdocs.repository.BeerNameHandler;
+import pl.kukla.krzys.testing.restdocs.repository.BeerRepository;
+import pl.kukla.krzys.testing.restdocs.services.BeerChangeLog;
+import pl.kukla.krzys.testing.restdocs.services.BeerNameIndex;
+import pl.kukla.krzys.testing.restdocs.web.mapper.DateMapper;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerSearchResult.BeerSuggestion;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerStyleEnum;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//typeahead lookup in BeerNameIndex of 'names' beers named like synthetic beers of BeerLoader ("Hoppy Cat 123")
+//short prefixes match a large part of the catalog, 'hoppy c' a narrow range, style filter skips 9 of 10 matches
+//memory of the index is printed by setup - bytes of its arrays (gauge) and growth of used heap after GC
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@State(Scope.Benchmark)
+public class BeerNameIndexBenchmark {
+
+    private static final String[] ADJECTIVES = {"Hoppy", "Golden", "Dark", "Hazy", "Smoked", "Wild", "Sour", "Imperial",
+        "Crisp", "Velvet", "Rusty", "Midnight"};
+    private static final String[] NOUNS = {"Cat", "Bob", "Harbor", "Owl", "River", "Anchor", "Fox", "Mountain", "Lantern",
+        "Meadow", "Rocket", "Barrel"};
+    private static final BeerStyleEnum[] STYLES = BeerStyleEnum.values();
+
+    @Param("1000000")
+    private int names;
+
+    @Param({"h", "ho", "hoppy c", "12345"})
+    private String prefix;
+
+    private BeerNameIndex beerNameIndex;
+
+    @Setup
+    public void setUp() throws InterruptedException {
+        //plain proxy instead of mock - Mockito keeps the last invocation (and so the builder of the index) reachable
+        BeerRepository beerRepository = (BeerRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[]{BeerRepository.class}, (proxy, method, args) -> {
+                BeerNameHandler handler = (BeerNameHandler) args[0];
+                for (int i = 0; i < names; i++) {
+                    handler.accept(UUID.randomUUID(), 0, ADJECTIVES[i % ADJECTIVES.length] + " "
+                        + NOUNS[i / ADJECTIVES.length % NOUNS.length] + " " + i, STYLES[i % STYLES.length].name());
+                }
+                return null;
+            });
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        beerNameIndex = new BeerNameIndex(beerRepository, new BeerChangeLog(new DateMapper(), 16), 10000);
+        beerNameIndex.bindTo(meterRegistry);
+        beerNameIndex.rebuild();
+        while (meterRegistry.get("beer.search.index.beers").gauge().value() < names) {
+            Thread.sleep(10);
+        }
+        long buildMillis = (System.nanoTime() - start) / 1_000_000;
+        long heapAfter = usedHeap();
+
+        double arrays = meterRegistry.get("beer.search.index.memory").gauge().value();
+        System.out.printf("%nindex of %d names built in %d ms: arrays %.1f MB (%.1f B/name), heap growth %.1f MB (%.1f B/name)%n",
+            names, buildMillis, arrays / 1e6, arrays / names, (heapAfter - heapBefore) / 1e6, (double) (heapAfter - heapBefore) / names);
+    }
+
+    @TearDown
+    public void tearDown() {
+        beerNameIndex.destroy();
+    }
+
+    @Benchmark
+    public List<BeerSuggestion> search() {
+        return beerNameIndex.search(prefix, null, 10);
+    }
+
+    @Benchmark
+    public List<BeerSuggestion> searchWithStyle() {
+        return beerNameIndex.search(prefix, BeerStyleEnum.STOUT, 10);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,67 @@
+package pl.kukla.krzys.testing.restdocs.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import pl.kukla.krzys.testing.restdocs.Application;
+import pl.kukla.krzys.testing.restdocs.repository.BeerRepository;
+import pl.kukla.krzys.testing.restdocs.web.mapper.BeerMapper;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerDto;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//cache miss of getBeerById - beer read from H2 of whole application context and mapped to BeerDto
+//'entity' is the former path (managed Beer entity), 'projection' reads BeerView with BeerDto columns only
+//use with '-prof gc' to compare allocation per read
+//whole Spring and Hibernate stack is on the path, so it needs long warmup before results are stable
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BeerReadBenchmark {
+
+    private ConfigurableApplicationContext context;
+    private BeerRepository beerRepository;
+    private BeerMapper beerMapper;
+    private UUID beerId;
+
+    @Setup
+    public void setUp() {
+        context = SpringApplication.run(Application.class, "--spring.main.web-application-type=none",
+            "--logging.level.root=warn");
+        beerRepository = context.getBean(BeerRepository.class);
+        beerMapper = context.getBean(BeerMapper.class);
+        beerId = beerRepository.findAll().iterator().next().getId();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public BeerDto entity() {
+        return beerMapper.BeerToBeerDto(beerRepository.findById(beerId).get());
+    }
+
+    @Benchmark
+    public BeerDto projection() {
+        return beerMapper.BeerViewToBeerDto(beerRepository.findViewById(beerId).get());
+    }
+}
@@ -0,0 +1,60 @@
+package pl.kukla.krzys.testing.restdocs.benchmark;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import pl.kukla.krzys.testing.restdocs.domain.Beer;
+import pl.kukla.krzys.testing.restdocs.web.mapper.BeerMapper;
+import pl.kukla.krzys.testing.restdocs.web.mapper.BeerMapperImpl;
+import pl.kukla.krzys.testing.restdocs.web.mapper.DateMapper;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerDto;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerPagedList;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//realistic beers shared by benchmarks - every field is filled, so no mapping branch is skipped
+final class BenchmarkData {
+
+    static final int PAGE_SIZE = 25;
+
+    private BenchmarkData() {
+    }
+
+    //MapStruct generates mapper as Spring component with injected DateMapper, here we wire it by hand
+    static BeerMapper beerMapper() {
+        BeerMapper beerMapper = new BeerMapperImpl();
+        ReflectionTestUtils.setField(beerMapper, "dateMapper", new DateMapper());
+        return beerMapper;
+    }
+
+    static Beer beer(int i) {
+        Timestamp created = Timestamp.valueOf("2020-01-15 10:15:30.123456789");
+        return Beer.builder()
+            .id(UUID.randomUUID())
+            .version((long) i)
+            .createdDate(created)
+            .lastModifiedDate(new Timestamp(created.getTime() + i * 1000L))
+            .beerName("Mango Bobs " + i)
+            .beerStyle("IPA")
+            .upc(337010000000L + i)
+            .price(new BigDecimal("12.95"))
+            .minOnHand(12)
+            .quantityToBrew(200)
+            .build();
+    }
+
+    static BeerPagedList page(BeerMapper beerMapper) {
+        List<BeerDto> content = IntStream.range(0, PAGE_SIZE)
+            .mapToObj(BenchmarkData::beer)
+            .map(beerMapper::BeerToBeerDto)
+            .collect(Collectors.toList());
+        return new BeerPagedList(content, PageRequest.of(0, PAGE_SIZE), 1000);
+    }
+}
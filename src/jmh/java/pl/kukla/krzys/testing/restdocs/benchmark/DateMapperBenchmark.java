@@ -0,0 +1,51 @@
+package pl.kukla.krzys.testing.restdocs.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.kukla.krzys.testing.restdocs.web.mapper.DateMapper;
+
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//Timestamp <-> OffsetDateTime conversion is done twice for every mapped beer (createdDate and lastModifiedDate)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DateMapperBenchmark {
+
+    private DateMapper dateMapper;
+    private Timestamp timestamp;
+    private OffsetDateTime offsetDateTime;
+
+    @Setup
+    public void setUp() {
+        dateMapper = new DateMapper();
+        timestamp = Timestamp.valueOf("2020-01-15 10:15:30.123456789");
+        offsetDateTime = dateMapper.asOffsetDateTime(timestamp);
+    }
+
+    @Benchmark
+    public OffsetDateTime asOffsetDateTime() {
+        return dateMapper.asOffsetDateTime(timestamp);
+    }
+
+    @Benchmark
+    public Timestamp asTimestamp() {
+        return dateMapper.asTimestamp(offsetDateTime);
+    }
+}
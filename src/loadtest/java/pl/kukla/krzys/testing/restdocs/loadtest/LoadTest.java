@@ -0,0 +1,239 @@
+package pl.kukla.krzys.testing.restdocs.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//open model load test of the REST API - application is started in its own JVM with embedded H2 seeded by BeerLoader,
+// then workers send requests of configured mix at fixed total rate
+//coordinated omission: each request has intended start time on the fixed schedule and its latency is measured from it,
+// so when application stalls, requests which should have been sent meanwhile are counted with the time they waited
+// (time from actual send is reported separately as service time)
+//results go to JSON file (see LoadTestReport), process exits with 1 when error rate or regression against baseline
+// is over the limit, so the build fails
+public class LoadTest {
+
+    private static final String APPLICATION_CLASS = "pl.kukla.krzys.testing.restdocs.Application";
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(5);
+
+    private final LoadTestConfig config;
+    private final HttpClient client;
+    private final Target target;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+
+    LoadTest(LoadTestConfig config, HttpClient client, Target target) {
+        this.config = config;
+        this.client = client;
+        this.target = target;
+        this.operations = config.mix.keySet().toArray(new Operation[0]);
+        this.cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += config.mix.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.parse(args);
+        int port = freePort();
+        String baseUri = "http://localhost:" + port;
+        HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+        Process application = startApplication(config, port);
+        List<String> failures;
+        try {
+            awaitReady(client, baseUri, application, config.dataset);
+            Target target = Target.load(client, baseUri);
+            System.out.printf("Application on port %d has %d beers, running %s%n", port, target.size(), config.describe());
+
+            Map<Operation, Recording> recordings = new LoadTest(config, client, target).run();
+
+            LoadTestReport report = new LoadTestReport(config, recordings);
+            report.write(config.result);
+            System.out.print(report.summary());
+            System.out.println("Result written to " + config.result.toAbsolutePath());
+            failures = report.failures(config.baseline);
+        } finally {
+            application.destroy();
+            application.waitFor(30, TimeUnit.SECONDS);
+        }
+
+        if (!failures.isEmpty()) {
+            failures.forEach(failure -> System.out.println("FAILED: " + failure));
+            System.exit(1);
+        }
+    }
+
+    Map<Operation, Recording> run() throws Exception {
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        long measureFrom = start + config.warmup.toNanos();
+        long end = measureFrom + config.duration.toNanos();
+        //every worker keeps its own share of the rate, schedules of workers are shifted against each other
+        long interval = TimeUnit.SECONDS.toNanos(1) * config.concurrency / config.rate;
+
+        ExecutorService workers = Executors.newFixedThreadPool(config.concurrency);
+        try {
+            List<Future<Map<Operation, Recording>>> results = new ArrayList<>();
+            for (int i = 0; i < config.concurrency; i++) {
+                long first = start + interval * i / config.concurrency;
+                results.add(workers.submit(worker(first, interval, measureFrom, end)));
+            }
+
+            Map<Operation, Recording> merged = new EnumMap<>(Operation.class);
+            for (Future<Map<Operation, Recording>> result : results) {
+                result.get().forEach((operation, recording) -> merged.computeIfAbsent(operation, op -> new Recording()).add(recording));
+            }
+            return merged;
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private Callable<Map<Operation, Recording>> worker(long first, long interval, long measureFrom, long end) {
+        return () -> {
+            Map<Operation, Recording> recordings = new EnumMap<>(Operation.class);
+            for (long intended = first; intended < end; intended += interval) {
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                Operation operation = nextOperation();
+                long sent = System.nanoTime();
+                boolean ok = send(operation);
+                long done = System.nanoTime();
+
+                if (intended >= measureFrom) {
+                    recordings.computeIfAbsent(operation, op -> new Recording()).record(done - intended, done - sent, ok);
+                }
+            }
+            return recordings;
+        };
+    }
+
+    private boolean send(Operation operation) {
+        try {
+            return client.send(operation.request(target), HttpResponse.BodyHandlers.discarding()).statusCode()
+                == operation.expectedStatus;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private Operation nextOperation() {
+        int weight = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < operations.length; i++) {
+            if (weight < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    //the same classpath as load test, which contains application classes and its dependencies
+    private static Process startApplication(LoadTestConfig config, int port) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(arguments(config.appJvmArgs));
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(APPLICATION_CLASS);
+        command.add("--server.port=" + port);
+        command.add("--beer.loader.synthetic-beers=" + config.dataset);
+        command.add("--beer.loader.async=false");
+        command.addAll(arguments(config.appArgs));
+
+        File log = config.result.resolveSibling("loadtest-application.log").toFile();
+        log.getParentFile().mkdirs();
+        return new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(log)
+            .start();
+    }
+
+    //web server accepts requests already before BeerLoader (CommandLineRunner) has run, so application is ready
+    // when total number of beers reaches the dataset size
+    private static void awaitReady(HttpClient client, String baseUri, Process application, int dataset) throws Exception {
+        HttpRequest count = HttpRequest.newBuilder(URI.create(baseUri + "/api/v1/beer?pageSize=1&withTotal=true")).build();
+        ObjectMapper objectMapper = new ObjectMapper();
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!application.isAlive()) {
+                throw new IllegalStateException("Application exited with " + application.exitValue());
+            }
+            try {
+                HttpResponse<String> response = client.send(count, HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() == 200 && objectMapper.readTree(response.body()).get("totalElements").asLong() >= dataset) {
+                    return;
+                }
+            } catch (IOException e) {
+                //not listening yet
+            }
+            Thread.sleep(500);
+        }
+        throw new IllegalStateException("Application did not start in " + STARTUP_TIMEOUT);
+    }
+
+    private static List<String> arguments(String arguments) {
+        return arguments.isBlank() ? List.of() : Arrays.asList(arguments.trim().split("\\s+"));
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    //histograms of one worker (or merged ones of all workers) for one operation, values in microseconds
+    static class Recording {
+
+        final Histogram latency = new Histogram(3);
+        final Histogram serviceTime = new Histogram(3);
+        long errors;
+
+        void record(long latencyNanos, long serviceTimeNanos, boolean ok) {
+            latency.recordValue(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+            serviceTime.recordValue(TimeUnit.NANOSECONDS.toMicros(serviceTimeNanos));
+            if (!ok) {
+                errors++;
+            }
+        }
+
+        void add(Recording other) {
+            latency.add(other.latency);
+            serviceTime.add(other.serviceTime);
+            errors += other.errors;
+        }
+    }
+}
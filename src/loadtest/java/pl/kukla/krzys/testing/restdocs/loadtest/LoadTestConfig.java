@@ -0,0 +1,102 @@
+package pl.kukla.krzys.testing.restdocs.loadtest;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//workload profile given as 'name=value' program arguments (see 'loadtest' profile in pom.xml), e.g.
+//  mix=get:80,post:10,put:10 rate=500 concurrency=16 dataset=10000 warmup=10s duration=30s
+//every value has a default, so the same profile can be rerun and results compared between commits
+public class LoadTestConfig {
+
+    private final Map<String, String> values;
+
+    final Map<Operation, Integer> mix;
+    //requests per second of all workers together - requests are sent on fixed schedule, not as fast as possible
+    final int rate;
+    final int concurrency;
+    final int dataset;
+    final Duration warmup;
+    final Duration duration;
+    //extra arguments of started application, e.g. '--beer.async.enabled=true --beer.payload-cache.enabled=true'
+    final String appArgs;
+    final String appJvmArgs;
+    final Path result;
+    final Path baseline;
+    //allowed relative worsening of p99 and throughput against baseline, 0.1 = 10 %
+    final double maxRegression;
+    final double maxErrorRate;
+
+    private LoadTestConfig(Map<String, String> values) {
+        this.values = values;
+        this.mix = mix(value("mix", "get:80,post:10,put:10"));
+        this.rate = Integer.parseInt(value("rate", "200"));
+        this.concurrency = Integer.parseInt(value("concurrency", "16"));
+        this.dataset = Integer.parseInt(value("dataset", "10000"));
+        this.warmup = duration(value("warmup", "10s"));
+        this.duration = duration(value("duration", "30s"));
+        this.appArgs = value("app-args", "");
+        this.appJvmArgs = value("app-jvm-args", "-Xmx512m");
+        this.result = Paths.get(value("result", "target/loadtest-result.json"));
+        String baseline = value("baseline", "");
+        this.baseline = baseline.isBlank() ? null : Paths.get(baseline);
+        this.maxRegression = Double.parseDouble(value("max-regression", "0.1"));
+        this.maxErrorRate = Double.parseDouble(value("max-error-rate", "0.001"));
+    }
+
+    public static LoadTestConfig parse(String... args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 1) {
+                throw new IllegalArgumentException("Argument '" + arg + "' is not in 'name=value' form");
+            }
+            values.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        return new LoadTestConfig(values);
+    }
+
+    //workload part of configuration is written into result, so it is clear what the numbers were measured with
+    Map<String, Object> describe() {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("mix", mix);
+        description.put("rate", rate);
+        description.put("concurrency", concurrency);
+        description.put("dataset", dataset);
+        description.put("warmupSeconds", warmup.getSeconds());
+        description.put("durationSeconds", duration.getSeconds());
+        description.put("appArgs", appArgs);
+        return description;
+    }
+
+    //Maven passes unset properties as empty strings
+    private String value(String name, String defaultValue) {
+        String value = values.get(name);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    private static Map<Operation, Integer> mix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] weight = part.trim().split(":");
+            if (weight.length != 2) {
+                throw new IllegalArgumentException("Mix '" + mix + "' is not in 'operation:weight,...' form");
+            }
+            weights.put(Operation.valueOf(weight[0].trim().toUpperCase()), Integer.parseInt(weight[1].trim()));
+        }
+        return weights;
+    }
+
+    private static Duration duration(String duration) {
+        return duration.endsWith("s")
+            ? Duration.ofSeconds(Long.parseLong(duration.substring(0, duration.length() - 1)))
+            : Duration.parse(duration);
+    }
+}
@@ -0,0 +1,137 @@
+package pl.kukla.krzys.testing.restdocs.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//result of one load test run as JSON:
+//  {"config": {...}, "operations": {"GET": {"requests", "errors", "throughput", "latencyMs": {"p50", "p90", "p99",
+//   "p999", "max"}, "serviceTimeMs": {...}, "histogram": "<compressed HdrHistogram of latency, base64>"}, ...}}
+//latencyMs is corrected for coordinated omission, throughput is in requests per second of measured part of the run
+//previous result can be given as baseline - p99 latency and throughput of every operation are compared against it
+class LoadTestReport {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+    private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private final LoadTestConfig config;
+    private final ObjectNode result;
+
+    LoadTestReport(LoadTestConfig config, Map<Operation, LoadTest.Recording> recordings) {
+        this.config = config;
+        this.result = objectMapper.createObjectNode();
+        result.set("config", objectMapper.valueToTree(config.describe()));
+        ObjectNode operations = result.putObject("operations");
+        recordings.forEach((operation, recording) -> {
+            ObjectNode node = operations.putObject(operation.name());
+            long requests = recording.latency.getTotalCount();
+            node.put("requests", requests);
+            node.put("errors", recording.errors);
+            node.put("throughput", round(requests / (double) config.duration.toMillis() * 1000));
+            node.set("latencyMs", percentiles(recording.latency));
+            node.set("serviceTimeMs", percentiles(recording.serviceTime));
+            node.put("histogram", encode(recording.latency));
+        });
+    }
+
+    void write(Path path) throws IOException {
+        path.toAbsolutePath().getParent().toFile().mkdirs();
+        objectMapper.writeValue(path.toFile(), result);
+    }
+
+    String summary() {
+        StringBuilder summary = new StringBuilder(String.format("%-6s %10s %8s %10s %10s %10s %10s %10s %12s%n",
+            "op", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms", "svc p99 ms"));
+        result.get("operations").fields().forEachRemaining(operation -> {
+            JsonNode node = operation.getValue();
+            JsonNode latency = node.get("latencyMs");
+            summary.append(String.format("%-6s %10d %8d %10.1f %10.2f %10.2f %10.2f %10.2f %12.2f%n", operation.getKey(),
+                node.get("requests").asLong(), node.get("errors").asLong(), node.get("throughput").asDouble(),
+                latency.get("p50").asDouble(), latency.get("p99").asDouble(), latency.get("p999").asDouble(),
+                latency.get("max").asDouble(), node.get("serviceTimeMs").get("p99").asDouble()));
+        });
+        return summary.toString();
+    }
+
+    //empty list means the run passed
+    List<String> failures(Path baseline) throws IOException {
+        List<String> failures = new ArrayList<>();
+        JsonNode operations = result.get("operations");
+        operations.fields().forEachRemaining(operation -> {
+            JsonNode node = operation.getValue();
+            double errorRate = node.get("errors").asDouble() / Math.max(1, node.get("requests").asLong());
+            if (errorRate > config.maxErrorRate) {
+                failures.add(String.format("%s error rate %.4f is over %.4f", operation.getKey(), errorRate, config.maxErrorRate));
+            }
+        });
+        if (baseline == null) {
+            return failures;
+        }
+
+        JsonNode previous = objectMapper.readTree(baseline.toFile());
+        //compared as text - numbers read from file are not of the same node types as the written ones
+        if (!previous.get("config").toString().equals(result.get("config").toString())) {
+            System.out.println("WARNING: baseline was measured with other workload " + previous.get("config"));
+        }
+        for (Iterator<Map.Entry<String, JsonNode>> it = previous.get("operations").fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> before = it.next();
+            JsonNode now = operations.get(before.getKey());
+            if (now == null) {
+                continue;
+            }
+            double p99Before = before.getValue().get("latencyMs").get("p99").asDouble();
+            double p99Now = now.get("latencyMs").get("p99").asDouble();
+            if (p99Now > p99Before * (1 + config.maxRegression)) {
+                failures.add(String.format("%s p99 latency %.2f ms is more than %.0f %% over baseline %.2f ms",
+                    before.getKey(), p99Now, config.maxRegression * 100, p99Before));
+            }
+            double throughputBefore = before.getValue().get("throughput").asDouble();
+            double throughputNow = now.get("throughput").asDouble();
+            if (throughputNow < throughputBefore * (1 - config.maxRegression)) {
+                failures.add(String.format("%s throughput %.1f req/s is more than %.0f %% under baseline %.1f req/s",
+                    before.getKey(), throughputNow, config.maxRegression * 100, throughputBefore));
+            }
+        }
+        return failures;
+    }
+
+    private ObjectNode percentiles(Histogram histogram) {
+        ObjectNode node = objectMapper.createObjectNode();
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            node.put(PERCENTILE_NAMES[i], millis(histogram.getValueAtPercentile(PERCENTILES[i])));
+        }
+        node.put("max", millis(histogram.getMaxValue()));
+        return node;
+    }
+
+    //whole distribution is kept, so results can be merged or plotted later (HistogramLogProcessor, HdrHistogram plotter)
+    private static String encode(Histogram histogram) {
+        ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+        return Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length));
+    }
+
+    private static double millis(long micros) {
+        return round(micros / 1000.0);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+}
@@ -0,0 +1,57 @@
+package pl.kukla.krzys.testing.restdocs.loadtest;
+
+import java.net.http.HttpRequest;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//requests of the workload mix - GET and PUT address random beers of seeded dataset, POST creates beers with new upc
+public enum Operation {
+
+    GET(200) {
+        @Override
+        HttpRequest request(Target target) {
+            return HttpRequest.newBuilder(target.beerUri(target.randomBeer().id))
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+        }
+    },
+
+    POST(201) {
+        @Override
+        HttpRequest request(Target target) {
+            return HttpRequest.newBuilder(target.beersUri())
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(beerJson("Load Test Lager", "LAGER", target.nextUpc())))
+                .build();
+        }
+    },
+
+    //beer keeps its upc, which is unique, and gets new price, no If-Match - last writer wins
+    PUT(204) {
+        @Override
+        HttpRequest request(Target target) {
+            Target.Beer beer = target.randomBeer();
+            return HttpRequest.newBuilder(target.beerUri(beer.id))
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString(beerJson("Load Test Ale", "ALE", beer.upc)))
+                .build();
+        }
+    };
+
+    final int expectedStatus;
+
+    Operation(int expectedStatus) {
+        this.expectedStatus = expectedStatus;
+    }
+
+    abstract HttpRequest request(Target target);
+
+    private static String beerJson(String beerName, String beerStyle, long upc) {
+        int cents = ThreadLocalRandom.current().nextInt(500, 2000);
+        return "{\"beerName\":\"" + beerName + "\",\"beerStyle\":\"" + beerStyle + "\",\"upc\":" + upc
+            + ",\"price\":" + cents / 100 + "." + (cents % 100 < 10 ? "0" : "") + cents % 100 + "}";
+    }
+}
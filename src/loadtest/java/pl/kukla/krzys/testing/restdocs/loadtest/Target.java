@@ -0,0 +1,95 @@
+package pl.kukla.krzys.testing.restdocs.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//application under test and beers it holds - ids and upcs are read once through NDJSON export before load starts
+class Target {
+
+    //upcs of beers created by POST, far from upcs of seeded beers - application is started with empty database every run
+    private static final long NEW_UPC_BASE = 990000000000L;
+
+    private final String baseUri;
+    private final List<Beer> beers;
+    private final AtomicLong upc = new AtomicLong(NEW_UPC_BASE);
+
+    private Target(String baseUri, List<Beer> beers) {
+        this.baseUri = baseUri;
+        this.beers = beers;
+    }
+
+    static Target load(HttpClient client, String baseUri) throws IOException, InterruptedException {
+        HttpRequest export = HttpRequest.newBuilder(URI.create(baseUri + "/api/v1/beer/export"))
+            .header("Accept", "application/x-ndjson")
+            .build();
+        HttpResponse<InputStream> response = client.send(export, HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Export of beers failed with status " + response.statusCode());
+        }
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<Beer> beers = new ArrayList<>();
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                if (!line.isBlank()) {
+                    JsonNode beer = objectMapper.readTree(line);
+                    beers.add(new Beer(UUID.fromString(beer.get("id").asText()), beer.get("upc").asLong()));
+                }
+            }
+        }
+        if (beers.isEmpty()) {
+            throw new IllegalStateException("Application does not have any beers");
+        }
+        return new Target(baseUri, beers);
+    }
+
+    int size() {
+        return beers.size();
+    }
+
+    Beer randomBeer() {
+        return beers.get(ThreadLocalRandom.current().nextInt(beers.size()));
+    }
+
+    long nextUpc() {
+        return upc.incrementAndGet();
+    }
+
+    URI beersUri() {
+        return URI.create(baseUri + "/api/v1/beer");
+    }
+
+    URI beerUri(UUID beerId) {
+        return URI.create(baseUri + "/api/v1/beer/" + beerId);
+    }
+
+    static class Beer {
+
+        final UUID id;
+        final long upc;
+
+        Beer(UUID id, long upc) {
+            this.id = id;
+            this.upc = upc;
+        }
+    }
+}
@@ -2,12 +2,15 @@ package pl.kukla.krzys.testing.restdocs;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import pl.kukla.krzys.testing.restdocs.bootstrap.StartupTimings;
 
 @SpringBootApplication
 public class Application {
 
 	public static void main(String[] args) {
-		SpringApplication.run(Application.class, args);
+		SpringApplication application = new SpringApplication(Application.class);
+		application.addListeners(new StartupTimings());
+		application.run(args);
 	}
 
 }
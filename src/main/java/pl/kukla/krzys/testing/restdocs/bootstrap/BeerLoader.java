@@ -1,47 +1,169 @@
 package pl.kukla.krzys.testing.restdocs.bootstrap;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import pl.kukla.krzys.testing.restdocs.domain.Beer;
 import pl.kukla.krzys.testing.restdocs.repository.BeerRepository;
+import pl.kukla.krzys.testing.restdocs.services.BeerNameIndex;
+import pl.kukla.krzys.testing.restdocs.services.BeerStatsStore;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerStyleEnum;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Krzysztof Kukla
  */
+//empty database is seeded with two sample beers and beer.loader.synthetic-beers generated ones (none by default)
+//beers are inserted by plain JDBC batches bypassing persistence context, one batch and transaction per
+// beer.loader.chunk-size beers - 100000 beers are seeded about twice as fast as by saveAll in Hibernate batches
+//with beer.loader.async=true seeding runs on its own thread after application is ready, so it is not on startup path
+// - until it is finished API sees partially seeded catalog; failed seeding is logged and counted by
+// beer.loader.seed.failures, chunks committed before the failure stay
+//seeded beers are not in BeerChangeLog, so BeerNameIndex and BeerStatsStore are built again after asynchronous
+// seeding (synchronous one is finished before they are built when application is ready)
+@Slf4j
 @Component
-@RequiredArgsConstructor
 public class BeerLoader implements CommandLineRunner {
 
+    //generated beers have their own upc range, so they never clash with sample beers
+    private static final long SYNTHETIC_UPC_BASE = 337020000000L;
+    private static final String[] ADJECTIVES = {"Hoppy", "Golden", "Dark", "Hazy", "Smoked", "Wild", "Sour", "Imperial",
+        "Crisp", "Velvet", "Rusty", "Midnight"};
+    private static final String[] NOUNS = {"Cat", "Bob", "Harbor", "Owl", "River", "Anchor", "Fox", "Mountain", "Lantern",
+        "Meadow", "Rocket", "Barrel"};
+    private static final BeerStyleEnum[] STYLES = BeerStyleEnum.values();
+
     private final BeerRepository beerRepository;
+    private final BeerNameIndex beerNameIndex;
+    private final BeerStatsStore beerStatsStore;
+    private final TransactionTemplate transactionTemplate;
+    private final Timer seedTimer;
+    private final Counter seedFailures;
+    private final int syntheticBeers;
+    private final int chunkSize;
+    private final boolean async;
+
+    public BeerLoader(BeerRepository beerRepository, BeerNameIndex beerNameIndex, BeerStatsStore beerStatsStore,
+                      PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                      @Value("${beer.loader.synthetic-beers:0}") int syntheticBeers,
+                      @Value("${beer.loader.chunk-size:1000}") int chunkSize,
+                      @Value("${beer.loader.async:false}") boolean async) {
+        this.beerRepository = beerRepository;
+        this.beerNameIndex = beerNameIndex;
+        this.beerStatsStore = beerStatsStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.seedTimer = Timer.builder("beer.loader.seed")
+            .description("Time of seeding empty database with beers")
+            .register(meterRegistry);
+        this.seedFailures = Counter.builder("beer.loader.seed.failures")
+            .description("Asynchronous seedings of empty database which failed")
+            .register(meterRegistry);
+        this.syntheticBeers = syntheticBeers;
+        this.chunkSize = chunkSize;
+        this.async = async;
+    }
 
     @Override
     public void run(String... args) throws Exception {
-        loadBeerObjects();
+        if (!async) {
+            loadBeerObjects();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (async) {
+            Thread loader = new CustomizableThreadFactory("beer-loader-").newThread(() -> {
+                try {
+                    loadBeerObjects();
+                } catch (RuntimeException e) {
+                    seedFailures.increment();
+                    log.error("Seeding of beers failed, catalog is seeded only partially", e);
+                } finally {
+                    //beers seeded so far are in database either way
+                    beerNameIndex.rebuild();
+                    beerStatsStore.rebuild();
+                }
+            });
+            //seeding does not keep stopping application alive
+            loader.setDaemon(true);
+            loader.start();
+        }
     }
 
     private void loadBeerObjects() {
-        if (beerRepository.count() == 0) {
-
-            beerRepository.save(Beer.builder()
-                .beerName("Mango Bobs")
-                .beerStyle("IPA")
-                .quantityToBrew(200)
-                .minOnHand(12)
-                .upc(337010000001L)
-                .price(new BigDecimal("12.95"))
-                .build());
-
-            beerRepository.save(Beer.builder()
-                .beerName("Galaxy Cat")
-                .beerStyle("PALE_ALE")
-                .quantityToBrew(200)
-                .minOnHand(12)
-                .upc(337010000002L)
-                .price(new BigDecimal("11.95"))
-                .build());
+        if (beerRepository.count() != 0) {
+            return;
+        }
+        long start = System.nanoTime();
+
+        List<Beer> beers = new ArrayList<>(Math.min(chunkSize, syntheticBeers + 2));
+        beers.add(Beer.builder()
+            .beerName("Mango Bobs")
+            .beerStyle("IPA")
+            .quantityToBrew(200)
+            .quantityOnHand(200)
+            .minOnHand(12)
+            .upc(337010000001L)
+            .price(new BigDecimal("12.95"))
+            .build());
+
+        beers.add(Beer.builder()
+            .beerName("Galaxy Cat")
+            .beerStyle("PALE_ALE")
+            .quantityToBrew(200)
+            .quantityOnHand(200)
+            .minOnHand(12)
+            .upc(337010000002L)
+            .price(new BigDecimal("11.95"))
+            .build());
+
+        //fixed seed - every run generates the same catalog, so perf test results can be compared
+        Random random = new Random(syntheticBeers);
+        for (int i = 0; i < syntheticBeers; i++) {
+            if (beers.size() == chunkSize) {
+                save(beers);
+                beers = new ArrayList<>(chunkSize);
+            }
+            beers.add(syntheticBeer(i, random));
         }
+        save(beers);
+
+        long elapsed = System.nanoTime() - start;
+        seedTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        log.info("Seeded {} beers in {} ms", syntheticBeers + 2, elapsed / 1_000_000);
+    }
+
+    private void save(List<Beer> beers) {
+        transactionTemplate.executeWithoutResult(status -> beerRepository.insertBeers(beers));
+    }
+
+    //every beer starts with one brewed batch on hand
+    private static Beer syntheticBeer(int i, Random random) {
+        String beerName = ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " " + NOUNS[random.nextInt(NOUNS.length)] + " " + i;
+        int quantityToBrew = 100 + random.nextInt(200);
+        return Beer.builder()
+            .beerName(beerName)
+            .beerStyle(STYLES[i % STYLES.length].name())
+            .quantityToBrew(quantityToBrew)
+            .quantityOnHand(quantityToBrew)
+            .minOnHand(random.nextInt(50))
+            .upc(SYNTHETIC_UPC_BASE + i)
+            .price(BigDecimal.valueOf(500 + random.nextInt(1500), 2))
+            .build();
     }
 }
@@ -0,0 +1,92 @@
+package pl.kukla.krzys.testing.restdocs.bootstrap;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationEnvironmentPreparedEvent;
+import org.springframework.boot.context.event.ApplicationPreparedEvent;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.boot.context.event.ApplicationStartingEvent;
+import org.springframework.boot.web.context.WebServerInitializedEvent;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//duration of each startup phase, measured between SpringApplication events, so cold start regressions can be tracked
+//most of these events are published before any bean exists, so listener is registered on SpringApplication in main
+// and not as a bean; phases are published as application.startup.phase gauges once application is ready
+//  jvm - from JVM start to SpringApplication.run (class loading of main class and of Spring Boot)
+//  environment - property sources and profiles
+//  context.prepare - application context created and configuration classes registered
+//  context.refresh - bean definitions processed and singletons created (lazy ones are skipped,
+//   see spring.main.lazy-initialization)
+//  web.server - embedded Tomcat started
+//  runners - CommandLineRunners, e.g. BeerLoader
+@Slf4j
+public class StartupTimings implements ApplicationListener<ApplicationEvent> {
+
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    private long startedAt;
+    private long lastAt;
+
+    @Override
+    public void onApplicationEvent(ApplicationEvent event) {
+        if (event instanceof ApplicationStartingEvent) {
+            startedAt = System.nanoTime();
+            lastAt = startedAt;
+            phases.put("jvm", TimeUnit.MILLISECONDS.toNanos(ManagementFactory.getRuntimeMXBean().getUptime()));
+        } else if (event instanceof ApplicationEnvironmentPreparedEvent) {
+            phaseEnded("environment");
+        } else if (event instanceof ApplicationPreparedEvent) {
+            phaseEnded("context.prepare");
+        } else if (event instanceof ContextRefreshedEvent) {
+            phaseEnded("context.refresh");
+        } else if (event instanceof WebServerInitializedEvent) {
+            phaseEnded("web.server");
+        } else if (event instanceof ApplicationStartedEvent) {
+            //web server is started as the last step of refresh, so nothing is left between it and this event
+            lastAt = System.nanoTime();
+        } else if (event instanceof ApplicationReadyEvent) {
+            phaseEnded("runners");
+            ready(((ApplicationReadyEvent) event));
+        }
+    }
+
+    //the same phase could end more than once (e.g. refresh of management child context), only the first one counts
+    private void phaseEnded(String phase) {
+        long now = System.nanoTime();
+        if (startedAt != 0 && phases.putIfAbsent(phase, now - lastAt) == null) {
+            lastAt = now;
+        }
+    }
+
+    private void ready(ApplicationReadyEvent event) {
+        if (startedAt == 0) {
+            return;
+        }
+        long total = System.nanoTime() - startedAt;
+        log.info("Started in {} ms ({})", TimeUnit.NANOSECONDS.toMillis(total), phases.entrySet().stream()
+            .map(phase -> phase.getKey() + " " + TimeUnit.NANOSECONDS.toMillis(phase.getValue()) + " ms")
+            .collect(Collectors.joining(", ")));
+
+        event.getApplicationContext().getBeanProvider(MeterRegistry.class).ifAvailable(registry -> {
+            phases.forEach((phase, nanos) -> TimeGauge.builder("application.startup.phase", nanos, TimeUnit.NANOSECONDS, Long::doubleValue)
+                .tag("phase", phase)
+                .description("Duration of application startup phase")
+                .register(registry));
+            TimeGauge.builder("application.startup.time", total, TimeUnit.NANOSECONDS, Long::doubleValue)
+                .description("Time from SpringApplication.run until application is ready")
+                .register(registry);
+        });
+    }
+}
@@ -3,6 +3,7 @@ package pl.kukla.krzys.testing.restdocs.domain;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Type;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import javax.persistence.*;
@@ -19,12 +20,28 @@ import java.util.UUID;
 @AllArgsConstructor
 @Builder
 @Entity
+//(createdDate, id) index serves keyset pagination - next page is a single index seek
+//beerStyle index continues with (createdDate, id), so keyset pages filtered by style are index seeks as well
+//unique upc index backs barcode lookup and upsert of batches matched by upc
+//(lastModifiedDate, id) index serves catch up of change feed - it is maintained by every update of beer
+//database created with baseline schema gets these indexes by 'db/beer-id-to-binary.sql'
+@Table(indexes = {
+    @Index(name = "ix_beer_created_date_id", columnList = "createdDate,id"),
+    @Index(name = "ux_beer_upc", columnList = "upc", unique = true),
+    @Index(name = "ix_beer_beer_name", columnList = "beerName"),
+    @Index(name = "ix_beer_beer_style_created_date_id", columnList = "beerStyle,createdDate,id"),
+    @Index(name = "ix_beer_last_modified_date_id", columnList = "lastModifiedDate,id")
+})
 public class Beer {
 
+    //16 bytes instead of 36 characters keep primary key and every index containing id small
+    //ids are time ordered, so inserts go to the end of primary key index (see TimeOrderedUuidGenerator)
+    //existing varchar ids are converted by 'db/beer-id-to-binary.sql'
     @Id
     @GeneratedValue(generator = "UUID")
-    @GenericGenerator(name = "UUID", strategy = "org.hibernate.id.UUIDGenerator")
-    @Column(length = 36, columnDefinition = "varchar", updatable = false, nullable = false)
+    @GenericGenerator(name = "UUID", strategy = "pl.kukla.krzys.testing.restdocs.domain.TimeOrderedUuidGenerator")
+    @Type(type = "uuid-binary")
+    @Column(length = 16, columnDefinition = "binary(16)", updatable = false, nullable = false)
     private UUID id;
 
     @Version
@@ -40,11 +57,15 @@ public class Beer {
     private String beerName;
     private String beerStyle;
 
-    @Column(unique = true)
     private Long upc;
 
     private BigDecimal price;
 
     private Integer minOnHand;
     private Integer quantityToBrew;
+
+    //stock is owned by BeerInventoryService - it is set when beer is created and then changed only by relative
+    // updates of its write-behind, so Hibernate never writes back the value it has loaded
+    @Column(updatable = false)
+    private Integer quantityOnHand;
 }
\ No newline at end of file
@@ -0,0 +1,44 @@
+package pl.kukla.krzys.testing.restdocs.domain;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+
+import java.io.Serializable;
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//version 7 UUID (RFC 9562) - 48 bits of unix milliseconds, 12 bits of sequence within millisecond and 62 random bits
+//ids generated later are greater, also as bytes, so new rows are appended at the end of primary key index
+// instead of being inserted at random positions, which splits index pages once table does not fit in memory
+//timestamp and sequence are shared by whole JVM and never go back, even when clock does
+public class TimeOrderedUuidGenerator implements IdentifierGenerator {
+
+    private static final long VERSION_7 = 0x7000L;
+    private static final long VARIANT_RFC = 0x8000000000000000L;
+    private static final long RANDOM_BITS = 0x3FFFFFFFFFFFFFFFL;
+    private static final int SEQUENCE_BITS = 12;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    //milliseconds << 12 | sequence of last generated id - when more than 4096 ids are generated in one millisecond
+    // sequence overflows to next millisecond
+    private static final AtomicLong LAST_TICK = new AtomicLong();
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        return nextUuid();
+    }
+
+    public static UUID nextUuid() {
+        long now = System.currentTimeMillis() << SEQUENCE_BITS;
+        long tick = LAST_TICK.updateAndGet(last -> Math.max(now, last + 1));
+
+        long mostSigBits = (tick >>> SEQUENCE_BITS) << 16 | VERSION_7 | (tick & ((1 << SEQUENCE_BITS) - 1));
+        long leastSigBits = RANDOM.nextLong() & RANDOM_BITS | VARIANT_RFC;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+}
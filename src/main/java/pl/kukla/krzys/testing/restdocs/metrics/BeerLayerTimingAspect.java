@@ -0,0 +1,56 @@
+package pl.kukla.krzys.testing.restdocs.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//times every call of BeerRepository and list mapping of BeerMapper, tagged with method name, so time of one request
+// can be split between database, mapping and serialization (see TimedJacksonHttpMessageConverter)
+//for Stream returning repository methods only opening of the stream is measured, not reading of rows
+//mapping of a single row takes about as long as a timer lookup, so per-row mapper methods are not timed
+//one Timer per method is looked up in the registry on first call only - the lookup builds tags and meter id
+@Aspect
+@Component
+public class BeerLayerTimingAspect {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Method, Timer> timers = new ConcurrentHashMap<>();
+
+    //aspects are created before other beans, so MeterRegistry is resolved lazily -
+    // otherwise it would be created before Spring Boot is able to configure it
+    public BeerLayerTimingAspect(@Lazy MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(* pl.kukla.krzys.testing.restdocs.repository.BeerRepository+.*(..))")
+    public Object timeRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time("beer.repository", joinPoint);
+    }
+
+    @Around("execution(java.util.List pl.kukla.krzys.testing.restdocs.web.mapper.BeerMapper+.*(..))")
+    public Object timeMapper(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time("beer.mapper", joinPoint);
+    }
+
+    private Object time(String timerName, ProceedingJoinPoint joinPoint) throws Throwable {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+            sample.stop(timers.computeIfAbsent(method, key -> meterRegistry.timer(timerName, "method", key.getName())));
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package pl.kukla.krzys.testing.restdocs.metrics;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//Hibernate passes every SQL statement it prepares through this inspector - statements are counted for current thread
+// between start() and stop(), so N+1 selects or additional selects done by one request become visible
+//with JDBC batching one batch is counted once, as it is sent to database in one round trip
+@Component
+public class HibernateStatementCounter implements StatementInspector, HibernatePropertiesCustomizer {
+
+    private final ThreadLocal<int[]> counter = new ThreadLocal<>();
+
+    public void start() {
+        counter.set(new int[1]);
+    }
+
+    //returns -1 when counting was not started on this thread
+    public int stop() {
+        int[] count = counter.get();
+        counter.remove();
+        return count == null ? -1 : count[0];
+    }
+
+    @Override
+    public String inspect(String sql) {
+        int[] count = counter.get();
+        if (count != null) {
+            count[0]++;
+        }
+        return sql;
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, this);
+    }
+}
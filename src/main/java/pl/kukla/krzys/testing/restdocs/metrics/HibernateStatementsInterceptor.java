@@ -0,0 +1,56 @@
+package pl.kukla.krzys.testing.restdocs.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//records number of Hibernate statements executed by one request, tagged the same way as http.server.requests
+//async requests (beer.async.enabled=true) run their statements on BeerRequestExecutor threads, so they are not recorded
+//counting is stopped on every path, so container thread does not go on counting statements after the request
+@RequiredArgsConstructor
+public class HibernateStatementsInterceptor implements AsyncHandlerInterceptor {
+
+    private final HibernateStatementCounter hibernateStatementCounter;
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() == DispatcherType.REQUEST) {
+            hibernateStatementCounter.start();
+        }
+        return true;
+    }
+
+    //called instead of afterCompletion when handler has returned Callable or DeferredResult
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        hibernateStatementCounter.stop();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getDispatcherType() != DispatcherType.REQUEST) {
+            return;
+        }
+        int statements = hibernateStatementCounter.stop();
+        if (statements < 0 || request.isAsyncStarted()) {
+            return;
+        }
+        Object uri = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        DistributionSummary.builder("beer.hibernate.statements")
+            .description("Number of SQL statements executed by Hibernate for one request")
+            .tag("method", request.getMethod())
+            .tag("uri", uri == null ? "UNKNOWN" : uri.toString())
+            .register(meterRegistry)
+            .record(statements);
+    }
+}
@@ -0,0 +1,53 @@
+package pl.kukla.krzys.testing.restdocs.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.handler.MappedInterceptor;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//per endpoint latency histograms come from Spring Boot http.server.requests (configured in application.properties),
+// beans here add serialization time and Hibernate statements of every request
+@Configuration
+public class MetricsConfig {
+
+    //replaces JSON converter of Spring Boot, which backs off when such bean exists
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper,
+                                                                                   MeterRegistry meterRegistry) {
+        return new TimedJacksonHttpMessageConverter(objectMapper, meterRegistry);
+    }
+
+    //binary converters replace the ones Spring MVC adds behind JSON, so JSON stays the default for Accept: */*
+    //their ObjectMappers come from the builder of Spring Boot - the same modules and features as JSON one
+    @Bean
+    public MappingJackson2CborHttpMessageConverter mappingJackson2CborHttpMessageConverter(
+        Jackson2ObjectMapperBuilder jackson2ObjectMapperBuilder, MeterRegistry meterRegistry) {
+        return new TimedJacksonHttpMessageConverter.Cbor(jackson2ObjectMapperBuilder.factory(new CBORFactory()).build(),
+            meterRegistry);
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter mappingJackson2SmileHttpMessageConverter(
+        Jackson2ObjectMapperBuilder jackson2ObjectMapperBuilder, MeterRegistry meterRegistry) {
+        return new TimedJacksonHttpMessageConverter.Smile(jackson2ObjectMapperBuilder.factory(new SmileFactory()).build(),
+            meterRegistry);
+    }
+
+    //MappedInterceptor beans are picked up by every handler mapping
+    @Bean
+    public MappedInterceptor hibernateStatementsInterceptor(HibernateStatementCounter hibernateStatementCounter,
+                                                            MeterRegistry meterRegistry) {
+        return new MappedInterceptor(new String[]{"/api/**"},
+            new HibernateStatementsInterceptor(hibernateStatementCounter, meterRegistry));
+    }
+}
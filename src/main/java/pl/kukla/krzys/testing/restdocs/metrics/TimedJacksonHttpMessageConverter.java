@@ -0,0 +1,88 @@
+package pl.kukla.krzys.testing.restdocs.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//the same JSON converter as Spring Boot creates, but time of writing every response body is recorded, tagged with its
+// type and format (CBOR and Smile converters below are timed the same way, so formats can be compared)
+//response is buffered by servlet container, so this is mostly time of serialization, not of network
+public class TimedJacksonHttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    private final MeterRegistry meterRegistry;
+
+    public TimedJacksonHttpMessageConverter(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        super(objectMapper);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+        throws IOException, HttpMessageNotWritableException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            super.writeInternal(object, type, outputMessage);
+        } finally {
+            stop(sample, meterRegistry, object, "json");
+        }
+    }
+
+    private static void stop(Timer.Sample sample, MeterRegistry meterRegistry, Object object, String format) {
+        sample.stop(meterRegistry.timer("beer.serialization", "type", object.getClass().getSimpleName(), "format", format));
+    }
+
+    //replaces CBOR converter of Spring MVC at its place behind JSON, ObjectMapper has to have CBORFactory
+    public static class Cbor extends MappingJackson2CborHttpMessageConverter {
+
+        private final MeterRegistry meterRegistry;
+
+        public Cbor(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+            super(objectMapper);
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            try {
+                super.writeInternal(object, type, outputMessage);
+            } finally {
+                stop(sample, meterRegistry, object, "cbor");
+            }
+        }
+    }
+
+    //replaces Smile converter of Spring MVC at its place behind JSON, ObjectMapper has to have SmileFactory
+    public static class Smile extends MappingJackson2SmileHttpMessageConverter {
+
+        private final MeterRegistry meterRegistry;
+
+        public Smile(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+            super(objectMapper);
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            try {
+                super.writeInternal(object, type, outputMessage);
+            } finally {
+                stop(sample, meterRegistry, object, "smile");
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package pl.kukla.krzys.testing.restdocs.repository;
+
+import java.util.UUID;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//receives columns of one beer read by BeerRepositoryCustom.readBeerNames
+@FunctionalInterface
+public interface BeerNameHandler {
+
+    void accept(UUID id, long version, String beerName, String beerStyle);
+}
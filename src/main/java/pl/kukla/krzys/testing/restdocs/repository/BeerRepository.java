@@ -1,12 +1,81 @@
 package pl.kukla.krzys.testing.restdocs.repository;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.transaction.annotation.Transactional;
 import pl.kukla.krzys.testing.restdocs.domain.Beer;
 
+import javax.persistence.QueryHint;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 /**
  * @author Krzysztof Kukla
  */
-public interface BeerRepository extends PagingAndSortingRepository<Beer, UUID> {
+public interface BeerRepository extends PagingAndSortingRepository<Beer, UUID>, BeerRepositoryCustom {
+
+    int STREAM_FETCH_SIZE = 500;
+
+    String BEER_VIEW = "select new pl.kukla.krzys.testing.restdocs.repository.BeerView(b.id, b.version, b.createdDate, "
+        + "b.lastModifiedDate, b.beerName, b.beerStyle, b.upc, b.price) from Beer b";
+
+    //projections are read in read only transaction - Hibernate does not flush before query
+    @Transactional(readOnly = true)
+    Optional<BeerVersionView> findVersionById(UUID id);
+
+    //BeerDto columns only, used instead of findById wherever beer is only read
+    @Query(BEER_VIEW + " where b.id = ?1")
+    @Transactional(readOnly = true)
+    Optional<BeerView> findViewById(UUID id);
+
+    //many beers by primary key in one statement - callers keep number of ids in a few sizes (see BeerServiceImpl)
+    @Query(BEER_VIEW + " where b.id in ?1")
+    @Transactional(readOnly = true)
+    List<BeerView> findViewsByIdIn(Collection<UUID> ids);
+
+    //served by unique index on upc
+    @Query(BEER_VIEW + " where b.upc = ?1")
+    @Transactional(readOnly = true)
+    Optional<BeerView> findByUpc(Long upc);
+
+    //change feed catch up - beers in order of (lastModifiedDate, id), served by index on these columns
+    @Query(BEER_VIEW + " order by b.lastModifiedDate, b.id")
+    @Transactional(readOnly = true)
+    List<BeerView> findChanges(Pageable pageable);
+
+    //(lastModifiedDate, id) > (?1, ?2) - the first condition alone gives start of index range scan
+    @Query(BEER_VIEW + " where b.lastModifiedDate >= ?1 and (b.lastModifiedDate > ?1 or b.id > ?2)"
+        + " order by b.lastModifiedDate, b.id")
+    @Transactional(readOnly = true)
+    List<BeerView> findChangesAfter(Timestamp lastModifiedDate, UUID id, Pageable pageable);
+
+    //stock columns of one beer, read when its in-memory stock cell is created (see BeerInventoryServiceImpl)
+    @Query("select new pl.kukla.krzys.testing.restdocs.repository.BeerStockView(b.quantityOnHand, b.minOnHand, "
+        + "b.quantityToBrew) from Beer b where b.id = ?1")
+    @Transactional(readOnly = true)
+    Optional<BeerStockView> findStockById(UUID id);
+
+    //full recompute of statistics per style, used only to check the incremental ones (see BeerStatsStore)
+    @Query("select new pl.kukla.krzys.testing.restdocs.repository.BeerStyleStatsView(b.beerStyle, count(b), count(b.price), "
+        + "min(b.price), max(b.price), sum(b.price), sum(b.quantityOnHand)) from Beer b group by b.beerStyle")
+    @Transactional(readOnly = true)
+    List<BeerStyleStatsView> findStyleStats();
+
+    List<Beer> findAllByUpcIn(Collection<Long> upcs);
+
+    //forward only cursor over whole table - rows are fetched from database in portions of fetch size
+    //entities are loaded read only, so Hibernate does not keep snapshots for dirty checking
+    //it has to be consumed inside transaction and closed afterwards
+    @Query("select b from Beer b")
+    @QueryHints({
+        @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "" + BeerRepository.STREAM_FETCH_SIZE),
+        @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true")
+    })
+    Stream<Beer> streamAll();
 }
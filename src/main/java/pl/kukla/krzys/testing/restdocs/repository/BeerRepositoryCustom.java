@@ -0,0 +1,59 @@
+package pl.kukla.krzys.testing.restdocs.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.transaction.annotation.Transactional;
+import pl.kukla.krzys.testing.restdocs.domain.Beer;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//queries with optional filters which can not be expressed as a single derived query method
+//null filter means 'do not filter by this column'
+public interface BeerRepositoryCustom {
+
+    //offset based page without count(*) query - one extra row is read to find out if next page exists
+    Slice<Beer> findBeerSlice(String beerName, String beerStyle, Pageable pageable);
+
+    //keyset (seek) page ordered by createdDate and id - rows are read right after given (createdDate, id) position,
+    // so deep pages cost the same as the first one; null createdDate means first page
+    List<Beer> findBeersAfter(String beerName, String beerStyle, Timestamp createdDate, UUID id, int limit);
+
+    long countBeers(String beerName, String beerStyle);
+
+    //single UPDATE ... WHERE id = ? AND version = ? statement, beer is not loaded before
+    //null values are left unchanged and null expectedVersion matches any version
+    //lastModifiedDate is given by caller, so it knows the new one without reading beer back
+    //returns number of updated rows, so 0 means beer does not exist or has other version
+    int updateBeer(UUID id, Long expectedVersion, Timestamp lastModifiedDate, String beerName, String beerStyle, BigDecimal price,
+                   Long upc);
+
+    //plain JDBC batch of INSERTs for bulk loading - no persistence context, dirty checking or per entity events
+    //id, version and timestamps are assigned here and set on given beers, which stay detached
+    void insertBeers(List<Beer> beers);
+
+    //one JDBC batch of relative UPDATEs (quantity_on_hand + delta) in one transaction - write-behind of stock
+    // counters, it does not touch version nor lastModifiedDate, stock movements are not changes of beer
+    @Transactional
+    void addQuantitiesOnHand(Map<UUID, Integer> deltas);
+
+    //sends pending (batched) statements to database and detaches all entities, so long running bulk work
+    // does not keep every processed beer in persistence context
+    void flushAndClear();
+
+    //id, version, name and style of every beer, row by row as they are read - no entities or objects per row,
+    // used to build in-memory BeerNameIndex
+    void readBeerNames(BeerNameHandler handler);
+
+    //id, version, style, price and stock of every beer, row by row like readBeerNames - used to build BeerStatsStore
+    void readBeerStats(BeerStatsHandler handler);
+
+    //detaches all entities without flushing, used when reading large number of beers
+    void clear();
+}
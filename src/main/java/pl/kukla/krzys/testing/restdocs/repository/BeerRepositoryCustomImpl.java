@@ -0,0 +1,216 @@
+package pl.kukla.krzys.testing.restdocs.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import pl.kukla.krzys.testing.restdocs.domain.Beer;
+import pl.kukla.krzys.testing.restdocs.domain.TimeOrderedUuidGenerator;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//Spring Data finds this implementation by 'Impl' postfix and plugs it into BeerRepository
+public class BeerRepositoryCustomImpl implements BeerRepositoryCustom {
+
+    private static final String INSERT_BEER = "insert into beer (id, version, created_date, last_modified_date, "
+        + "beer_name, beer_style, upc, price, min_on_hand, quantity_to_brew, quantity_on_hand) "
+        + "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String ADD_QUANTITY_ON_HAND = "update beer set quantity_on_hand = coalesce(quantity_on_hand, 0) + ? "
+        + "where id = ?";
+    private static final String SELECT_BEER_NAMES = "select id, version, beer_name, beer_style from beer";
+    private static final String SELECT_BEER_STATS = "select id, version, beer_style, price, quantity_on_hand from beer";
+    private static final int NAMES_FETCH_SIZE = 1000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public Slice<Beer> findBeerSlice(String beerName, String beerStyle, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Beer> query = cb.createQuery(Beer.class);
+        Root<Beer> beer = query.from(Beer.class);
+
+        //id is always added as the last order, otherwise rows with equal sort values could jump between pages
+        Sort sort = pageable.getSort().and(Sort.by("id"));
+        query.where(filters(cb, beer, beerName, beerStyle).toArray(new Predicate[0]))
+            .orderBy(QueryUtils.toOrders(sort, beer, cb));
+
+        List<Beer> beers = entityManager.createQuery(query)
+            .setFirstResult((int) pageable.getOffset())
+            .setMaxResults(pageable.getPageSize() + 1)
+            .getResultList();
+
+        boolean hasNext = beers.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? beers.subList(0, pageable.getPageSize()) : beers, pageable, hasNext);
+    }
+
+    @Override
+    public List<Beer> findBeersAfter(String beerName, String beerStyle, Timestamp createdDate, UUID id, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Beer> query = cb.createQuery(Beer.class);
+        Root<Beer> beer = query.from(Beer.class);
+
+        List<Predicate> predicates = filters(cb, beer, beerName, beerStyle);
+        if (createdDate != null) {
+            //(createdDate, id) > (:createdDate, :id)
+            predicates.add(cb.or(
+                cb.greaterThan(beer.get("createdDate"), createdDate),
+                cb.and(cb.equal(beer.get("createdDate"), createdDate), cb.greaterThan(beer.get("id"), id))));
+        }
+        query.where(predicates.toArray(new Predicate[0]))
+            .orderBy(cb.asc(beer.get("createdDate")), cb.asc(beer.get("id")));
+
+        return entityManager.createQuery(query)
+            .setMaxResults(limit)
+            .getResultList();
+    }
+
+    @Override
+    public long countBeers(String beerName, String beerStyle) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Beer> beer = query.from(Beer.class);
+        query.select(cb.count(beer))
+            .where(filters(cb, beer, beerName, beerStyle).toArray(new Predicate[0]));
+
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    //bulk update bypasses @Version and @UpdateTimestamp, so both columns are set here
+    @Override
+    public int updateBeer(UUID id, Long expectedVersion, Timestamp lastModifiedDate, String beerName, String beerStyle, BigDecimal price,
+                          Long upc) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<Beer> update = cb.createCriteriaUpdate(Beer.class);
+        Root<Beer> beer = update.from(Beer.class);
+
+        setIfPresent(update, beer, "beerName", beerName);
+        setIfPresent(update, beer, "beerStyle", beerStyle);
+        setIfPresent(update, beer, "price", price);
+        setIfPresent(update, beer, "upc", upc);
+        update.set(beer.<Long>get("version"), cb.sum(beer.get("version"), 1L));
+        update.set(beer.<Timestamp>get("lastModifiedDate"), lastModifiedDate);
+
+        Predicate byId = cb.equal(beer.get("id"), id);
+        update.where(expectedVersion == null ? byId : cb.and(byId, cb.equal(beer.get("version"), expectedVersion)));
+
+        return entityManager.createQuery(update).executeUpdate();
+    }
+
+    //JdbcTemplate takes connection of current JPA transaction, so inserts are part of it
+    @Override
+    public void insertBeers(List<Beer> beers) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        jdbcTemplate.batchUpdate(INSERT_BEER, beers, beers.size(), (statement, beer) -> {
+            beer.setId(TimeOrderedUuidGenerator.nextUuid());
+            beer.setVersion(0L);
+            beer.setCreatedDate(now);
+            beer.setLastModifiedDate(now);
+
+            statement.setBytes(1, bytes(beer.getId()));
+            statement.setLong(2, beer.getVersion());
+            statement.setTimestamp(3, now);
+            statement.setTimestamp(4, now);
+            statement.setString(5, beer.getBeerName());
+            statement.setString(6, beer.getBeerStyle());
+            statement.setObject(7, beer.getUpc(), Types.BIGINT);
+            statement.setBigDecimal(8, beer.getPrice());
+            statement.setObject(9, beer.getMinOnHand(), Types.INTEGER);
+            statement.setObject(10, beer.getQuantityToBrew(), Types.INTEGER);
+            statement.setObject(11, beer.getQuantityOnHand(), Types.INTEGER);
+        });
+    }
+
+    @Override
+    public void addQuantitiesOnHand(Map<UUID, Integer> deltas) {
+        jdbcTemplate.batchUpdate(ADD_QUANTITY_ON_HAND, new ArrayList<>(deltas.entrySet()), deltas.size(), (statement, delta) -> {
+            statement.setInt(1, delta.getValue());
+            statement.setBytes(2, bytes(delta.getKey()));
+        });
+    }
+
+    //rows are streamed with fetch size, so whole table is never held by JDBC driver
+    @Override
+    public void readBeerNames(BeerNameHandler handler) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_BEER_NAMES);
+            statement.setFetchSize(NAMES_FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) resultSet -> {
+            ByteBuffer id = ByteBuffer.wrap(resultSet.getBytes(1));
+            handler.accept(new UUID(id.getLong(), id.getLong()), resultSet.getLong(2), resultSet.getString(3),
+                resultSet.getString(4));
+        });
+    }
+
+    @Override
+    public void readBeerStats(BeerStatsHandler handler) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_BEER_STATS);
+            statement.setFetchSize(NAMES_FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) resultSet -> {
+            ByteBuffer id = ByteBuffer.wrap(resultSet.getBytes(1));
+            handler.accept(new UUID(id.getLong(), id.getLong()), resultSet.getLong(2), resultSet.getString(3),
+                resultSet.getBigDecimal(4), resultSet.getObject(5, Integer.class));
+        });
+    }
+
+    @Override
+    public void flushAndClear() {
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Override
+    public void clear() {
+        entityManager.clear();
+    }
+
+    //the same big endian layout as Hibernate 'uuid-binary' type
+    private static byte[] bytes(UUID id) {
+        return ByteBuffer.allocate(16).putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits()).array();
+    }
+
+    private static <T> void setIfPresent(CriteriaUpdate<Beer> update, Root<Beer> beer, String attribute, T value) {
+        if (value != null) {
+            update.set(beer.<T>get(attribute), value);
+        }
+    }
+
+    private List<Predicate> filters(CriteriaBuilder cb, Root<Beer> beer, String beerName, String beerStyle) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (beerName != null) {
+            predicates.add(cb.equal(beer.get("beerName"), beerName));
+        }
+        if (beerStyle != null) {
+            predicates.add(cb.equal(beer.get("beerStyle"), beerStyle));
+        }
+        return predicates;
+    }
+}
@@ -0,0 +1,14 @@
+package pl.kukla.krzys.testing.restdocs.repository;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//receives columns of one beer read by BeerRepositoryCustom.readBeerStats
+@FunctionalInterface
+public interface BeerStatsHandler {
+
+    void accept(UUID id, long version, String beerStyle, BigDecimal price, Integer quantityOnHand);
+}
@@ -0,0 +1,15 @@
+package pl.kukla.krzys.testing.restdocs.repository;
+
+import lombok.Value;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//stock columns of beer, null ones are taken as 0
+@Value
+public class BeerStockView {
+
+    Integer quantityOnHand;
+    Integer minOnHand;
+    Integer quantityToBrew;
+}
@@ -0,0 +1,21 @@
+package pl.kukla.krzys.testing.restdocs.repository;
+
+import lombok.Value;
+
+import java.math.BigDecimal;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//one row of GROUP BY beerStyle over whole table - priced is number of beers with price
+@Value
+public class BeerStyleStatsView {
+
+    String beerStyle;
+    Long count;
+    Long priced;
+    BigDecimal minPrice;
+    BigDecimal maxPrice;
+    BigDecimal sumPrice;
+    Long quantityOnHand;
+}
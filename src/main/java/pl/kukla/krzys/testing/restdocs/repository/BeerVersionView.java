@@ -0,0 +1,17 @@
+package pl.kukla.krzys.testing.restdocs.repository;
+
+import java.sql.Timestamp;
+import java.util.UUID;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//closed projection - Spring Data selects only these three columns instead of hydrating whole Beer entity
+public interface BeerVersionView {
+
+    UUID getId();
+
+    Long getVersion();
+
+    Timestamp getLastModifiedDate();
+}
@@ -0,0 +1,47 @@
+package pl.kukla.krzys.testing.restdocs.repository;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//projection of columns BeerDto is built from, created straight by 'select new' query (see BeerRepository.BEER_VIEW)
+//beer is read without entity, so Hibernate keeps no managed instance nor snapshot for dirty checking
+//it is a class and not interface projection - interface one is backed by proxy and its query is built on every call
+@Value
+public class BeerView {
+
+    UUID id;
+    Long version;
+    Timestamp createdDate;
+    Timestamp lastModifiedDate;
+    String beerName;
+    String beerStyle;
+    Long upc;
+    BigDecimal price;
+
+    //Hibernate finds constructor by types of attributes and it declares timestamp attributes as java.util.Date
+    @Builder
+    public BeerView(UUID id, Long version, Date createdDate, Date lastModifiedDate, String beerName, String beerStyle,
+                    Long upc, BigDecimal price) {
+        this.id = id;
+        this.version = version;
+        this.createdDate = timestamp(createdDate);
+        this.lastModifiedDate = timestamp(lastModifiedDate);
+        this.beerName = beerName;
+        this.beerStyle = beerStyle;
+        this.upc = upc;
+        this.price = price;
+    }
+
+    //JDBC returns Timestamp, so it is converted only when view is built by hand
+    private static Timestamp timestamp(Date date) {
+        return date == null || date instanceof Timestamp ? (Timestamp) date : new Timestamp(date.getTime());
+    }
+}
@@ -0,0 +1,86 @@
+package pl.kukla.krzys.testing.restdocs.services;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//position in change feed encoded as opaque url safe token
+//(epoch, sequence) is position in BeerChangeLog of one application run, (lastModifiedDate, id) is the same position
+// in database, which is used when the log does not hold the sequence anymore or belongs to other run
+//while subscriber is caught up from database ('catchingUp'), sequence is the last one of the log before catch up
+// started - changes committed during catch up are read from the log after it
+//'seen' is the last sequence of the log which subscriber had read before it fell behind - catch up does not send again
+// beers which the log tells it has got already; 0 when nothing is known (e.g. cursor of other run)
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+final class BeerChangeCursor {
+
+    private static final String SEPARATOR = ":";
+    private static final String IN_BUFFER = "b";
+    private static final String CATCHING_UP = "d";
+
+    private final long epoch;
+    private final long sequence;
+    private final boolean catchingUp;
+    private final long seen;
+    //null for the very beginning of the feed
+    private final Timestamp lastModifiedDate;
+    private final UUID id;
+
+    static BeerChangeCursor inBuffer(long epoch, long sequence, Timestamp lastModifiedDate, UUID id) {
+        return new BeerChangeCursor(epoch, sequence, false, sequence, lastModifiedDate, id);
+    }
+
+    static BeerChangeCursor catchingUp(long epoch, long sequence, long seen, Timestamp lastModifiedDate, UUID id) {
+        return new BeerChangeCursor(epoch, sequence, true, seen, lastModifiedDate, id);
+    }
+
+    //empty cursor means the beginning of the feed, so null is returned
+    static BeerChangeCursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(SEPARATOR);
+            if (parts.length != 4 && parts.length != 7 || !IN_BUFFER.equals(parts[2]) && !CATCHING_UP.equals(parts[2])) {
+                throw new IllegalArgumentException(cursor);
+            }
+            Timestamp lastModifiedDate = null;
+            UUID id = null;
+            if (parts.length == 7) {
+                lastModifiedDate = new Timestamp(Long.parseLong(parts[4]));
+                lastModifiedDate.setNanos(Integer.parseInt(parts[5]));
+                id = UUID.fromString(parts[6]);
+            }
+            return new BeerChangeCursor(Long.parseLong(parts[0]), Long.parseLong(parts[1]), CATCHING_UP.equals(parts[2]),
+                Long.parseLong(parts[3]), lastModifiedDate, id);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidPageRequestException("Cursor '" + cursor + "' is not valid");
+        }
+    }
+
+    BeerChangeCursor movedTo(Timestamp lastModifiedDate, UUID id) {
+        return new BeerChangeCursor(epoch, sequence, catchingUp, seen, lastModifiedDate, id);
+    }
+
+    //database has been read up to now, the rest is in the log
+    BeerChangeCursor caughtUp() {
+        return new BeerChangeCursor(epoch, sequence, false, seen, lastModifiedDate, id);
+    }
+
+    String encode() {
+        String raw = epoch + SEPARATOR + sequence + SEPARATOR + (catchingUp ? CATCHING_UP : IN_BUFFER) + SEPARATOR + seen;
+        if (lastModifiedDate != null) {
+            raw += SEPARATOR + lastModifiedDate.getTime() + SEPARATOR + lastModifiedDate.getNanos() + SEPARATOR + id;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
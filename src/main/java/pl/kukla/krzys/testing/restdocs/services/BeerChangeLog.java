@@ -0,0 +1,211 @@
+package pl.kukla.krzys.testing.restdocs.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import pl.kukla.krzys.testing.restdocs.web.mapper.DateMapper;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerChange;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerDto;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//in-memory log of the latest created and updated beers in order in which their transactions were committed
+//ring buffer of 'beer.changes.buffer-size' slots - every change gets next sequence number and overwrites
+// the change which is buffer size older; memory does not depend on number or speed of readers
+//appends are serialized, but they are short; readers do not lock - slot is checked to still hold the sequence
+// which was asked for, otherwise reader has fallen behind and has to catch up from database
+//sequence numbers start again with every application run (and every instance has its own log), so they are valid
+// only together with epoch of the log; beers seeded by BeerLoader are not logged
+//the last logged version of a beer and its sequence are remembered longer than the buffer (for ten times more beers),
+// so catch up from database can skip beers which subscriber has got from the log before it fell behind
+//updated beers can be logged without being read (see appendPatch), so updates do not pay for the feed
+@Component
+public class BeerChangeLog {
+
+    private final DateMapper dateMapper;
+    private final AtomicReferenceArray<Entry> slots;
+    private final long epoch = ThreadLocalRandom.current().nextLong(Long.MAX_VALUE);
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private final Cache<UUID, Appended> appended;
+    private volatile long lastSequence;
+
+    public BeerChangeLog(DateMapper dateMapper, @Value("${beer.changes.buffer-size:10000}") int bufferSize) {
+        this.dateMapper = dateMapper;
+        this.slots = new AtomicReferenceArray<>(bufferSize);
+        this.appended = Caffeine.newBuilder()
+            .maximumSize(10L * bufferSize)
+            .build();
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    //0 when nothing has been appended yet
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    //called after commit; listeners run on calling thread, so they should only hand the work over or do a little of it
+    public void append(Collection<BeerDto> beers) {
+        if (beers.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            long sequence = lastSequence;
+            for (BeerDto beer : beers) {
+                put(++sequence, beer.getId(), beer.getVersion(), dateMapper.asTimestamp(beer.getLastModifiedDate()), beer, null);
+            }
+            //volatile write publishes filled slots to readers
+            lastSequence = sequence;
+        }
+        listeners.forEach(Runnable::run);
+    }
+
+    //update of beer which has not been read - patch has id, version (null when it is not known), lastModifiedDate and
+    // changed fields only; whole beer is loaded when a reader of the feed gets to it, once for all of them
+    public void appendPatch(BeerDto patch) {
+        synchronized (this) {
+            put(lastSequence + 1, patch.getId(), patch.getVersion(), dateMapper.asTimestamp(patch.getLastModifiedDate()), null,
+                patch);
+            lastSequence++;
+        }
+        listeners.forEach(Runnable::run);
+    }
+
+    //at most limit changes right after given sequence, null when some of them have been overwritten already
+    //beers of patches which are not loaded yet are loaded by one call of the loader; beer which is not found is skipped
+    public List<BeerChange> readAfter(long sequence, int limit, Function<Collection<UUID>, Map<UUID, BeerDto>> loader) {
+        List<Entry> entries = entriesAfter(sequence, limit);
+        if (entries == null) {
+            return null;
+        }
+        List<UUID> notLoaded = entries.stream()
+            .filter(entry -> entry.change.getBeer() == null)
+            .map(entry -> entry.patch.getId())
+            .collect(Collectors.toList());
+        Map<UUID, BeerDto> loaded = notLoaded.isEmpty() ? Map.of() : loader.apply(notLoaded);
+
+        List<BeerChange> changes = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            if (entry.change.getBeer() == null) {
+                BeerDto beer = loaded.get(entry.patch.getId());
+                if (beer == null) {
+                    continue;
+                }
+                //slot keeps loaded change, unless it has been overwritten or loaded by other reader meanwhile
+                Entry loadedEntry = new Entry(entry.sequence, new BeerChange(entry.change.getCursor(), beer), entry.patch);
+                slots.compareAndSet(slot(entry.sequence), entry, loadedEntry);
+                entry = loadedEntry;
+            }
+            changes.add(entry.change);
+        }
+        return changes;
+    }
+
+    //the same as readAfter, but nothing is loaded - patch is given for update which has not been loaded yet
+    public List<Logged> readLoggedAfter(long sequence, int limit) {
+        List<Entry> entries = entriesAfter(sequence, limit);
+        if (entries == null) {
+            return null;
+        }
+        return entries.stream()
+            .map(entry -> entry.change.getBeer() == null ? new Logged(entry.patch, true) : new Logged(entry.change.getBeer(), false))
+            .collect(Collectors.toList());
+    }
+
+    //true when this version of beer is known to be appended at given sequence or before it
+    public boolean isAppendedUpTo(UUID beerId, Integer version, long sequence) {
+        Appended last = appended.getIfPresent(beerId);
+        return last != null && last.sequence <= sequence && Objects.equals(last.version, version);
+    }
+
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    private void put(long sequence, UUID beerId, Integer version, Timestamp lastModifiedDate, BeerDto beer, BeerDto patch) {
+        String cursor = BeerChangeCursor.inBuffer(epoch, sequence, lastModifiedDate, beerId).encode();
+        slots.set(slot(sequence), new Entry(sequence, new BeerChange(cursor, beer), patch));
+        if (beerId != null) {
+            appended.put(beerId, new Appended(sequence, version));
+        }
+    }
+
+    private List<Entry> entriesAfter(long sequence, int limit) {
+        long last = lastSequence;
+        List<Entry> entries = new ArrayList<>((int) Math.max(0, Math.min(limit, last - sequence)));
+        for (long next = sequence + 1; next <= last && entries.size() < limit; next++) {
+            Entry entry = slots.get(slot(next));
+            if (entry.sequence != next) {
+                return null;
+            }
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence % slots.length());
+    }
+
+    private static final class Entry {
+
+        private final long sequence;
+        //beer of the change is null until patch is loaded
+        private final BeerChange change;
+        private final BeerDto patch;
+
+        private Entry(long sequence, BeerChange change, BeerDto patch) {
+            this.sequence = sequence;
+            this.change = change;
+            this.patch = patch;
+        }
+    }
+
+    //change as it has been logged - whole beer, or patch of update which has not been loaded
+    public static final class Logged {
+
+        private final BeerDto beer;
+        private final boolean patch;
+
+        private Logged(BeerDto beer, boolean patch) {
+            this.beer = beer;
+            this.patch = patch;
+        }
+
+        public BeerDto getBeer() {
+            return beer;
+        }
+
+        public boolean isPatch() {
+            return patch;
+        }
+    }
+
+    private static final class Appended {
+
+        private final long sequence;
+        private final Integer version;
+
+        private Appended(long sequence, Integer version) {
+            this.sequence = sequence;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package pl.kukla.krzys.testing.restdocs.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerDto;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//bounded in-process cache of already mapped BeerDto, so hot reads touch neither Hibernate nor MapStruct
+//as MeterBinder it is bound by Spring Boot to every MeterRegistry - hits, misses, evictions and size are published
+@Component
+public class BeerDtoCache implements MeterBinder {
+
+    private static final String CACHE_NAME = "beerDto";
+
+    private final Cache<UUID, BeerDto> cache;
+    private final SingleFlight<UUID, BeerDto> loads = new SingleFlight<>(CACHE_NAME);
+    //bulk loads are not tracked per beer, they only see whether any beer was evicted while they were loading
+    private final AtomicLong evictions = new AtomicLong();
+
+    public BeerDtoCache(@Value("${beer.cache.maximum-size:10000}") long maximumSize,
+                        @Value("${beer.cache.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(expireAfterWrite)
+            .recordStats()
+            .build();
+    }
+
+    //loader is called at most once per key at the same time, concurrent readers of the same beer wait for its result
+    // - missing beer (null) included, which is not cached
+    //unlike Cache.get no lock of the cache is held while database is queried, so misses of other beers are not blocked
+    public BeerDto get(UUID beerId, Function<UUID, BeerDto> loader) {
+        BeerDto cached = cache.getIfPresent(beerId);
+        if (cached != null) {
+            return cached;
+        }
+        return loads.execute(beerId, flight -> {
+            BeerDto loaded = loader.apply(beerId);
+            if (loaded != null) {
+                //beer evicted while it was loaded could be already changed, so loaded version is not cached then
+                //check and put are atomic towards evict, because both run under lock of the same key
+                cache.asMap().compute(beerId, (id, current) -> !flight.isCurrent() || current != null && version(current) > version(loaded)
+                    ? current
+                    : loaded);
+            }
+            return loaded;
+        });
+    }
+
+    //beers found in cache are taken from it, all the others are loaded by one call of loader (missing ones are not
+    // in its result); loaded beers are cached only when no beer was evicted during the load - it could be one of them
+    public Map<UUID, BeerDto> getAll(Collection<UUID> beerIds, Function<Set<UUID>, Map<UUID, BeerDto>> loader) {
+        Map<UUID, BeerDto> found = new HashMap<>(cache.getAllPresent(beerIds));
+        Set<UUID> missing = new HashSet<>(beerIds);
+        missing.removeAll(found.keySet());
+        if (missing.isEmpty()) {
+            return found;
+        }
+
+        long evictionsBefore = evictions.get();
+        loader.apply(missing).forEach((beerId, loaded) -> {
+            //check and put are atomic towards evict, because both run under lock of the same key
+            BeerDto cached = cache.asMap().compute(beerId, (id, current) ->
+                evictions.get() != evictionsBefore || current != null && version(current) > version(loaded) ? current : loaded);
+            found.put(beerId, cached != null ? cached : loaded);
+        });
+        return found;
+    }
+
+    public BeerDto getIfPresent(UUID beerId) {
+        return cache.getIfPresent(beerId);
+    }
+
+    //running load is forgotten first, so it can not put its (possibly old) beer back after invalidation
+    public void evict(UUID beerId) {
+        evictions.incrementAndGet();
+        loads.forget(beerId);
+        cache.invalidate(beerId);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+        loads.bindTo(registry);
+    }
+
+    private static long version(BeerDto beerDto) {
+        return beerDto.getVersion() == null ? -1 : beerDto.getVersion();
+    }
+}
@@ -0,0 +1,26 @@
+package pl.kukla.krzys.testing.restdocs.services;
+
+import pl.kukla.krzys.testing.restdocs.web.model.BeerInventory;
+
+import java.util.UUID;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//stock of beers - every method throws BeerNotFoundException when beer does not exist
+public interface BeerInventoryService {
+
+    BeerInventory getInventory(UUID beerId);
+
+    //takes quantity from stock, throws InsufficientStockException when it would go below minOnHand
+    BeerInventory reserve(UUID beerId, int quantity);
+
+    //gives reserved quantity back to stock, throws StockLimitExceededException when stock would not fit into int
+    BeerInventory release(UUID beerId, int quantity);
+
+    //adds brewed quantity to stock, null means quantityToBrew of beer; throws StockLimitExceededException as release
+    BeerInventory restock(UUID beerId, Integer quantity);
+
+    //writes stock changes which are waiting for write-behind now
+    void flush();
+}
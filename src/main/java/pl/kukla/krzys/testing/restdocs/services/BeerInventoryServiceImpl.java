@@ -0,0 +1,235 @@
+package pl.kukla.krzys.testing.restdocs.services;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import pl.kukla.krzys.testing.restdocs.repository.BeerRepository;
+import pl.kukla.krzys.testing.restdocs.repository.BeerStockView;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerInventory;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//stock of every beer which has been used is an in-memory cell, so reservations do not wait for a row lock -
+// reservation is one compare-and-set of quantityOnHand which is refused when it would go below minOnHand
+//one cell per beer and not striped counters - sum of stripes can not be checked against the floor atomically
+//changes are added up in the cell and written behind every 'beer.inventory.flush-interval' as relative updates in
+// JDBC batches, so database gets one statement per changed beer and interval, however many reservations there were
+//cell is created from database on first use and kept until shutdown, when the rest is written; stock changed by
+// another instance or directly in database is not seen - inventory of a beer is owned by one instance
+@Slf4j
+@Service
+public class BeerInventoryServiceImpl implements BeerInventoryService, MeterBinder, DisposableBean {
+
+    private final BeerRepository beerRepository;
+    private final BeerStatsStore beerStatsStore;
+    private final int flushBatchSize;
+    private final ConcurrentMap<UUID, Stock> stocks = new ConcurrentHashMap<>();
+    private final SingleFlight<UUID, Stock> loads = new SingleFlight<>("beer.inventory");
+    //cells with changes which have not been written yet, every cell is queued at most once
+    private final Queue<Stock> dirty = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService writer;
+    private final LongAdder reserved = new LongAdder();
+    private final LongAdder refused = new LongAdder();
+    private final LongAdder written = new LongAdder();
+
+    public BeerInventoryServiceImpl(BeerRepository beerRepository, BeerStatsStore beerStatsStore,
+                                    @Value("${beer.inventory.flush-interval:1s}") Duration flushInterval,
+                                    @Value("${beer.inventory.flush-batch-size:500}") int flushBatchSize) {
+        this.beerRepository = beerRepository;
+        this.beerStatsStore = beerStatsStore;
+        this.flushBatchSize = flushBatchSize;
+        this.writer = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("beer-inventory-"));
+        writer.scheduleWithFixedDelay(this::flush, flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public BeerInventory getInventory(UUID beerId) {
+        Stock stock = stock(beerId);
+        return stock.inventory(stock.onHand.get());
+    }
+
+    @Override
+    public BeerInventory reserve(UUID beerId, int quantity) {
+        Stock stock = stock(beerId);
+        int onHand;
+        do {
+            onHand = stock.onHand.get();
+            if ((long) onHand - quantity < stock.minOnHand) {
+                refused.increment();
+                throw new InsufficientStockException("Beer " + beerId + " has only " + stock.available(onHand)
+                    + " available, " + quantity + " requested");
+            }
+        } while (!stock.onHand.compareAndSet(onHand, onHand - quantity));
+        reserved.increment();
+        changed(stock, -quantity);
+        return stock.inventory(onHand - quantity);
+    }
+
+    @Override
+    public BeerInventory release(UUID beerId, int quantity) {
+        return add(stock(beerId), quantity);
+    }
+
+    @Override
+    public BeerInventory restock(UUID beerId, Integer quantity) {
+        Stock stock = stock(beerId);
+        return add(stock, quantity == null ? stock.quantityToBrew : quantity);
+    }
+
+    //one transaction per flushBatchSize beers - failed batch goes back to its cells and is written by next flush
+    @Override
+    public void flush() {
+        Map<UUID, Integer> batch = new HashMap<>();
+        Stock stock;
+        while ((stock = dirty.poll()) != null) {
+            //cleared before the delta is taken - change made meanwhile queues the cell again
+            stock.dirty.set(false);
+            int delta = stock.unflushed.getAndSet(0);
+            if (delta != 0) {
+                batch.put(stock.beerId, delta);
+            }
+            if (batch.size() == flushBatchSize) {
+                if (!write(batch)) {
+                    return;
+                }
+                batch = new HashMap<>();
+            }
+        }
+        write(batch);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("beer.inventory.reservations", reserved, LongAdder::doubleValue)
+            .tag("result", "reserved")
+            .description("Reservations of beer stock")
+            .register(registry);
+        FunctionCounter.builder("beer.inventory.reservations", refused, LongAdder::doubleValue)
+            .tag("result", "refused")
+            .description("Reservations of beer stock")
+            .register(registry);
+        FunctionCounter.builder("beer.inventory.written", written, LongAdder::doubleValue)
+            .description("Stock changes written to database, one per beer and flush")
+            .register(registry);
+        Gauge.builder("beer.inventory.beers", stocks, Map::size)
+            .description("Beers with stock held in memory")
+            .register(registry);
+        loads.bindTo(registry);
+    }
+
+    //the rest of changes is written before database goes away
+    @Override
+    public void destroy() throws InterruptedException {
+        writer.shutdown();
+        writer.awaitTermination(10, TimeUnit.SECONDS);
+        flush();
+    }
+
+    //quantity which would not fit into int is refused the same way as reservation below minOnHand, so stock in cell
+    // stays between minOnHand and Integer.MAX_VALUE and sum of its unwritten changes fits into int as well
+    private BeerInventory add(Stock stock, int quantity) {
+        int onHand;
+        do {
+            onHand = stock.onHand.get();
+            if ((long) onHand + quantity > Integer.MAX_VALUE) {
+                throw new StockLimitExceededException("Beer " + stock.beerId + " has " + onHand + " on hand, "
+                    + quantity + " more would exceed " + Integer.MAX_VALUE);
+            }
+        } while (!stock.onHand.compareAndSet(onHand, onHand + quantity));
+        changed(stock, quantity);
+        return stock.inventory(onHand + quantity);
+    }
+
+    private void changed(Stock stock, int delta) {
+        stock.unflushed.addAndGet(delta);
+        if (stock.dirty.compareAndSet(false, true)) {
+            dirty.add(stock);
+        }
+    }
+
+    private boolean write(Map<UUID, Integer> batch) {
+        if (batch.isEmpty()) {
+            return true;
+        }
+        try {
+            beerStatsStore.writeStock(batch, () -> beerRepository.addQuantitiesOnHand(batch));
+            written.add(batch.size());
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Stock of {} beers could not be written, it is retried by next flush", batch.size(), e);
+            batch.forEach((beerId, delta) -> changed(stocks.get(beerId), delta));
+            return false;
+        }
+    }
+
+    //concurrent first uses of a beer read it from database once
+    private Stock stock(UUID beerId) {
+        Stock stock = stocks.get(beerId);
+        if (stock != null) {
+            return stock;
+        }
+        return loads.execute(beerId, () -> {
+            Stock existing = stocks.get(beerId);
+            if (existing != null) {
+                return existing;
+            }
+            Stock loaded = beerRepository.findStockById(beerId)
+                .map(view -> new Stock(beerId, view))
+                .orElseThrow(() -> new BeerNotFoundException("Beer " + beerId + " does not exist"));
+            Stock raced = stocks.putIfAbsent(beerId, loaded);
+            return raced != null ? raced : loaded;
+        });
+    }
+
+    private static final class Stock {
+
+        private final UUID beerId;
+        private final int minOnHand;
+        private final int quantityToBrew;
+        private final AtomicInteger onHand;
+        //sum of changes not written to database yet
+        private final AtomicInteger unflushed = new AtomicInteger();
+        private final AtomicBoolean dirty = new AtomicBoolean();
+
+        private Stock(UUID beerId, BeerStockView view) {
+            this.beerId = beerId;
+            this.minOnHand = valueOf(view.getMinOnHand());
+            this.quantityToBrew = valueOf(view.getQuantityToBrew());
+            this.onHand = new AtomicInteger(valueOf(view.getQuantityOnHand()));
+        }
+
+        private int available(int onHand) {
+            return Math.max(0, onHand - minOnHand);
+        }
+
+        private BeerInventory inventory(int onHand) {
+            return new BeerInventory(beerId, onHand, minOnHand, available(onHand));
+        }
+
+        private static int valueOf(Integer value) {
+            return value == null ? 0 : value;
+        }
+    }
+}
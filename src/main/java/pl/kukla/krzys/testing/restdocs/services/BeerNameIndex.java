@@ -0,0 +1,397 @@
+package pl.kukla.krzys.testing.restdocs.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import pl.kukla.krzys.testing.restdocs.repository.BeerRepository;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerDto;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerSearchResult.BeerSuggestion;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerStyleEnum;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//in-memory typeahead index of beer names - beers with a word of name starting with given prefix, case insensitive
+//bulk of beers is in compact BeerNameSegment (primitive arrays, a few dozen bytes per beer), recent changes are in
+// small delta of sorted maps; when delta has 'beer.search.max-delta' beers, segment and delta are merged into new
+// segment on background thread while searches go on with the old ones
+//index is built from database when application is ready and follows BeerChangeLog, so created and updated beers are
+// searchable right after commit; when it falls behind the log, it is built from database again
+//there is one writer at a time (methods synchronized on the index), searches do not lock - beer is live in at most
+// one part of the index, older versions are hidden by 'dead' marks
+@Slf4j
+@Component
+public class BeerNameIndex implements MeterBinder, DisposableBean {
+
+    private static final int LOG_BATCH = 1000;
+    //separates text of word from id in keys of delta, it is before every character of names
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    private final BeerRepository beerRepository;
+    private final BeerChangeLog beerChangeLog;
+    private final int maxDelta;
+    private final ExecutorService builder = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("beer-name-index-"));
+    private volatile State state = new State(BeerNameSegment.EMPTY, null, new Delta());
+    //fields below are guarded by this
+    private long appliedSequence;
+    private boolean building;
+    private boolean rebuildRequested;
+
+    public BeerNameIndex(BeerRepository beerRepository, BeerChangeLog beerChangeLog,
+                         @Value("${beer.search.max-delta:10000}") int maxDelta) {
+        this.beerRepository = beerRepository;
+        this.beerChangeLog = beerChangeLog;
+        this.maxDelta = maxDelta;
+        this.appliedSequence = beerChangeLog.getLastSequence();
+        beerChangeLog.addListener(this::applyChanges);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    //index is read from database again in background, searches use the current one meanwhile
+    //needed after beers are written behind BeerChangeLog, e.g. seeded by BeerLoader
+    public synchronized void rebuild() {
+        if (building) {
+            rebuildRequested = true;
+        } else {
+            startBuild(true);
+        }
+    }
+
+    //at most limit live beers ordered by name from the matching word on; null style matches any
+    public List<BeerSuggestion> search(String prefix, BeerStyleEnum beerStyle, int limit) {
+        State current = state;
+        String text = lowerCase(prefix);
+        List<Candidate> candidates = new ArrayList<>(current.base.search(text.toCharArray(), beerStyle, limit));
+        if (current.frozen != null) {
+            candidates.addAll(current.frozen.search(text, beerStyle, limit));
+        }
+        candidates.addAll(current.active.search(text, beerStyle, limit));
+
+        //every part gives its own top beers, beer is live only in one of them
+        return candidates.stream()
+            .sorted(Comparator.comparing((Candidate candidate) -> candidate.sortKey).thenComparing(candidate -> candidate.id))
+            .limit(limit)
+            .map(candidate -> new BeerSuggestion(candidate.id, candidate.beerName, candidate.beerStyle))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("beer.search.index.beers", this, index -> index.state.base.size())
+            .description("Beers in compact part of name index")
+            .register(registry);
+        Gauge.builder("beer.search.index.memory", this, index -> index.state.base.memory())
+            .description("Bytes of arrays in compact part of name index")
+            .baseUnit("bytes")
+            .register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        builder.shutdownNow();
+    }
+
+    //Character.toLowerCase of every char, the same as segment compares with - String.toLowerCase can change length
+    static String lowerCase(String text) {
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    //runs on thread which appended to the log, work per change is a few map operations
+    private synchronized void applyChanges() {
+        List<BeerChangeLog.Logged> changes;
+        while ((changes = beerChangeLog.readLoggedAfter(appliedSequence, LOG_BATCH)) != null && !changes.isEmpty()) {
+            changes.forEach(change -> apply(change.getBeer(), change.isPatch()));
+            appliedSequence += changes.size();
+        }
+        if (changes == null) {
+            log.warn("Name index has fallen behind change log, it is built from database again");
+            appliedSequence = beerChangeLog.getLastSequence();
+            rebuild();
+        }
+    }
+
+    //patch of other fields than name and style does not change the index; patch of one of them takes the other one from
+    // the index and its unknown version is the next one - beer which is not in the index yet makes it build again
+    private void apply(BeerDto beer, boolean patch) {
+        State current = state;
+        String beerName = beer.getBeerName();
+        byte style = BeerNameSegment.Builder.style(beer.getBeerStyle() == null ? null : beer.getBeerStyle().name());
+        int version = beer.getVersion() == null ? 0 : beer.getVersion();
+        if (patch) {
+            if (beer.getBeerName() == null && beer.getBeerStyle() == null) {
+                return;
+            }
+            DeltaEntry live = current.live(beer.getId());
+            if (live == null) {
+                rebuild();
+                return;
+            }
+            beerName = beerName == null ? live.beerName : beerName;
+            style = beer.getBeerStyle() == null ? live.style : style;
+            version = beer.getVersion() == null ? live.version + 1 : version;
+        }
+        if (!current.hideOlderThan(beer.getId(), version)) {
+            return;
+        }
+        current.active.add(new DeltaEntry(beer.getId(), version, beerName, style));
+        if (current.active.size() >= maxDelta && !building) {
+            startBuild(false);
+        }
+    }
+
+    //active delta is frozen and new segment is built from database or from segment and frozen delta
+    private void startBuild(boolean fromDatabase) {
+        State current = state;
+        building = true;
+        State frozen = new State(current.base, current.active, new Delta());
+        state = frozen;
+        builder.execute(() -> {
+            BeerNameSegment segment;
+            try {
+                segment = fromDatabase ? readSegment() : mergeSegment(frozen);
+            } catch (RuntimeException e) {
+                log.error("Name index could not be built", e);
+                segment = null;
+            }
+            finishBuild(segment);
+        });
+    }
+
+    private BeerNameSegment readSegment() {
+        long start = System.nanoTime();
+        BeerNameSegment.Builder segment = new BeerNameSegment.Builder(state.base.size());
+        beerRepository.readBeerNames((id, version, beerName, beerStyle) -> segment.add(id, (int) version, beerName, beerStyle));
+        BeerNameSegment built = segment.build();
+        log.info("Name index of {} beers built from database in {} ms", built.size(), (System.nanoTime() - start) / 1_000_000);
+        return built;
+    }
+
+    private static BeerNameSegment mergeSegment(State frozen) {
+        BeerNameSegment.Builder segment = new BeerNameSegment.Builder(frozen.base.size() + frozen.frozen.size());
+        frozen.base.copyLiveTo(segment);
+        frozen.frozen.copyLiveTo(segment);
+        return segment.build();
+    }
+
+    //changes applied while building may be newer than what new segment has seen, or older when it was read from
+    // database - the newer version of every beer stays live
+    private synchronized void finishBuild(BeerNameSegment segment) {
+        State current = state;
+        if (segment == null) {
+            //frozen beers go back to active delta, so nothing is lost
+            current.frozen.moveLiveTo(current.active);
+            state = new State(current.base, null, current.active);
+        } else {
+            for (DeltaEntry entry : new ArrayList<>(current.active.byId.values())) {
+                int beer = segment.indexOf(entry.id);
+                if (beer < 0 || segment.isDead(beer)) {
+                    continue;
+                }
+                if (segment.version(beer) > entry.version) {
+                    current.active.remove(entry);
+                } else {
+                    segment.kill(beer);
+                }
+            }
+            state = new State(segment, null, current.active);
+        }
+        building = false;
+        if (rebuildRequested) {
+            rebuildRequested = false;
+            startBuild(true);
+        } else if (segment != null && current.active.size() >= maxDelta) {
+            startBuild(false);
+        }
+    }
+
+    //match found by one part of the index
+    static final class Candidate {
+
+        //name from the matching word on, lower case
+        final String sortKey;
+        final UUID id;
+        final String beerName;
+        final BeerStyleEnum beerStyle;
+        //index in segment, -1 in delta
+        final int beer;
+
+        Candidate(String sortKey, UUID id, String beerName, BeerStyleEnum beerStyle, int beer) {
+            this.sortKey = sortKey;
+            this.id = id;
+            this.beerName = beerName;
+            this.beerStyle = beerStyle;
+            this.beer = beer;
+        }
+    }
+
+    private static final class State {
+
+        private final BeerNameSegment base;
+        //delta which is being merged into new segment, null when nothing is being built
+        private final Delta frozen;
+        private final Delta active;
+
+        private State(BeerNameSegment base, Delta frozen, Delta active) {
+            this.base = base;
+            this.frozen = frozen;
+            this.active = active;
+        }
+
+        //live version of the beer in any part of the index, null when it is not there
+        private DeltaEntry live(UUID id) {
+            DeltaEntry activeEntry = active.byId.get(id);
+            if (activeEntry != null && !activeEntry.dead) {
+                return activeEntry;
+            }
+            DeltaEntry frozenEntry = frozen == null ? null : frozen.byId.get(id);
+            if (frozenEntry != null && !frozenEntry.dead) {
+                return frozenEntry;
+            }
+            int beer = base.indexOf(id);
+            if (beer >= 0 && !base.isDead(beer)) {
+                return new DeltaEntry(id, base.version(beer), base.beerName(beer), base.style(beer));
+            }
+            return null;
+        }
+
+        //false when index already has newer version of the beer
+        private boolean hideOlderThan(UUID id, int version) {
+            int beer = base.indexOf(id);
+            if (beer >= 0 && !base.isDead(beer)) {
+                if (base.version(beer) > version) {
+                    return false;
+                }
+                base.kill(beer);
+            }
+            DeltaEntry frozenEntry = frozen == null ? null : frozen.byId.get(id);
+            if (frozenEntry != null && !frozenEntry.dead) {
+                if (frozenEntry.version > version) {
+                    return false;
+                }
+                frozenEntry.dead = true;
+            }
+            DeltaEntry activeEntry = active.byId.get(id);
+            if (activeEntry != null) {
+                if (activeEntry.version > version) {
+                    return false;
+                }
+                active.remove(activeEntry);
+            }
+            return true;
+        }
+    }
+
+    //recent beers, every word of name is a key of sorted map: lower case name from that word on, separator and id
+    //byId is used only by the writer; frozen delta is not changed anymore except 'dead' marks, because builder reads it
+    private static final class Delta {
+
+        private final ConcurrentSkipListMap<String, DeltaEntry> words = new ConcurrentSkipListMap<>();
+        private final Map<UUID, DeltaEntry> byId = new HashMap<>();
+
+        int size() {
+            return byId.size();
+        }
+
+        void add(DeltaEntry entry) {
+            byId.put(entry.id, entry);
+            forEachKey(entry, key -> words.put(key, entry));
+        }
+
+        void remove(DeltaEntry entry) {
+            byId.remove(entry.id);
+            forEachKey(entry, words::remove);
+        }
+
+        List<Candidate> search(String prefix, BeerStyleEnum beerStyle, int limit) {
+            List<Candidate> found = new ArrayList<>();
+            ConcurrentNavigableMap<String, DeltaEntry> matching = words.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+            for (Map.Entry<String, DeltaEntry> word : matching.entrySet()) {
+                DeltaEntry entry = word.getValue();
+                if (found.size() == limit) {
+                    break;
+                }
+                if (entry.dead || beerStyle != null && entry.style != beerStyle.ordinal()
+                    || found.stream().anyMatch(candidate -> candidate.id.equals(entry.id))) {
+                    continue;
+                }
+                found.add(new Candidate(word.getKey().substring(0, word.getKey().indexOf(KEY_SEPARATOR)), entry.id,
+                    entry.beerName, entry.style < 0 ? null : BeerStyleEnum.values()[entry.style], -1));
+            }
+            return found;
+        }
+
+        void copyLiveTo(BeerNameSegment.Builder segment) {
+            for (DeltaEntry entry : byId.values()) {
+                if (!entry.dead) {
+                    char[] name = entry.beerName.toCharArray();
+                    segment.add(entry.id.getMostSignificantBits(), entry.id.getLeastSignificantBits(), entry.version,
+                        entry.style, name, 0, name.length);
+                }
+            }
+        }
+
+        void moveLiveTo(Delta delta) {
+            for (DeltaEntry entry : byId.values()) {
+                if (!entry.dead && !delta.byId.containsKey(entry.id)) {
+                    delta.add(entry);
+                }
+            }
+        }
+
+        //the same words as BeerNameSegment indexes
+        private static void forEachKey(DeltaEntry entry, Consumer<String> consumer) {
+            String name = entry.beerName;
+            String lowerCase = lowerCase(name);
+            int to = Math.min(name.length(), 256);
+            for (int i = 0; i < to; i++) {
+                if (Character.isLetterOrDigit(name.charAt(i)) && (i == 0 || !Character.isLetterOrDigit(name.charAt(i - 1)))) {
+                    consumer.accept(lowerCase.substring(i) + KEY_SEPARATOR + entry.id);
+                }
+            }
+        }
+    }
+
+    private static final class DeltaEntry {
+
+        private final UUID id;
+        private final int version;
+        private final String beerName;
+        private final byte style;
+        private volatile boolean dead;
+
+        private DeltaEntry(UUID id, int version, String beerName, byte style) {
+            this.id = id;
+            this.version = version;
+            this.beerName = beerName == null ? "" : beerName;
+            this.style = style;
+        }
+    }
+}
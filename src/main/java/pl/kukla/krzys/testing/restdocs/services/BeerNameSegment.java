@@ -0,0 +1,335 @@
+package pl.kukla.krzys.testing.restdocs.services;
+
+import pl.kukla.krzys.testing.restdocs.web.model.BeerStyleEnum;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//immutable bulk of BeerNameIndex - beers sorted by id in parallel primitive arrays, names of all beers in one char
+// array and one int key for every word of every name; keys are sorted by name from that word on (case insensitive),
+// so words starting with given prefix are one range of keys found by binary search
+//key is index of beer (upper 24 bits) and offset of word in its name (lower 8 bits), words starting after 255th
+// character are not indexed
+//only 'dead' bits change - beer which has newer version elsewhere in the index is hidden, not removed
+final class BeerNameSegment {
+
+    static final BeerNameSegment EMPTY = new Builder(0).build();
+
+    private static final int MAX_BEERS = 1 << 24;
+    private static final int MAX_OFFSET = 0xff;
+    private static final BeerStyleEnum[] STYLES = BeerStyleEnum.values();
+    private static final byte NO_STYLE = -1;
+
+    private final long[] mostSigBits;
+    private final long[] leastSigBits;
+    private final int[] versions;
+    private final byte[] styles;
+    //name of beer i is names[nameStarts[i]] to names[nameStarts[i + 1]]
+    private final int[] nameStarts;
+    private final char[] names;
+    private final int[] keys;
+    private final AtomicLongArray dead;
+
+    private BeerNameSegment(long[] mostSigBits, long[] leastSigBits, int[] versions, byte[] styles, int[] nameStarts,
+                            char[] names) {
+        this.mostSigBits = mostSigBits;
+        this.leastSigBits = leastSigBits;
+        this.versions = versions;
+        this.styles = styles;
+        this.nameStarts = nameStarts;
+        this.names = names;
+        this.keys = sortedKeys();
+        this.dead = new AtomicLongArray((versions.length + 63) / 64);
+    }
+
+    int size() {
+        return versions.length;
+    }
+
+    //bytes of all arrays - what index costs per beer
+    long memory() {
+        return 16L * mostSigBits.length + 4L * versions.length + styles.length + 4L * nameStarts.length
+            + 2L * names.length + 4L * keys.length + 8L * dead.length();
+    }
+
+    //binary search in beers sorted by id, negative when beer is not in the segment
+    int indexOf(UUID id) {
+        int low = 0;
+        int high = versions.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int compared = compareIds(mostSigBits[middle], leastSigBits[middle], id.getMostSignificantBits(),
+                id.getLeastSignificantBits());
+            if (compared < 0) {
+                low = middle + 1;
+            } else if (compared > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    int version(int beer) {
+        return versions[beer];
+    }
+
+    String beerName(int beer) {
+        return new String(names, nameStarts[beer], nameStarts[beer + 1] - nameStarts[beer]);
+    }
+
+    byte style(int beer) {
+        return styles[beer];
+    }
+
+    boolean isDead(int beer) {
+        return (dead.get(beer >>> 6) & 1L << beer) != 0;
+    }
+
+    //called by the only writer of the index, readers see it at once
+    void kill(int beer) {
+        dead.set(beer >>> 6, dead.get(beer >>> 6) | 1L << beer);
+    }
+
+    //live beers whose name has a word starting with prefix (already lower case), at most limit of them in order
+    // of keys; null style matches any
+    List<BeerNameIndex.Candidate> search(char[] prefix, BeerStyleEnum style, int limit) {
+        List<BeerNameIndex.Candidate> found = new ArrayList<>(Math.min(limit, 16));
+        int to = firstKeyAfter(prefix, true);
+        for (int i = firstKeyAfter(prefix, false); i < to && found.size() < limit; i++) {
+            int beer = keys[i] >>> 8;
+            if (isDead(beer) || style != null && styles[beer] != style.ordinal() || contains(found, beer)) {
+                continue;
+            }
+            String beerName = beerName(beer);
+            found.add(new BeerNameIndex.Candidate(BeerNameIndex.lowerCase(beerName.substring(keys[i] & MAX_OFFSET)),
+                new UUID(mostSigBits[beer], leastSigBits[beer]), beerName, styles[beer] == NO_STYLE ? null : STYLES[styles[beer]],
+                beer));
+        }
+        return found;
+    }
+
+    //live beers go to new segment, e.g. when delta of the index is merged
+    void copyLiveTo(Builder builder) {
+        for (int beer = 0; beer < versions.length; beer++) {
+            if (!isDead(beer)) {
+                builder.add(mostSigBits[beer], leastSigBits[beer], versions[beer], styles[beer], names, nameStarts[beer],
+                    nameStarts[beer + 1]);
+            }
+        }
+    }
+
+    //first key whose text is after prefix (inclusive=true) or not before prefix (inclusive=false)
+    private int firstKeyAfter(char[] prefix, boolean inclusive) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int compared = compareToPrefix(keys[middle], prefix);
+            if (compared < 0 || inclusive && compared == 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    //0 when text of key starts with prefix
+    private int compareToPrefix(int key, char[] prefix) {
+        int from = nameStarts[key >>> 8] + (key & MAX_OFFSET);
+        int to = nameStarts[(key >>> 8) + 1];
+        for (int i = 0; i < prefix.length; i++) {
+            if (from + i == to) {
+                return -1;
+            }
+            int compared = Character.toLowerCase(names[from + i]) - prefix[i];
+            if (compared != 0) {
+                return compared;
+            }
+        }
+        return 0;
+    }
+
+    private int compareKeys(int first, int second) {
+        int i = nameStarts[first >>> 8] + (first & MAX_OFFSET);
+        int firstTo = nameStarts[(first >>> 8) + 1];
+        int j = nameStarts[second >>> 8] + (second & MAX_OFFSET);
+        int secondTo = nameStarts[(second >>> 8) + 1];
+        for (; i < firstTo && j < secondTo; i++, j++) {
+            int compared = Character.toLowerCase(names[i]) - Character.toLowerCase(names[j]);
+            if (compared != 0) {
+                return compared;
+            }
+        }
+        int compared = (firstTo - i) - (secondTo - j);
+        return compared != 0 ? compared : Integer.compare(first, second);
+    }
+
+    private int[] sortedKeys() {
+        int count = 0;
+        for (int beer = 0; beer < versions.length; beer++) {
+            count += words(beer, null, 0);
+        }
+        int[] keys = new int[count];
+        int filled = 0;
+        for (int beer = 0; beer < versions.length; beer++) {
+            filled += words(beer, keys, filled);
+        }
+        sort(keys, this::compareKeys);
+        return keys;
+    }
+
+    //word starts with letter or digit which follows anything else; keys are written only when array is given
+    private int words(int beer, int[] keys, int at) {
+        int from = nameStarts[beer];
+        int to = Math.min(nameStarts[beer + 1], from + MAX_OFFSET + 1);
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (Character.isLetterOrDigit(names[i]) && (i == from || !Character.isLetterOrDigit(names[i - 1]))) {
+                if (keys != null) {
+                    keys[at + count] = beer << 8 | (i - from);
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean contains(List<BeerNameIndex.Candidate> found, int beer) {
+        for (BeerNameIndex.Candidate candidate : found) {
+            if (candidate.beer == beer) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //UUID.compareTo compares signed halves as well
+    private static int compareIds(long firstMost, long firstLeast, long secondMost, long secondLeast) {
+        int compared = Long.compare(firstMost, secondMost);
+        return compared != 0 ? compared : Long.compare(firstLeast, secondLeast);
+    }
+
+    private interface IntComparator {
+        int compare(int first, int second);
+    }
+
+    //merge sort of primitive ints with comparator - JDK sorts ints only by their value, boxing millions of keys
+    // would double memory needed to build the segment
+    private static void sort(int[] values, IntComparator comparator) {
+        int[] buffer = new int[values.length];
+        for (int width = 1; width < values.length; width *= 2) {
+            for (int from = 0; from < values.length - width; from += 2 * width) {
+                int middle = from + width;
+                int to = Math.min(from + 2 * width, values.length);
+                if (comparator.compare(values[middle - 1], values[middle]) <= 0) {
+                    continue;
+                }
+                System.arraycopy(values, from, buffer, from, to - from);
+                int i = from;
+                int j = middle;
+                for (int k = from; k < to; k++) {
+                    values[k] = j == to || i < middle && comparator.compare(buffer[i], buffer[j]) <= 0 ? buffer[i++] : buffer[j++];
+                }
+            }
+        }
+    }
+
+    //collects beers in any order, build sorts them by id
+    static final class Builder {
+
+        private long[] mostSigBits;
+        private long[] leastSigBits;
+        private int[] versions;
+        private byte[] styles;
+        private int[] nameStarts;
+        private char[] names;
+        private int size;
+
+        Builder(int expectedSize) {
+            int capacity = Math.max(16, expectedSize);
+            mostSigBits = new long[capacity];
+            leastSigBits = new long[capacity];
+            versions = new int[capacity];
+            styles = new byte[capacity];
+            nameStarts = new int[capacity + 1];
+            names = new char[capacity * 16];
+        }
+
+        void add(UUID id, int version, String beerName, String beerStyle) {
+            String name = beerName == null ? "" : beerName;
+            add(id.getMostSignificantBits(), id.getLeastSignificantBits(), version, style(beerStyle), name.toCharArray(), 0,
+                name.length());
+        }
+
+        void add(long mostSigBits, long leastSigBits, int version, byte style, char[] text, int from, int to) {
+            if (size == MAX_BEERS) {
+                throw new IllegalStateException("Name index can not hold more than " + MAX_BEERS + " beers");
+            }
+            if (size == versions.length) {
+                int capacity = size * 2;
+                this.mostSigBits = Arrays.copyOf(this.mostSigBits, capacity);
+                this.leastSigBits = Arrays.copyOf(this.leastSigBits, capacity);
+                this.versions = Arrays.copyOf(versions, capacity);
+                this.styles = Arrays.copyOf(styles, capacity);
+                this.nameStarts = Arrays.copyOf(nameStarts, capacity + 1);
+            }
+            int start = nameStarts[size];
+            if (start + to - from > names.length) {
+                names = Arrays.copyOf(names, Math.max(names.length * 2, start + to - from));
+            }
+            System.arraycopy(text, from, names, start, to - from);
+            this.mostSigBits[size] = mostSigBits;
+            this.leastSigBits[size] = leastSigBits;
+            versions[size] = version;
+            styles[size] = style;
+            nameStarts[size + 1] = start + to - from;
+            size++;
+        }
+
+        BeerNameSegment build() {
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            sort(order, (first, second) -> compareIds(mostSigBits[first], leastSigBits[first], mostSigBits[second],
+                leastSigBits[second]));
+
+            long[] sortedMostSigBits = new long[size];
+            long[] sortedLeastSigBits = new long[size];
+            int[] sortedVersions = new int[size];
+            byte[] sortedStyles = new byte[size];
+            int[] sortedNameStarts = new int[size + 1];
+            char[] sortedNames = new char[nameStarts[size]];
+            for (int i = 0; i < size; i++) {
+                int beer = order[i];
+                sortedMostSigBits[i] = mostSigBits[beer];
+                sortedLeastSigBits[i] = leastSigBits[beer];
+                sortedVersions[i] = versions[beer];
+                sortedStyles[i] = styles[beer];
+                int length = nameStarts[beer + 1] - nameStarts[beer];
+                System.arraycopy(names, nameStarts[beer], sortedNames, sortedNameStarts[i], length);
+                sortedNameStarts[i + 1] = sortedNameStarts[i] + length;
+            }
+            return new BeerNameSegment(sortedMostSigBits, sortedLeastSigBits, sortedVersions, sortedStyles, sortedNameStarts,
+                sortedNames);
+        }
+
+        static byte style(String beerStyle) {
+            for (BeerStyleEnum style : STYLES) {
+                if (style.name().equals(beerStyle)) {
+                    return (byte) style.ordinal();
+                }
+            }
+            return NO_STYLE;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package pl.kukla.krzys.testing.restdocs.services;
+
+/**
+ * @author Krzysztof Kukla
+ */
+public class BeerNotFoundException extends RuntimeException {
+
+    public BeerNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,49 @@
+package pl.kukla.krzys.testing.restdocs.services;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import pl.kukla.krzys.testing.restdocs.domain.Beer;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//position of the last beer returned by keyset page - (createdDate, id) pair encoded as opaque url safe token
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+final class BeerPageCursor {
+
+    private static final String SEPARATOR = ":";
+
+    private final Timestamp createdDate;
+    private final UUID id;
+
+    static BeerPageCursor of(Beer beer) {
+        return new BeerPageCursor(beer.getCreatedDate(), beer.getId());
+    }
+
+    //empty cursor means first page, so null is returned
+    static BeerPageCursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(SEPARATOR);
+            Timestamp createdDate = new Timestamp(Long.parseLong(parts[0]));
+            createdDate.setNanos(Integer.parseInt(parts[1]));
+            return new BeerPageCursor(createdDate, UUID.fromString(parts[2]));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new InvalidPageRequestException("Cursor '" + cursor + "' is not valid");
+        }
+    }
+
+    String encode() {
+        String raw = createdDate.getTime() + SEPARATOR + createdDate.getNanos() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
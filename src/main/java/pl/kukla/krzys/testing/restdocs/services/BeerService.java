@@ -0,0 +1,74 @@
+package pl.kukla.krzys.testing.restdocs.services;
+
+import org.springframework.data.domain.PageRequest;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerChanges;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerDto;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerPagedList;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerSearchResult.BeerSuggestion;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerStats;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerStatsCheck;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerStyleEnum;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * @author Krzysztof Kukla
+ */
+public interface BeerService {
+
+    BeerDto getBeerById(UUID beerId);
+
+    //beers which exist, by their ids - cached ones are taken from the same cache as getBeerById, the others are read
+    // by one query
+    Map<UUID, BeerDto> getBeersByIds(Collection<UUID> beerIds);
+
+    //cheap lookup for conditional requests - only id, version and lastModifiedDate are guaranteed to be filled
+    Optional<BeerDto> getBeerVersion(UUID beerId);
+
+    //reads only columns of BeerDto, throws BeerNotFoundException when there is no beer with given upc
+    BeerDto getBeerByUpc(Long upc);
+
+    void saveNewBeer(BeerDto beerDto);
+
+    //beer is updated by one statement without being loaded, null expectedVersion means any version
+    //throws BeerNotFoundException or BeerVersionConflictException when nothing was updated
+    void updateBeer(UUID beerId, Integer expectedVersion, BeerDto beerDto);
+
+    //the same as updateBeer, but only fields which are not null in beerDto are changed
+    void patchBeer(UUID beerId, Integer expectedVersion, BeerDto beerDto);
+
+    //beers are matched on upc - existing ones are updated, the others are created
+    //all of them are written in one transaction, so caller decides about the chunk size; returns number of created beers
+    int upsertBeers(List<BeerDto> beerDtos);
+
+    //every beer is passed to consumer as soon as it is read from database, nothing is collected in memory
+    void exportBeers(Consumer<BeerDto> consumer);
+
+    //offset based page, count(*) query is executed only when 'withTotal' is true
+    BeerPagedList listBeers(String beerName, BeerStyleEnum beerStyle, PageRequest pageRequest, boolean withTotal);
+
+    //keyset based page, empty cursor means first page
+    BeerPagedList listBeersAfter(String beerName, BeerStyleEnum beerStyle, String cursor, int pageSize);
+
+    //beers with a word of name starting with prefix, from in-memory index which follows commits
+    List<BeerSuggestion> searchBeers(String prefix, BeerStyleEnum beerStyle, int limit);
+
+    //count, prices and stock per style from in-memory aggregates which follow commits (see BeerStatsStore)
+    BeerStats getBeerStats();
+
+    //in-memory statistics compared with GROUP BY over whole table
+    BeerStatsCheck checkBeerStats();
+
+    //cursor of change feed right after the latest change - reading from it gives only changes made from now on
+    String latestChangeCursor();
+
+    //at most limit created and updated beers after cursor, empty cursor means from the beginning
+    //recent changes are read from memory in commit order, older ones from database in order of lastModifiedDate,
+    // so a beer can come more than once - its version tells which state is newer
+    BeerChanges readChangesAfter(String cursor, int limit);
+}
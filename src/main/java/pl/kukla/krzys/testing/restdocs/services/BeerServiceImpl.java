@@ -0,0 +1,378 @@
+package pl.kukla.krzys.testing.restdocs.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.repository.support.PageableExecutionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import pl.kukla.krzys.testing.restdocs.domain.Beer;
+import pl.kukla.krzys.testing.restdocs.repository.BeerRepository;
+import pl.kukla.krzys.testing.restdocs.repository.BeerView;
+import pl.kukla.krzys.testing.restdocs.web.mapper.BeerMapper;
+import pl.kukla.krzys.testing.restdocs.web.mapper.DateMapper;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerChange;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerChanges;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerDto;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerPagedList;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerSearchResult.BeerSuggestion;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerStats;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerStatsCheck;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerStyleEnum;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * @author Krzysztof Kukla
+ */
+@Service
+@RequiredArgsConstructor
+public class BeerServiceImpl implements BeerService {
+
+    private static final Set<String> SORTABLE_PROPERTIES =
+        Set.of("beerName", "beerStyle", "upc", "price", "createdDate", "lastModifiedDate");
+    //position before every id of beers changed at the same time
+    private static final UUID LOWEST_ID = new UUID(0, 0);
+    //lastModifiedDate is set when statement runs, not when transaction commits, so beer can be committed (and logged)
+    // after other beers changed later than it; timeout of writing transactions bounds by how much
+    static final int WRITE_TIMEOUT_SECONDS = 30;
+
+    private final BeerRepository beerRepository;
+    private final BeerMapper beerMapper;
+    private final DateMapper dateMapper;
+    private final BeerDtoCache beerDtoCache;
+    private final BeerChangeLog beerChangeLog;
+    private final BeerNameIndex beerNameIndex;
+    private final BeerStatsStore beerStatsStore;
+    private final BeerInventoryService beerInventoryService;
+
+    //no transaction is opened here, cache hit does not need database connection
+    @Override
+    public BeerDto getBeerById(UUID beerId) {
+        BeerDto beerDto = beerDtoCache.get(beerId, id -> beerRepository.findViewById(id)
+            .map(beerMapper::BeerViewToBeerDto)
+            .orElse(null));
+        if (beerDto == null) {
+            throw new BeerNotFoundException("Beer " + beerId + " does not exist");
+        }
+        return beerDto;
+    }
+
+    @Override
+    public Map<UUID, BeerDto> getBeersByIds(Collection<UUID> beerIds) {
+        return beerDtoCache.getAll(beerIds, missing ->
+            beerMapper.BeerViewsToBeerDtos(beerRepository.findViewsByIdIn(padToBucket(missing))).stream()
+                .collect(Collectors.toMap(BeerDto::getId, Function.identity())));
+    }
+
+    @Override
+    public Optional<BeerDto> getBeerVersion(UUID beerId) {
+        BeerDto cached = beerDtoCache.getIfPresent(beerId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        return beerRepository.findVersionById(beerId)
+            .map(version -> BeerDto.builder()
+                .id(version.getId())
+                .version(version.getVersion() == null ? null : version.getVersion().intValue())
+                .lastModifiedDate(dateMapper.asOffsetDateTime(version.getLastModifiedDate()))
+                .build());
+    }
+
+    @Override
+    public BeerDto getBeerByUpc(Long upc) {
+        return beerRepository.findByUpc(upc)
+            .map(beerMapper::BeerViewToBeerDto)
+            .orElseThrow(() -> new BeerNotFoundException("Beer with upc " + upc + " does not exist"));
+    }
+
+    @Override
+    @Transactional(timeout = WRITE_TIMEOUT_SECONDS)
+    public void saveNewBeer(BeerDto beerDto) {
+        //new beer gets new id, so there is nothing to invalidate and it is cached on first read
+        Beer saved = beerRepository.save(beerMapper.BeerDtoToBeer(beerDto));
+        BeerDto created = beerMapper.BeerToBeerDto(saved);
+        //initial stock goes to BeerStatsStore with created beer, afterwards stock is changed only by BeerInventoryService
+        created.setQuantityOnHand(saved.getQuantityOnHand());
+        afterCommit(() -> beerChangeLog.append(List.of(created)));
+    }
+
+    //all updatable fields of BeerDto are required, so full update is patch with every field present
+    @Override
+    @Transactional(timeout = WRITE_TIMEOUT_SECONDS)
+    public void updateBeer(UUID beerId, Integer expectedVersion, BeerDto beerDto) {
+        patchBeer(beerId, expectedVersion, beerDto);
+    }
+
+    @Override
+    @Transactional(timeout = WRITE_TIMEOUT_SECONDS)
+    public void patchBeer(UUID beerId, Integer expectedVersion, BeerDto beerDto) {
+        Timestamp lastModifiedDate = new Timestamp(System.currentTimeMillis());
+        int updated = beerRepository.updateBeer(beerId, expectedVersion == null ? null : expectedVersion.longValue(),
+            lastModifiedDate, beerDto.getBeerName(), beerDto.getBeerStyle() == null ? null : beerDto.getBeerStyle().name(),
+            beerDto.getPrice(), beerDto.getUpc());
+
+        if (updated == 0) {
+            //second statement is executed only when update failed - it tells missing beer from changed one
+            if (expectedVersion != null && beerRepository.existsById(beerId)) {
+                throw new BeerVersionConflictException("Beer " + beerId + " does not have version " + expectedVersion);
+            }
+            throw new BeerNotFoundException("Beer " + beerId + " does not exist");
+        }
+
+        //updated beer is not loaded, so cached one is dropped and loaded again by next read
+        //change log gets what is known without reading it - the beer is loaded when a subscriber reads the change
+        BeerDto patch = BeerDto.builder()
+            .id(beerId)
+            .version(expectedVersion == null ? null : expectedVersion + 1)
+            .lastModifiedDate(dateMapper.asOffsetDateTime(lastModifiedDate))
+            .beerName(beerDto.getBeerName())
+            .beerStyle(beerDto.getBeerStyle())
+            .price(beerDto.getPrice())
+            .upc(beerDto.getUpc())
+            .build();
+        afterCommit(() -> {
+            beerDtoCache.evict(beerId);
+            beerChangeLog.appendPatch(patch);
+        });
+    }
+
+    @Override
+    @Transactional(timeout = WRITE_TIMEOUT_SECONDS)
+    public int upsertBeers(List<BeerDto> beerDtos) {
+        Map<Long, Beer> beersByUpc = new HashMap<>();
+        beerRepository.findAllByUpcIn(beerDtos.stream().map(BeerDto::getUpc).collect(Collectors.toSet()))
+            .forEach(beer -> beersByUpc.put(beer.getUpc(), beer));
+
+        List<Beer> created = new ArrayList<>();
+        List<Beer> updated = new ArrayList<>();
+        for (BeerDto beerDto : beerDtos) {
+            Beer beer = beersByUpc.get(beerDto.getUpc());
+            if (beer == null) {
+                beer = beerMapper.BeerDtoToBeer(beerDto);
+                beersByUpc.put(beerDto.getUpc(), beer);
+                created.add(beer);
+            } else {
+                //managed beer - update is found by dirty checking on flush
+                applyChanges(beer, beerDto);
+                updated.add(beer);
+            }
+        }
+        beerRepository.saveAll(created);
+
+        //inserts and updates go to database in JDBC batches here and versions of updated beers are incremented
+        beerRepository.flushAndClear();
+
+        //beer created and then updated by the same batch is one change
+        Set<Beer> changed = new LinkedHashSet<>(created);
+        changed.addAll(updated);
+        List<BeerDto> changedDtos = toBeerDtos(new ArrayList<>(changed));
+        //created beers come first, with initial stock for BeerStatsStore (see saveNewBeer)
+        for (int i = 0; i < created.size(); i++) {
+            changedDtos.get(i).setQuantityOnHand(created.get(i).getQuantityOnHand());
+        }
+        //updated beers are evicted as by patchBeer - a read which loaded one of them before commit could put it back
+        // over a replaced one, eviction makes its load forgotten
+        afterCommit(() -> {
+            updated.forEach(beer -> beerDtoCache.evict(beer.getId()));
+            beerChangeLog.append(changedDtos);
+        });
+
+        return created.size();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportBeers(Consumer<BeerDto> consumer) {
+        try (Stream<Beer> beers = beerRepository.streamAll()) {
+            int read = 0;
+            for (Beer beer : (Iterable<Beer>) beers::iterator) {
+                consumer.accept(beerMapper.BeerToBeerDto(beer));
+
+                //persistence context keeps every loaded entity, so it is cleared after each fetched portion of rows
+                if (++read % BeerRepository.STREAM_FETCH_SIZE == 0) {
+                    beerRepository.clear();
+                }
+            }
+        }
+    }
+
+    //read only transaction - loaded beers are not snapshotted for dirty checking and nothing is flushed
+    @Override
+    @Transactional(readOnly = true)
+    public BeerPagedList listBeers(String beerName, BeerStyleEnum beerStyle, PageRequest pageRequest, boolean withTotal) {
+        pageRequest.getSort().forEach(order -> {
+            if (!SORTABLE_PROPERTIES.contains(order.getProperty())) {
+                throw new InvalidPageRequestException("Beers can not be sorted by '" + order.getProperty() + "'");
+            }
+        });
+        String style = beerStyle == null ? null : beerStyle.name();
+
+        Slice<Beer> slice = beerRepository.findBeerSlice(beerName, style, pageRequest);
+        List<BeerDto> content = toBeerDtos(slice.getContent());
+
+        if (!withTotal) {
+            return new BeerPagedList(content, pageRequest, slice.hasNext(), null);
+        }
+        //count(*) is skipped as well when total can be derived from the page itself - e.g. last page
+        Page<BeerDto> page = PageableExecutionUtils.getPage(content, pageRequest, () -> beerRepository.countBeers(beerName, style));
+        return new BeerPagedList(content, pageRequest, page.getTotalElements());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public BeerPagedList listBeersAfter(String beerName, BeerStyleEnum beerStyle, String cursor, int pageSize) {
+        BeerPageCursor after = BeerPageCursor.decode(cursor);
+        String style = beerStyle == null ? null : beerStyle.name();
+
+        //one extra row tells us if there is a next page
+        List<Beer> beers = after == null
+            ? beerRepository.findBeersAfter(beerName, style, null, null, pageSize + 1)
+            : beerRepository.findBeersAfter(beerName, style, after.getCreatedDate(), after.getId(), pageSize + 1);
+
+        boolean hasNext = beers.size() > pageSize;
+        List<Beer> content = hasNext ? beers.subList(0, pageSize) : beers;
+        String nextCursor = hasNext ? BeerPageCursor.of(content.get(content.size() - 1)).encode() : null;
+
+        return new BeerPagedList(toBeerDtos(content), PageRequest.of(0, pageSize, Sort.by("createdDate", "id")), hasNext,
+            nextCursor);
+    }
+
+    @Override
+    public List<BeerSuggestion> searchBeers(String prefix, BeerStyleEnum beerStyle, int limit) {
+        return beerNameIndex.search(prefix, beerStyle, limit);
+    }
+
+    @Override
+    public BeerStats getBeerStats() {
+        return beerStatsStore.getStats();
+    }
+
+    //stock waiting for write-behind is written first, so database has the same stock as statistics
+    //result is exact only when beers are not changed meanwhile
+    @Override
+    public BeerStatsCheck checkBeerStats() {
+        beerInventoryService.flush();
+        List<String> differences = beerStatsStore.compareWith(beerRepository.findStyleStats());
+        return new BeerStatsCheck(differences.isEmpty(), differences);
+    }
+
+    @Override
+    public String latestChangeCursor() {
+        return BeerChangeCursor.inBuffer(beerChangeLog.getEpoch(), beerChangeLog.getLastSequence(),
+            new Timestamp(System.currentTimeMillis()), LOWEST_ID).encode();
+    }
+
+    //cursor of other application run (or other instance) can not be used for the log, only its database position
+    //sequence is taken before database is read - whatever is committed afterwards is in the log after it
+    //catch up of subscriber which was in the log starts from low watermark of its position (see WRITE_TIMEOUT_SECONDS),
+    // so beers changed before the position but committed after it are not missed
+    @Override
+    public BeerChanges readChangesAfter(String cursor, int limit) {
+        BeerChangeCursor after = BeerChangeCursor.decode(cursor);
+        long epoch = beerChangeLog.getEpoch();
+        if (after == null) {
+            after = BeerChangeCursor.catchingUp(epoch, beerChangeLog.getLastSequence(), 0, null, null);
+        } else if (after.getEpoch() != epoch) {
+            after = BeerChangeCursor.catchingUp(epoch, beerChangeLog.getLastSequence(), 0,
+                lowWatermark(after.getLastModifiedDate()), LOWEST_ID);
+        } else if (!after.isCatchingUp()) {
+            List<BeerChange> changes = beerChangeLog.readAfter(after.getSequence(), limit, this::getBeersByIds);
+            if (changes != null) {
+                return new BeerChanges(changes, changes.isEmpty() ? cursor : changes.get(changes.size() - 1).getCursor());
+            }
+            //subscriber has fallen behind the log
+            after = BeerChangeCursor.catchingUp(epoch, beerChangeLog.getLastSequence(), after.getSequence(),
+                lowWatermark(after.getLastModifiedDate()), LOWEST_ID);
+        }
+        return readChangesFromDatabase(after, limit);
+    }
+
+    //IN list is padded to the next power of two by repeating one of the ids, so lookups of any size use only a few
+    // distinct statements, which stay in prepared statement and query plan caches; repeated id does not change the result
+    static List<UUID> padToBucket(Collection<UUID> ids) {
+        List<UUID> padded = new ArrayList<>(ids);
+        int bucket = padded.size() <= 1 ? 1 : Integer.highestOneBit(padded.size() - 1) << 1;
+        UUID last = padded.get(padded.size() - 1);
+        while (padded.size() < bucket) {
+            padded.add(last);
+        }
+        return padded;
+    }
+
+    //current state of beers changed after the cursor - several changes of one beer are read as one
+    //beers which subscriber has got from the log are skipped, more rows are read until the limit is filled
+    private BeerChanges readChangesFromDatabase(BeerChangeCursor after, int limit) {
+        List<BeerChange> changes = new ArrayList<>();
+        BeerChangeCursor position = after;
+        List<BeerView> beers;
+        int rows;
+        do {
+            rows = limit - changes.size();
+            beers = position.getLastModifiedDate() == null
+                ? beerRepository.findChanges(PageRequest.of(0, rows))
+                : beerRepository.findChangesAfter(position.getLastModifiedDate(), position.getId(), PageRequest.of(0, rows));
+            for (BeerView beer : beers) {
+                position = position.movedTo(beer.getLastModifiedDate(), beer.getId());
+                BeerDto beerDto = beerMapper.BeerViewToBeerDto(beer);
+                if (!beerChangeLog.isAppendedUpTo(beerDto.getId(), beerDto.getVersion(), position.getSeen())) {
+                    changes.add(new BeerChange(position.encode(), beerDto));
+                }
+            }
+        } while (beers.size() == rows && changes.size() < limit);
+
+        //when the log does not hold remembered sequence anymore, next read starts another catch up from this position
+        if (beers.size() < rows) {
+            position = position.caughtUp();
+        }
+        return new BeerChanges(changes, position.encode());
+    }
+
+    private static Timestamp lowWatermark(Timestamp lastModifiedDate) {
+        return lastModifiedDate == null ? null
+            : new Timestamp(lastModifiedDate.getTime() - TimeUnit.SECONDS.toMillis(WRITE_TIMEOUT_SECONDS));
+    }
+
+    private void applyChanges(Beer beer, BeerDto beerDto) {
+        beer.setBeerName(beerDto.getBeerName());
+        beer.setBeerStyle(beerDto.getBeerStyle().name());
+        beer.setPrice(beerDto.getPrice());
+        beer.setUpc(beerDto.getUpc());
+    }
+
+    //cache must not see versions of transaction which could be still rolled back
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private List<BeerDto> toBeerDtos(List<Beer> beers) {
+        return beerMapper.BeerToBeerDtos(beers);
+    }
+}
@@ -0,0 +1,500 @@
+package pl.kukla.krzys.testing.restdocs.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import pl.kukla.krzys.testing.restdocs.repository.BeerRepository;
+import pl.kukla.krzys.testing.restdocs.repository.BeerStyleStatsView;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerDto;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerStats;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerStats.BeerStyleStats;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerStyleEnum;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//count, min/avg/max price and stock of beers per style without GROUP BY over whole table on every read
+//totals are primitive arrays indexed by BeerStyleEnum ordinal; to subtract old values when beer changes style or
+// price, store keeps version, style, price in cents and stock of every beer (about a hundred bytes per beer)
+//built from database when application is ready, then follows BeerChangeLog (created and updated beers, with initial
+// stock of created ones) and stock written by BeerInventoryService; when it falls behind the log, it is built from
+// database again
+//min and max stay exact when beers leave them - number of beers at min and max is kept, and only when it drops to 0
+// the extreme of that style is found again by scanning beers in memory on next read
+//changes and stock written by committing threads are queued and applied by the store's own thread (and by reads,
+// which catch up first), so write latency does not depend on reads holding the store while they scan
+@Slf4j
+@Component
+public class BeerStatsStore implements DisposableBean {
+
+    private static final int LOG_BATCH = 1000;
+    private static final BeerStyleEnum[] STYLES = BeerStyleEnum.values();
+    //beer has not been seen in BeerChangeLog nor database yet, only its stock has changed
+    private static final long UNKNOWN_VERSION = -1;
+
+    private final BeerRepository beerRepository;
+    private final BeerChangeLog beerChangeLog;
+    private final ExecutorService builder = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("beer-stats-"));
+    private final ExecutorService applier = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("beer-stats-apply-"));
+    private final AtomicBoolean applyScheduled = new AtomicBoolean();
+    //stock deltas written but not applied yet
+    private final Queue<Map<UUID, Integer>> stockDeltas = new ConcurrentLinkedQueue<>();
+    //fields below are guarded by this
+    private Map<UUID, Entry> beers = new HashMap<>();
+    private Totals totals = new Totals();
+    private long appliedSequence;
+    private boolean building;
+    private boolean rebuildRequested;
+    //beers changed while building, reconciled with what has been read from database
+    private final Set<UUID> changedDuringBuild = new HashSet<>();
+    //stock written after database has been read
+    private final Map<UUID, Long> stockDuringBuild = new HashMap<>();
+    //stock writes wait while database is read, so every write is either seen by the read or added after it
+    private final ReadWriteLock stockWrites = new ReentrantReadWriteLock();
+
+    public BeerStatsStore(BeerRepository beerRepository, BeerChangeLog beerChangeLog) {
+        this.beerRepository = beerRepository;
+        this.beerChangeLog = beerChangeLog;
+        this.appliedSequence = beerChangeLog.getLastSequence();
+        beerChangeLog.addListener(this::scheduleApply);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    //statistics are read from database again in background, reads get the current ones meanwhile
+    //needed after beers are written behind BeerChangeLog, e.g. seeded by BeerLoader
+    public synchronized void rebuild() {
+        if (building) {
+            rebuildRequested = true;
+        } else {
+            startBuild();
+        }
+    }
+
+    //styles without beers are left out
+    public synchronized BeerStats getStats() {
+        catchUp();
+        totals.refreshExtremes(beers);
+        List<BeerStyleStats> styles = new ArrayList<>();
+        for (int style = 0; style < STYLES.length; style++) {
+            if (totals.count[style] > 0) {
+                styles.add(totals.styleStats(style));
+            }
+        }
+        return new BeerStats(styles);
+    }
+
+    //write of stock behind BeerInventoryService and change of statistics by the written deltas are one step for build
+    // of statistics - it holds writes back while it reads database; reservations do not take this lock nor the store
+    public void writeStock(Map<UUID, Integer> deltas, Runnable write) {
+        stockWrites.readLock().lock();
+        try {
+            write.run();
+            addStock(deltas);
+        } finally {
+            stockWrites.readLock().unlock();
+        }
+    }
+
+    //deltas are queued under read lock of stock writes, so build of statistics sees every one written before it
+    void addStock(Map<UUID, Integer> deltas) {
+        stockDeltas.add(deltas);
+        scheduleApply();
+    }
+
+    //beer which has not been seen yet keeps its stock until its style is known
+    private void applyStock() {
+        Map<UUID, Integer> deltas;
+        while ((deltas = stockDeltas.poll()) != null) {
+            deltas.forEach((beerId, delta) -> {
+                Entry entry = beers.computeIfAbsent(beerId, id -> new Entry());
+                entry.stock += delta;
+                if (entry.style >= 0) {
+                    totals.stock[entry.style] += delta;
+                }
+                if (building) {
+                    stockDuringBuild.merge(beerId, (long) delta, Long::sum);
+                }
+            });
+        }
+    }
+
+    //differences between these statistics and full recompute in database, empty when they are the same
+    //beers of styles which are not in BeerStyleEnum are not part of statistics
+    public synchronized List<String> compareWith(List<BeerStyleStatsView> recomputed) {
+        catchUp();
+        totals.refreshExtremes(beers);
+        List<String> differences = new ArrayList<>();
+        boolean[] compared = new boolean[STYLES.length];
+        for (BeerStyleStatsView view : recomputed) {
+            int style = style(view.getBeerStyle());
+            if (style < 0) {
+                continue;
+            }
+            compared[style] = true;
+            BeerStyleStats expected = new Totals(view).styleStats(0);
+            expected.setBeerStyle(STYLES[style]);
+            compare(differences, expected, totals.styleStats(style));
+        }
+        for (int style = 0; style < STYLES.length; style++) {
+            if (!compared[style] && totals.count[style] > 0) {
+                differences.add(STYLES[style] + ": " + totals.count[style] + " beers, none in database");
+            }
+        }
+        return differences;
+    }
+
+    @Override
+    public void destroy() {
+        builder.shutdownNow();
+        applier.shutdownNow();
+    }
+
+    //runs on thread which appended to the log or wrote stock - it only hands the work over
+    private void scheduleApply() {
+        if (applyScheduled.compareAndSet(false, true)) {
+            applier.execute(() -> {
+                //cleared first, so what is queued while applying schedules the next run
+                applyScheduled.set(false);
+                catchUp();
+            });
+        }
+    }
+
+    //work per change is a few array updates
+    private synchronized void catchUp() {
+        applyStock();
+        applyChanges();
+    }
+
+    private void applyChanges() {
+        List<BeerChangeLog.Logged> changes;
+        while ((changes = beerChangeLog.readLoggedAfter(appliedSequence, LOG_BATCH)) != null && !changes.isEmpty()) {
+            changes.forEach(change -> apply(change.getBeer(), change.isPatch()));
+            appliedSequence += changes.size();
+        }
+        if (changes == null) {
+            log.warn("Beer statistics have fallen behind change log, they are built from database again");
+            appliedSequence = beerChangeLog.getLastSequence();
+            rebuild();
+        }
+    }
+
+    //late change of older version is ignored
+    //patch changes only fields it has, unknown version of patch is the next one; beer which has not been seen yet can
+    // not be patched, so statistics are built again
+    private void apply(BeerDto beer, boolean patch) {
+        Entry entry = beers.get(beer.getId());
+        if (patch && (entry == null || entry.version == UNKNOWN_VERSION)) {
+            rebuild();
+            return;
+        }
+        if (entry == null) {
+            entry = new Entry();
+            beers.put(beer.getId(), entry);
+        }
+        long version = beer.getVersion() != null ? beer.getVersion() : patch ? entry.version + 1 : 0;
+        if (entry.version > version) {
+            return;
+        }
+        totals.remove(entry);
+        //stock of beer seen for the first time is its initial stock, later it changes only by written stock
+        if (!patch && entry.version == UNKNOWN_VERSION && beer.getQuantityOnHand() != null) {
+            entry.stock += beer.getQuantityOnHand();
+        }
+        entry.version = version;
+        if (!patch || beer.getBeerStyle() != null) {
+            entry.style = (byte) (beer.getBeerStyle() == null ? -1 : beer.getBeerStyle().ordinal());
+        }
+        if (!patch || beer.getPrice() != null) {
+            entry.setPrice(beer.getPrice());
+        }
+        totals.add(entry);
+        if (building) {
+            changedDuringBuild.add(beer.getId());
+        }
+    }
+
+    private void startBuild() {
+        building = true;
+        int expected = beers.size();
+        builder.execute(() -> {
+            Map<UUID, Entry> read;
+            try {
+                read = read(expected);
+            } catch (RuntimeException e) {
+                log.error("Beer statistics could not be built", e);
+                read = null;
+            }
+            finishBuild(read);
+        });
+    }
+
+    private Map<UUID, Entry> read(int expected) {
+        long start = System.nanoTime();
+        Map<UUID, Entry> read = new HashMap<>(Math.max(16, expected * 4 / 3));
+        stockWrites.writeLock().lock();
+        try {
+            //stock written so far is in database, including the queued one
+            synchronized (this) {
+                applyStock();
+                stockDuringBuild.clear();
+            }
+            beerRepository.readBeerStats((id, version, beerStyle, price, quantityOnHand) -> {
+                Entry entry = new Entry();
+                entry.version = version;
+                entry.style = (byte) style(beerStyle);
+                entry.setPrice(price);
+                entry.stock = quantityOnHand == null ? 0 : quantityOnHand;
+                read.put(id, entry);
+            });
+        } finally {
+            stockWrites.writeLock().unlock();
+        }
+        log.info("Statistics of {} beers built from database in {} ms", read.size(), (System.nanoTime() - start) / 1_000_000);
+        return read;
+    }
+
+    //newer version of every beer changed meanwhile wins; stock written after the read is added to stock read from
+    // database; beer created after the read is taken as it is
+    private synchronized void finishBuild(Map<UUID, Entry> read) {
+        if (read != null) {
+            Totals built = new Totals();
+            Set<UUID> changed = new HashSet<>(changedDuringBuild);
+            changed.addAll(stockDuringBuild.keySet());
+            read.values().forEach(built::add);
+            for (UUID id : changed) {
+                Entry live = beers.get(id);
+                Entry entry = read.get(id);
+                if (entry == null) {
+                    read.put(id, live);
+                    built.add(live);
+                    continue;
+                }
+                built.remove(entry);
+                if (changedDuringBuild.contains(id) && live.version >= entry.version) {
+                    entry.version = live.version;
+                    entry.style = live.style;
+                    entry.priced = live.priced;
+                    entry.priceCents = live.priceCents;
+                }
+                entry.stock += stockDuringBuild.getOrDefault(id, 0L);
+                built.add(entry);
+            }
+            beers = read;
+            totals = built;
+        }
+        changedDuringBuild.clear();
+        stockDuringBuild.clear();
+        building = false;
+        if (rebuildRequested) {
+            rebuildRequested = false;
+            startBuild();
+        }
+    }
+
+    private static void compare(List<String> differences, BeerStyleStats expected, BeerStyleStats actual) {
+        if (!expected.equals(actual)) {
+            differences.add(expected.getBeerStyle() + ": " + actual + ", database has " + expected);
+        }
+    }
+
+    private static int style(String beerStyle) {
+        for (BeerStyleEnum style : STYLES) {
+            if (style.name().equals(beerStyle)) {
+                return style.ordinal();
+            }
+        }
+        return -1;
+    }
+
+    //statistics of every style, array index is ordinal of style
+    //min and max are valid only when there is a beer at them, otherwise they are bounds the real ones are above/below
+    private static final class Totals {
+
+        private final long[] count;
+        private final long[] priced;
+        private final long[] sumCents;
+        private final long[] minCents;
+        private final long[] maxCents;
+        private final long[] atMin;
+        private final long[] atMax;
+        private final long[] stock;
+
+        private Totals() {
+            this(STYLES.length);
+        }
+
+        private Totals(int styles) {
+            count = new long[styles];
+            priced = new long[styles];
+            sumCents = new long[styles];
+            minCents = new long[styles];
+            maxCents = new long[styles];
+            atMin = new long[styles];
+            atMax = new long[styles];
+            stock = new long[styles];
+        }
+
+        //single style totals of database row, so they are compared the same way
+        private Totals(BeerStyleStatsView view) {
+            this(1);
+            count[0] = view.getCount();
+            priced[0] = view.getPriced();
+            if (priced[0] > 0) {
+                sumCents[0] = cents(view.getSumPrice());
+                minCents[0] = cents(view.getMinPrice());
+                maxCents[0] = cents(view.getMaxPrice());
+            }
+            stock[0] = view.getQuantityOnHand() == null ? 0 : view.getQuantityOnHand();
+        }
+
+        private void add(Entry entry) {
+            int style = entry.style;
+            if (style < 0) {
+                return;
+            }
+            count[style]++;
+            stock[style] += entry.stock;
+            if (!entry.priced) {
+                return;
+            }
+            long price = entry.priceCents;
+            if (priced[style]++ == 0 || price < minCents[style]) {
+                minCents[style] = price;
+                atMin[style] = 0;
+            }
+            if (priced[style] == 1 || price > maxCents[style]) {
+                maxCents[style] = price;
+                atMax[style] = 0;
+            }
+            sumCents[style] += price;
+            //when nobody was at the bound anymore, this beer is alone at it - the others are beyond it
+            if (price == minCents[style]) {
+                atMin[style]++;
+            }
+            if (price == maxCents[style]) {
+                atMax[style]++;
+            }
+        }
+
+        private void remove(Entry entry) {
+            int style = entry.style;
+            if (style < 0) {
+                return;
+            }
+            count[style]--;
+            stock[style] -= entry.stock;
+            if (!entry.priced) {
+                return;
+            }
+            long price = entry.priceCents;
+            priced[style]--;
+            sumCents[style] -= price;
+            if (price == minCents[style]) {
+                atMin[style]--;
+            }
+            if (price == maxCents[style]) {
+                atMax[style]--;
+            }
+        }
+
+        //scan of beers only for styles whose min or max has been left by every beer at it
+        private void refreshExtremes(Map<UUID, Entry> beers) {
+            boolean[] stale = new boolean[count.length];
+            boolean any = false;
+            for (int style = 0; style < count.length; style++) {
+                stale[style] = priced[style] > 0 && (atMin[style] == 0 || atMax[style] == 0);
+                any |= stale[style];
+            }
+            if (!any) {
+                return;
+            }
+            for (int style = 0; style < count.length; style++) {
+                if (stale[style]) {
+                    minCents[style] = Long.MAX_VALUE;
+                    maxCents[style] = Long.MIN_VALUE;
+                    atMin[style] = 0;
+                    atMax[style] = 0;
+                }
+            }
+            for (Entry entry : beers.values()) {
+                int style = entry.style;
+                if (style < 0 || !stale[style] || !entry.priced) {
+                    continue;
+                }
+                long price = entry.priceCents;
+                if (price < minCents[style]) {
+                    minCents[style] = price;
+                    atMin[style] = 0;
+                }
+                if (price == minCents[style]) {
+                    atMin[style]++;
+                }
+                if (price > maxCents[style]) {
+                    maxCents[style] = price;
+                    atMax[style] = 0;
+                }
+                if (price == maxCents[style]) {
+                    atMax[style]++;
+                }
+            }
+        }
+
+        private BeerStyleStats styleStats(int style) {
+            long n = priced[style];
+            return new BeerStyleStats(STYLES[style], count[style],
+                n == 0 ? null : price(minCents[style]),
+                n == 0 ? null : price(sumCents[style]).divide(BigDecimal.valueOf(n), 2, RoundingMode.HALF_UP),
+                n == 0 ? null : price(maxCents[style]),
+                stock[style]);
+        }
+    }
+
+    //what has been added to totals for one beer
+    private static final class Entry {
+
+        private long version = UNKNOWN_VERSION;
+        private byte style = -1;
+        private boolean priced;
+        private long priceCents;
+        private long stock;
+
+        private void setPrice(BigDecimal price) {
+            priced = price != null;
+            priceCents = priced ? cents(price) : 0;
+        }
+    }
+
+    //prices are stored with 2 decimal places, the same rounding as database applies
+    private static long cents(BigDecimal price) {
+        return price.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private static BigDecimal price(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+}
@@ -0,0 +1,12 @@
+package pl.kukla.krzys.testing.restdocs.services;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//thrown when beer was changed by someone else since client read the version it sends with update
+public class BeerVersionConflictException extends RuntimeException {
+
+    public BeerVersionConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,12 @@
+package pl.kukla.krzys.testing.restdocs.services;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//thrown when reservation would take stock of beer below its minOnHand
+public class InsufficientStockException extends RuntimeException {
+
+    public InsufficientStockException(String message) {
+        super(message);
+    }
+}
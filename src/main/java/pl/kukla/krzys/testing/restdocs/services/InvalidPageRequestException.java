@@ -0,0 +1,12 @@
+package pl.kukla.krzys.testing.restdocs.services;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//thrown when client asks for a page which can not be served, e.g. unknown sort property or malformed cursor
+public class InvalidPageRequestException extends RuntimeException {
+
+    public InvalidPageRequestException(String message) {
+        super(message);
+    }
+}
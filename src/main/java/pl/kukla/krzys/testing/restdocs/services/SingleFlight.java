@@ -0,0 +1,123 @@
+package pl.kukla.krzys.testing.restdocs.services;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//concurrent calls for the same key share one execution of the loader and its result (or exception)
+//first caller (leader) runs the loader on its own thread, the others (followers) wait for its future
+//bookkeeping is a ConcurrentHashMap of futures - a new key is registered by CAS into an empty bin, or under the lock
+// of a single bin only, and no lock is held while the loader runs, so loads of different keys never wait for each other
+public class SingleFlight<K, V> implements MeterBinder {
+
+    private final String name;
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder leaders = new LongAdder();
+    private final LongAdder followers = new LongAdder();
+
+    public SingleFlight(String name) {
+        this.name = name;
+    }
+
+    public V execute(K key, Supplier<V> loader) {
+        return execute(key, flight -> loader.get());
+    }
+
+    //loader gets the flight, so it can check whether its result is still current before publishing it anywhere
+    public V execute(K key, Function<Flight, V> loader) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, future);
+        if (running != null) {
+            followers.increment();
+            return join(running);
+        }
+
+        leaders.increment();
+        Flight flight = new Flight(key, future);
+        try {
+            V value = loader.apply(flight);
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    //running loader is not stopped, but callers coming after this do not join it and its flight stops being current
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("beer.singleflight.calls", leaders, LongAdder::doubleValue)
+            .tag("name", name)
+            .tag("role", "leader")
+            .description("Calls which executed the loader")
+            .register(registry);
+        FunctionCounter.builder("beer.singleflight.calls", followers, LongAdder::doubleValue)
+            .tag("name", name)
+            .tag("role", "coalesced")
+            .description("Calls which shared result of a loader already running for the same key")
+            .register(registry);
+        Gauge.builder("beer.singleflight.in.flight", inFlight, ConcurrentMap::size)
+            .tag("name", name)
+            .description("Keys being loaded right now")
+            .register(registry);
+    }
+
+    long leaderCount() {
+        return leaders.sum();
+    }
+
+    long coalescedCount() {
+        return followers.sum();
+    }
+
+    //followers rethrow exception of the leader as it is, not wrapped in CompletionException
+    private static <V> V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    public final class Flight {
+
+        private final K key;
+        private final CompletableFuture<V> future;
+
+        private Flight(K key, CompletableFuture<V> future) {
+            this.key = key;
+            this.future = future;
+        }
+
+        //false once the key was forgotten, e.g. because the loaded entity has been changed meanwhile
+        public boolean isCurrent() {
+            return inFlight.get(key) == future;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package pl.kukla.krzys.testing.restdocs.services;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//thrown when release or restock would take stock of beer above the largest quantity database can hold
+public class StockLimitExceededException extends RuntimeException {
+
+    public StockLimitExceededException(String message) {
+        super(message);
+    }
+}
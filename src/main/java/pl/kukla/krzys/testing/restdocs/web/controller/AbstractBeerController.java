@@ -0,0 +1,561 @@
+package pl.kukla.krzys.testing.restdocs.web.controller;
+
+/**
+ * @author Krzysztof Kukla
+ */
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.server.ResponseStatusException;
+import pl.kukla.krzys.testing.restdocs.services.BeerService;
+import pl.kukla.krzys.testing.restdocs.services.BeerVersionConflictException;
+import pl.kukla.krzys.testing.restdocs.web.idempotency.IdempotencyStore;
+import pl.kukla.krzys.testing.restdocs.web.idempotency.IdempotentResponse;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerBatchResult;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerDto;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerLookupResult;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerPagedList;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerSearchResult;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerStats;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerStatsCheck;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerStyleEnum;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validator;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+//endpoints shared by both execution modes - BeerController handles single beer requests on servlet container thread,
+// AsyncBeerController (when beer.async.enabled=true) hands them over to bounded executor
+//single beer requests are served by do* methods here, so both modes return the same responses
+@RequiredArgsConstructor
+public abstract class AbstractBeerController {
+
+    private static final int DEFAULT_PAGE_NUMBER = 0;
+    private static final int DEFAULT_PAGE_SIZE = 25;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int DEFAULT_SEARCH_LIMIT = 10;
+    private static final int MAX_SEARCH_LIMIT = 100;
+
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    public static final String TEXT_CSV_VALUE = "text/csv";
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+    private static final MediaType APPLICATION_SMILE = MediaType.valueOf(APPLICATION_SMILE_VALUE);
+    //formats beer and pages are negotiated between, ETag of beer in binary format ends with its suffix
+    private static final String JSON = "";
+    private static final String CBOR = "cbor";
+    private static final String SMILE = "smile";
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
+    public static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+
+    private static final String CSV_HEADER = "id,version,createdDate,lastModifiedDate,beerName,beerStyle,upc,price,quantityOnHand";
+
+    protected final BeerService beerService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final IdempotencyStore idempotencyStore;
+    private final BeerChangeStream beerChangeStream;
+
+    //number of beers written in one transaction, should be multiple of hibernate.jdbc.batch_size
+    @Value("${beer.batch.chunk-size:500}")
+    private int batchChunkSize;
+
+    //one lookup is one query, so its IN list stays small enough for database and statement caches
+    @Value("${beer.lookup.max-ids:100}")
+    private int lookupMaxIds;
+
+    //converters of every format, their ObjectMappers read streamed bodies the same way as @RequestBody is read
+    @Autowired
+    private HttpMessageConverters httpMessageConverters;
+
+    //present only when beer.payload-cache.enabled=true, then single beers are written as cached bytes
+    @Autowired(required = false)
+    private BeerPayloadCache beerPayloadCache;
+
+    //when 'cursor' parameter is present (even empty one - that means first page) keyset pagination is used
+    // and 'pageNumber' and 'sort' are ignored, beers are then ordered by createdDate
+    @GetMapping
+    public ResponseEntity<BeerPagedList> listBeers(@RequestParam(value = "pageNumber", required = false) Integer pageNumber,
+                                                   @RequestParam(value = "pageSize", required = false) Integer pageSize,
+                                                   @RequestParam(value = "beerName", required = false) String beerName,
+                                                   @RequestParam(value = "beerStyle", required = false) BeerStyleEnum beerStyle,
+                                                   @RequestParam(value = "cursor", required = false) String cursor,
+                                                   @RequestParam(value = "withTotal", defaultValue = "false") boolean withTotal,
+                                                   Sort sort) {
+        int size = pageSize == null || pageSize < 1 ? DEFAULT_PAGE_SIZE : Math.min(pageSize, MAX_PAGE_SIZE);
+
+        if (cursor != null) {
+            return new ResponseEntity<>(beerService.listBeersAfter(beerName, beerStyle, cursor, size), negotiated(new HttpHeaders()),
+                HttpStatus.OK);
+        }
+
+        int number = pageNumber == null || pageNumber < 0 ? DEFAULT_PAGE_NUMBER : pageNumber;
+        return new ResponseEntity<>(beerService.listBeers(beerName, beerStyle, PageRequest.of(number, size, sort), withTotal),
+            negotiated(new HttpHeaders()), HttpStatus.OK);
+    }
+
+    //typeahead - beers with a word of name starting with 'prefix' (case insensitive), answered from in-memory index
+    // without database access (see BeerNameIndex)
+    @GetMapping("/search")
+    public ResponseEntity<BeerSearchResult> searchBeers(@RequestParam("prefix") String prefix,
+                                                        @RequestParam(value = "style", required = false) BeerStyleEnum style,
+                                                        @RequestParam(value = "limit", required = false) Integer limit) {
+        if (prefix.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Prefix must not be blank");
+        }
+        int size = limit == null || limit < 1 ? DEFAULT_SEARCH_LIMIT : Math.min(limit, MAX_SEARCH_LIMIT);
+        return new ResponseEntity<>(new BeerSearchResult(beerService.searchBeers(prefix.strip(), style, size)), HttpStatus.OK);
+    }
+
+    //dashboard statistics per style, answered from memory without GROUP BY over the table
+    @GetMapping("/stats")
+    public ResponseEntity<BeerStats> getBeerStats() {
+        return new ResponseEntity<>(beerService.getBeerStats(), HttpStatus.OK);
+    }
+
+    //full recompute in database compared with in-memory statistics - diagnostic, it reads whole table
+    @GetMapping("/stats/check")
+    public ResponseEntity<BeerStatsCheck> checkBeerStats() {
+        return new ResponseEntity<>(beerService.checkBeerStats(), HttpStatus.OK);
+    }
+
+    //whole catalog is streamed straight from database cursor to response, so memory use does not depend on number of beers
+    //CSV is written when it is preferred in Accept header, NDJSON otherwise
+    @GetMapping(path = "/export", produces = {APPLICATION_NDJSON_VALUE, TEXT_CSV_VALUE})
+    public void exportBeers(@RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                            HttpServletResponse response) throws IOException {
+        boolean csv = prefersCsv(accept);
+        response.setContentType(csv ? TEXT_CSV_VALUE : APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8))) {
+            if (csv) {
+                writer.write(CSV_HEADER);
+                writer.write('\n');
+                beerService.exportBeers(beerDto -> writeCsvLine(writer, beerDto));
+            } else {
+                //writer is flushed by buffer only, not after each beer
+                try (SequenceWriter beers = objectMapper.writerFor(BeerDto.class)
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                    .withRootValueSeparator("\n")
+                    .writeValues(writer)) {
+                    beerService.exportBeers(beerDto -> writeValue(beers, beerDto));
+                }
+            }
+        }
+    }
+
+    //Server-Sent Events of created and updated beers, connection does not hold a thread (see BeerChangeStream)
+    //feed is resumed from Last-Event-ID header, which EventSource sends when it reconnects, or from 'cursor' parameter;
+    // empty cursor starts from the beginning, without both only changes from now on are sent
+    //response is written by BeerChangeStream with non-blocking servlet IO, not by message converters
+    @GetMapping(path = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public void streamChanges(@RequestHeader(value = LAST_EVENT_ID_HEADER, required = false) String lastEventId,
+                              @RequestParam(value = "cursor", required = false) String cursor,
+                              HttpServletRequest request, HttpServletResponse response) throws IOException {
+        beerChangeStream.subscribe(lastEventId != null ? lastEventId : cursor, request, response);
+    }
+
+    //body is JSON array or NDJSON (one beer per line) and it is read as a stream, so size of batch is not limited by memory
+    //CBOR and Smile bodies are an array or a sequence of beers of that format
+    //every beer is validated on its own - invalid ones are reported by index and the others are saved in chunks
+    @PostMapping(path = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE,
+        MediaType.APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE})
+    public ResponseEntity<BeerBatchResult> saveBeers(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                     InputStream body) throws IOException {
+        BeerBatchResult result = new BeerBatchResult();
+        List<BeerDto> chunk = new ArrayList<>(batchChunkSize);
+        List<Integer> chunkIndexes = new ArrayList<>(batchChunkSize);
+
+        ObjectMapper bodyMapper = objectMapperFor(MediaType.parseMediaType(contentType));
+        try (MappingIterator<BeerDto> beers = bodyMapper.readerFor(BeerDto.class).readValues(body)) {
+            for (int index = 0; beers.hasNextValue(); index++) {
+                BeerDto beerDto;
+                try {
+                    beerDto = beers.nextValue();
+                } catch (JsonMappingException e) {
+                    result.addError(index, List.of(e.getOriginalMessage()));
+                    continue;
+                }
+
+                Set<ConstraintViolation<BeerDto>> violations = validator.validate(beerDto);
+                if (!violations.isEmpty()) {
+                    result.addError(index, violations.stream()
+                        .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                        .collect(Collectors.toList()));
+                    continue;
+                }
+
+                chunk.add(beerDto);
+                chunkIndexes.add(index);
+                if (chunk.size() == batchChunkSize) {
+                    upsertChunk(chunk, chunkIndexes, result);
+                }
+            }
+        }
+        upsertChunk(chunk, chunkIndexes, result);
+
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+
+    //ETag is built from id, version and format of body (bytes of CBOR and Smile differ from JSON ones), Last-Modified
+    // from lastModifiedDate
+    //conditional request is answered from version lookup only - when beer has not changed it is neither loaded
+    // nor serialized and 304 is returned, otherwise Spring compares headers once more against the loaded beer
+    protected ResponseEntity<?> doGetBeerById(UUID beerId, HttpHeaders requestHeaders) {
+        if (!requestHeaders.getIfNoneMatch().isEmpty() || requestHeaders.containsKey(HttpHeaders.IF_MODIFIED_SINCE)) {
+            Optional<BeerDto> version = beerService.getBeerVersion(beerId);
+            String format = format(requestHeaders);
+            if (version.isPresent() && isNotModified(requestHeaders, version.get(), format)) {
+                return new ResponseEntity<>(negotiated(validators(version.get(), format)), HttpStatus.NOT_MODIFIED);
+            }
+        }
+
+        return beerResponse(beerService.getBeerById(beerId), requestHeaders);
+    }
+
+    //items are in the order of requested ids, beers which do not exist have found=false
+    protected ResponseEntity<BeerLookupResult> doLookupBeers(List<UUID> beerIds) {
+        if (beerIds.size() > lookupMaxIds) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + lookupMaxIds + " beers can be looked up at once");
+        }
+        if (beerIds.contains(null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Beer id can not be null");
+        }
+        if (beerIds.isEmpty()) {
+            return new ResponseEntity<>(new BeerLookupResult(List.of()), negotiated(new HttpHeaders()), HttpStatus.OK);
+        }
+        return new ResponseEntity<>(BeerLookupResult.of(beerIds, beerService.getBeersByIds(beerIds)), negotiated(new HttpHeaders()),
+            HttpStatus.OK);
+    }
+
+    protected ResponseEntity<?> doGetBeerByUpc(Long upc, HttpHeaders requestHeaders) {
+        return beerResponse(beerService.getBeerByUpc(upc), requestHeaders);
+    }
+
+    //cached payloads are JSON, beer in other format is written by its message converter
+    private ResponseEntity<?> beerResponse(BeerDto beerDto, HttpHeaders requestHeaders) {
+        String format = format(requestHeaders);
+        if (beerPayloadCache != null && JSON.equals(format)) {
+            return beerPayloadCache.toResponse(beerDto, requestHeaders, validators(beerDto, format));
+        }
+        return new ResponseEntity<>(beerDto, negotiated(validators(beerDto, format)), HttpStatus.OK);
+    }
+
+    //with Idempotency-Key retried request gets response of the first one and database is not touched again,
+    // the same key with other body is rejected with 422
+    protected ResponseEntity doSaveNewBeer(String idempotencyKey, BeerDto beerDto) {
+        if (idempotencyKey == null) {
+            return saveNewBeer(beerDto);
+        }
+        if (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                IDEMPOTENCY_KEY_HEADER + " has to have 1 to " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
+
+        IdempotentResponse response = idempotencyStore.execute("saveNewBeer:" + idempotencyKey, fingerprint(beerDto),
+            () -> IdempotentResponse.of(saveNewBeer(beerDto)));
+
+        HttpHeaders replayed = new HttpHeaders();
+        if (response.isReplayed()) {
+            replayed.set(IDEMPOTENT_REPLAYED_HEADER, "true");
+        }
+        return response.toResponseEntity(replayed);
+    }
+
+    private ResponseEntity saveNewBeer(BeerDto beerDto) {
+        beerService.saveNewBeer(beerDto);
+
+        return new ResponseEntity(HttpStatus.CREATED);
+    }
+
+    //update is a single statement - with If-Match it is applied only when beer still has version client has read
+    // and new ETag is returned, so client can send next update without reading beer again
+    protected ResponseEntity doUpdateBeerById(UUID beerId, HttpHeaders requestHeaders, BeerDto beerDto) {
+        Integer expectedVersion = expectedVersion(beerId, requestHeaders);
+        beerService.updateBeer(beerId, expectedVersion, beerDto);
+
+        return new ResponseEntity(updatedValidators(beerId, requestHeaders, expectedVersion), HttpStatus.NO_CONTENT);
+    }
+
+    //only fields present in body are changed, so only they are validated - body is not annotated with @Validated
+    //called by handler before doPatchBeerById, on the thread request is read on like @Validated is
+    protected void validatePatch(BeerDto beerDto) {
+        Set<ConstraintViolation<BeerDto>> violations = validatePresentFields(beerDto);
+        if (!violations.isEmpty()) {
+            throw new ConstraintViolationException(violations);
+        }
+    }
+
+    //body has been validated by validatePatch
+    protected ResponseEntity doPatchBeerById(UUID beerId, HttpHeaders requestHeaders, BeerDto beerDto) {
+        Integer expectedVersion = expectedVersion(beerId, requestHeaders);
+        beerService.patchBeer(beerId, expectedVersion, beerDto);
+
+        return new ResponseEntity(updatedValidators(beerId, requestHeaders, expectedVersion), HttpStatus.NO_CONTENT);
+    }
+
+    //NDJSON is not known to message converters, it is read by JSON ObjectMapper
+    private ObjectMapper objectMapperFor(MediaType contentType) {
+        return httpMessageConverters.getConverters().stream()
+            .filter(converter -> converter instanceof AbstractJackson2HttpMessageConverter)
+            .map(converter -> (AbstractJackson2HttpMessageConverter) converter)
+            .filter(converter -> converter.canRead(BeerDto.class, contentType))
+            .map(AbstractJackson2HttpMessageConverter::getObjectMapper)
+            .findFirst()
+            .orElse(objectMapper);
+    }
+
+    //format of beer and pages - the most specific and preferred type of Accept header which is JSON, CBOR or Smile
+    //no Accept header or wildcard means JSON, the first converter
+    private static String format(HttpHeaders requestHeaders) {
+        List<MediaType> accept = new ArrayList<>(requestHeaders.getAccept());
+        MediaType.sortBySpecificityAndQuality(accept);
+        for (MediaType type : accept) {
+            if (type.includes(MediaType.APPLICATION_JSON)) {
+                return JSON;
+            }
+            if (type.includes(MediaType.APPLICATION_CBOR)) {
+                return CBOR;
+            }
+            if (type.includes(APPLICATION_SMILE)) {
+                return SMILE;
+            }
+        }
+        return JSON;
+    }
+
+    //body depends on Accept, so shared caches have to key responses on it
+    private static HttpHeaders negotiated(HttpHeaders headers) {
+        headers.setVary(List.of(HttpHeaders.ACCEPT));
+        return headers;
+    }
+
+    private boolean prefersCsv(String accept) {
+        if (accept == null) {
+            return false;
+        }
+        List<MediaType> mediaTypes = MediaType.parseMediaTypes(accept);
+        MediaType.sortBySpecificityAndQuality(mediaTypes);
+        MediaType csv = MediaType.parseMediaType(TEXT_CSV_VALUE);
+        MediaType ndjson = MediaType.parseMediaType(APPLICATION_NDJSON_VALUE);
+        for (MediaType mediaType : mediaTypes) {
+            if (mediaType.isWildcardType() || mediaType.isWildcardSubtype()) {
+                continue;
+            }
+            if (mediaType.isCompatibleWith(csv) || mediaType.isCompatibleWith(ndjson)) {
+                return mediaType.isCompatibleWith(csv);
+            }
+        }
+        return false;
+    }
+
+    private void writeValue(SequenceWriter beers, BeerDto beerDto) {
+        try {
+            beers.write(beerDto);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeCsvLine(Writer writer, BeerDto beerDto) {
+        try {
+            writer.write(String.join(",",
+                csvField(beerDto.getId()),
+                csvField(beerDto.getVersion()),
+                csvField(beerDto.getCreatedDate()),
+                csvField(beerDto.getLastModifiedDate()),
+                csvField(beerDto.getBeerName()),
+                csvField(beerDto.getBeerStyle()),
+                csvField(beerDto.getUpc()),
+                csvField(beerDto.getPrice() == null ? null : beerDto.getPrice().toPlainString()),
+                csvField(beerDto.getQuantityOnHand())));
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //RFC 4180 - field containing separator, quote or new line is quoted and quotes inside are doubled
+    private static String csvField(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String field = value.toString();
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0) {
+            return field;
+        }
+        return '"' + field.replace("\"", "\"\"") + '"';
+    }
+
+    //chunk is one transaction - when database rejects it, all its beers are reported as failed and next chunks go on
+    private void upsertChunk(List<BeerDto> chunk, List<Integer> chunkIndexes, BeerBatchResult result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            int created = beerService.upsertBeers(chunk);
+            result.setCreated(result.getCreated() + created);
+            result.setUpdated(result.getUpdated() + chunk.size() - created);
+        } catch (DataAccessException e) {
+            List<String> messages = List.of("rejected by database: " + e.getMostSpecificCause().getMessage());
+            chunkIndexes.forEach(index -> result.addError(index, messages));
+        }
+        chunk.clear();
+        chunkIndexes.clear();
+    }
+
+    //RFC 7232 - If-None-Match is evaluated first and If-Modified-Since only when there is no If-None-Match
+    //it is evaluated here and not by WebRequest.checkNotModified, because async handlers do not run on request thread
+    private static boolean isNotModified(HttpHeaders requestHeaders, BeerDto beerDto, String format) {
+        List<String> ifNoneMatch = requestHeaders.getIfNoneMatch();
+        if (!ifNoneMatch.isEmpty()) {
+            String eTag = eTag(beerDto, format);
+            return eTag != null && ifNoneMatch.stream()
+                .anyMatch(candidate -> "*".equals(candidate) || withoutWeakPrefix(candidate).equals(eTag));
+        }
+        long lastModified = lastModified(beerDto);
+        try {
+            long ifModifiedSince = requestHeaders.getIfModifiedSince();
+            //HTTP dates have second precision
+            return ifModifiedSince != -1 && lastModified != -1 && lastModified / 1000 <= ifModifiedSince / 1000;
+        } catch (IllegalArgumentException e) {
+            //not valid date is ignored
+            return false;
+        }
+    }
+
+    //canonical form of request body - every property of beer in fixed order, price without trailing zeros and dates as
+    // instants, so the same beer written differently (order of properties, 12.95 or 12.950) is the same request
+    private String fingerprint(BeerDto beerDto) {
+        try {
+            return DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(Arrays.asList(
+                beerDto.getId(),
+                beerDto.getVersion(),
+                beerDto.getCreatedDate() == null ? null : beerDto.getCreatedDate().toInstant().toString(),
+                beerDto.getLastModifiedDate() == null ? null : beerDto.getLastModifiedDate().toInstant().toString(),
+                beerDto.getBeerName(),
+                beerDto.getBeerStyle(),
+                beerDto.getUpc(),
+                beerDto.getPrice() == null ? null : beerDto.getPrice().stripTrailingZeros().toPlainString(),
+                beerDto.getQuantityOnHand())));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //If-Match holds ETag of beer as client has read it, in any format; '*' matches any existing beer
+    //weak ETag, ETag of other beer or not parsable one can never match current beer, so it is a conflict as well
+    private static Integer expectedVersion(UUID beerId, HttpHeaders requestHeaders) {
+        List<String> ifMatch = requestHeaders.getIfMatch();
+        if (ifMatch.isEmpty() || ifMatch.contains("*")) {
+            return null;
+        }
+        String prefix = "\"" + beerId + "-";
+        for (String eTag : ifMatch) {
+            if (eTag.startsWith(prefix) && eTag.endsWith("\"")) {
+                String version = eTag.substring(prefix.length(), eTag.length() - 1);
+                int format = version.indexOf('-');
+                if (format >= 0 && !CBOR.equals(version.substring(format + 1)) && !SMILE.equals(version.substring(format + 1))) {
+                    continue;
+                }
+                try {
+                    return Integer.valueOf(format < 0 ? version : version.substring(0, format));
+                } catch (NumberFormatException e) {
+                    //not our ETag
+                }
+            }
+        }
+        throw new BeerVersionConflictException("Beer " + beerId + " does not match " + String.join(", ", ifMatch));
+    }
+
+    //successful update increments version by one, so new ETag is known without reading beer
+    //it is ETag of format in Accept, the one client reads beer in
+    private static HttpHeaders updatedValidators(UUID beerId, HttpHeaders requestHeaders, Integer expectedVersion) {
+        if (expectedVersion == null) {
+            return new HttpHeaders();
+        }
+        return validators(BeerDto.builder().id(beerId).version(expectedVersion + 1).build(), format(requestHeaders));
+    }
+
+    private Set<ConstraintViolation<BeerDto>> validatePresentFields(BeerDto beerDto) {
+        BeanWrapper beer = new BeanWrapperImpl(beerDto);
+        Set<ConstraintViolation<BeerDto>> violations = new HashSet<>();
+        validator.getConstraintsForClass(BeerDto.class).getConstrainedProperties().forEach(property -> {
+            if (beer.getPropertyValue(property.getPropertyName()) != null) {
+                violations.addAll(validator.validateProperty(beerDto, property.getPropertyName()));
+            }
+        });
+        return violations;
+    }
+
+    private static String withoutWeakPrefix(String eTag) {
+        return eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+    }
+
+    private static HttpHeaders validators(BeerDto beerDto, String format) {
+        HttpHeaders headers = new HttpHeaders();
+        if (beerDto.getVersion() != null) {
+            headers.setETag(eTag(beerDto, format));
+        }
+        if (beerDto.getLastModifiedDate() != null) {
+            headers.setLastModified(lastModified(beerDto));
+        }
+        return headers;
+    }
+
+    private static String eTag(BeerDto beerDto, String format) {
+        if (beerDto.getVersion() == null) {
+            return null;
+        }
+        return "\"" + beerDto.getId() + "-" + beerDto.getVersion() + (format.isEmpty() ? "" : "-" + format) + "\"";
+    }
+
+    private static long lastModified(BeerDto beerDto) {
+        return beerDto.getLastModifiedDate() == null ? -1 : beerDto.getLastModifiedDate().toInstant().toEpochMilli();
+    }
+
+}
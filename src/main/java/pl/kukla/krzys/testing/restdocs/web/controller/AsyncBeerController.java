@@ -0,0 +1,85 @@
+package pl.kukla.krzys.testing.restdocs.web.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import pl.kukla.krzys.testing.restdocs.services.BeerService;
+import pl.kukla.krzys.testing.restdocs.web.idempotency.IdempotencyStore;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerDto;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerLookupResult;
+
+import javax.validation.Validator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//opt-in execution mode (beer.async.enabled=true) - the same single beer endpoints as BeerController,
+// but database work runs on BeerRequestExecutor and servlet container thread is released at once
+//request body is read and validated still on container thread, before work is queued
+@ConditionalOnProperty(name = "beer.async.enabled", havingValue = "true")
+@RequestMapping("/api/v1/beer")
+@RestController
+public class AsyncBeerController extends AbstractBeerController {
+
+    private final BeerRequestExecutor beerRequestExecutor;
+
+    public AsyncBeerController(BeerService beerService, ObjectMapper objectMapper, Validator validator,
+                               IdempotencyStore idempotencyStore, BeerChangeStream beerChangeStream,
+                               BeerRequestExecutor beerRequestExecutor) {
+        super(beerService, objectMapper, validator, idempotencyStore, beerChangeStream);
+        this.beerRequestExecutor = beerRequestExecutor;
+    }
+
+    @GetMapping("/{beerId}")
+    public CompletableFuture<ResponseEntity<?>> getBeerById(@PathVariable("beerId") UUID beerId,
+                                                            @RequestHeader HttpHeaders headers) {
+        return beerRequestExecutor.submit(() -> doGetBeerById(beerId, headers));
+    }
+
+    @GetMapping("/upc/{upc}")
+    public CompletableFuture<ResponseEntity<?>> getBeerByUpc(@PathVariable("upc") Long upc,
+                                                             @RequestHeader HttpHeaders headers) {
+        return beerRequestExecutor.submit(() -> doGetBeerByUpc(upc, headers));
+    }
+
+    @PostMapping("/lookup")
+    public CompletableFuture<ResponseEntity<BeerLookupResult>> lookupBeers(@RequestBody List<UUID> beerIds) {
+        return beerRequestExecutor.submit(() -> doLookupBeers(beerIds));
+    }
+
+    @PostMapping
+    public CompletableFuture<ResponseEntity> saveNewBeer(
+        @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+        @RequestBody @Validated BeerDto beerDto) {
+        return beerRequestExecutor.submit(() -> doSaveNewBeer(idempotencyKey, beerDto));
+    }
+
+    @PutMapping("/{beerId}")
+    public CompletableFuture<ResponseEntity> updateBeerById(@PathVariable("beerId") UUID beerId,
+                                                            @RequestHeader HttpHeaders headers,
+                                                            @RequestBody @Validated BeerDto beerDto) {
+        return beerRequestExecutor.submit(() -> doUpdateBeerById(beerId, headers, beerDto));
+    }
+
+    @PatchMapping("/{beerId}")
+    public CompletableFuture<ResponseEntity> patchBeerById(@PathVariable("beerId") UUID beerId,
+                                                           @RequestHeader HttpHeaders headers,
+                                                           @RequestBody BeerDto beerDto) {
+        validatePatch(beerDto);
+        return beerRequestExecutor.submit(() -> doPatchBeerById(beerId, headers, beerDto));
+    }
+}
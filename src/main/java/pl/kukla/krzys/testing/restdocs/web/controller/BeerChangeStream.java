@@ -0,0 +1,345 @@
+package pl.kukla.krzys.testing.restdocs.web.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import pl.kukla.krzys.testing.restdocs.services.BeerChangeLog;
+import pl.kukla.krzys.testing.restdocs.services.BeerService;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerChange;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerChanges;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerDto;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//Server-Sent Events feed of created and updated beers (GET /api/v1/beer/changes)
+//open connection holds no thread - request stays in async mode and a few fan-out threads write to subscribers
+// which have something to send, one batch per turn, so subscriber far behind does not starve the others
+//subscriber keeps only its cursor and reads shared BeerChangeLog, so memory does not grow with slow subscribers -
+// they fall behind the log and are caught up from database
+//every event carries its cursor as SSE id, EventSource sends it back in Last-Event-ID header when it reconnects
+//event of logged change is rendered once for all subscribers and every batch goes out as one write and one flush
+//writes are non-blocking (servlet WriteListener) - batch is handed to the container only when the connection is
+// ready, otherwise the turn ends and the subscriber is scheduled again by onWritePossible, so a subscriber which
+// stopped reading holds neither a fan-out thread nor more than one batch; when it is not ready for
+// beer.changes.write-timeout it is dropped
+//heartbeat comments find connections closed by clients
+@Component
+public class BeerChangeStream implements MeterBinder, DisposableBean {
+
+    private static final MediaType TEXT_EVENT_STREAM_UTF8 = new MediaType(MediaType.TEXT_EVENT_STREAM, StandardCharsets.UTF_8);
+    private static final String EVENT_NAME = "beer";
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final BeerService beerService;
+    private final ObjectWriter beerWriter;
+    private final int batchSize;
+    private final int maxSubscribers;
+    private final Duration timeout;
+    private final long writeTimeoutNanos;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    //weak keys - events of changes which are neither in the log nor being sent are dropped
+    private final Cache<BeerChange, byte[]> events;
+    private final ExecutorService fanOut;
+    //notifies subscribers about new changes and heartbeats, so committing request thread does not iterate them
+    private final ScheduledExecutorService dispatcher;
+    private final AtomicBoolean dispatchPending = new AtomicBoolean();
+
+    public BeerChangeStream(BeerService beerService, BeerChangeLog beerChangeLog, ObjectMapper objectMapper,
+                            @Value("${beer.changes.buffer-size:10000}") int bufferSize,
+                            @Value("${beer.changes.batch-size:100}") int batchSize,
+                            @Value("${beer.changes.threads:4}") int threads,
+                            @Value("${beer.changes.max-subscribers:10000}") int maxSubscribers,
+                            @Value("${beer.changes.timeout:30m}") Duration timeout,
+                            @Value("${beer.changes.heartbeat:15s}") Duration heartbeat,
+                            @Value("${beer.changes.write-timeout:30s}") Duration writeTimeout) {
+        this.beerService = beerService;
+        this.beerWriter = objectMapper.writerFor(BeerDto.class);
+        this.batchSize = batchSize;
+        this.maxSubscribers = maxSubscribers;
+        this.timeout = timeout;
+        this.writeTimeoutNanos = writeTimeout.toNanos();
+        this.events = Caffeine.newBuilder()
+            .weakKeys()
+            .maximumSize(bufferSize)
+            .build();
+        this.fanOut = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("beer-changes-"));
+        this.dispatcher = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("beer-changes-dispatcher-"));
+        dispatcher.scheduleWithFixedDelay(() -> subscribers.forEach(Subscriber::heartbeat),
+            heartbeat.toMillis(), heartbeat.toMillis(), TimeUnit.MILLISECONDS);
+        long checkMillis = Math.max(1, Math.min(heartbeat.toMillis(), writeTimeout.toMillis()) / 2);
+        dispatcher.scheduleWithFixedDelay(this::dropStalled, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+        beerChangeLog.addListener(this::changed);
+    }
+
+    //null cursor means changes from now on
+    //cursor is checked and first batch is read on request thread, so invalid cursor is rejected with 400 before
+    // the stream starts; then the request goes to async mode and it is written by fan-out threads only
+    public void subscribe(String cursor, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (subscribers.size() >= maxSubscribers) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many subscribers of beer changes");
+        }
+        BeerChanges first = beerService.readChangesAfter(cursor == null ? beerService.latestChangeCursor() : cursor, batchSize);
+
+        //proxies must not buffer the stream
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(TEXT_EVENT_STREAM_UTF8.toString());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        response.setHeader("X-Accel-Buffering", "no");
+
+        AsyncContext asyncContext = request.startAsync(request, response);
+        asyncContext.setTimeout(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(asyncContext, response.getOutputStream(), first.getCursor());
+        asyncContext.addListener(subscriber);
+        subscriber.pending = render(first.getChanges());
+        subscribers.add(subscriber);
+        //changes appended since the first read and the rest of full first batch
+        subscriber.changed.set(true);
+        subscriber.start();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("beer.changes.subscribers", subscribers, Set::size)
+            .description("Open connections of beer change feed")
+            .register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        dispatcher.shutdownNow();
+        fanOut.shutdownNow();
+        subscribers.forEach(Subscriber::drop);
+    }
+
+    //appends which come while subscribers are being notified are covered by one more notification
+    private void changed() {
+        if (dispatchPending.compareAndSet(false, true)) {
+            dispatcher.execute(() -> {
+                dispatchPending.set(false);
+                subscribers.forEach(Subscriber::signal);
+            });
+        }
+    }
+
+    private void dropStalled() {
+        long now = System.nanoTime();
+        subscribers.forEach(subscriber -> {
+            long blockedSince = subscriber.blockedSince;
+            if (blockedSince != 0 && now - blockedSince > writeTimeoutNanos) {
+                subscriber.drop();
+            }
+        });
+    }
+
+    private byte[] render(List<BeerChange> changes) {
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        for (BeerChange change : changes) {
+            batch.writeBytes(events.get(change, this::render));
+        }
+        return batch.toByteArray();
+    }
+
+    //data of SSE event is one line, beer JSON does not contain line breaks
+    private byte[] render(BeerChange change) {
+        try {
+            return ("id:" + change.getCursor() + "\nevent:" + EVENT_NAME + "\ndata:" + beerWriter.writeValueAsString(change.getBeer())
+                + "\n\n").getBytes(StandardCharsets.UTF_8);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //at most one turn of a subscriber runs at the same time, so its output stream is written by one thread only
+    //batch is read only when the previous one has been handed to the container, subscriber which does not read stays
+    // at its cursor and falls behind the log
+    private class Subscriber implements Runnable, WriteListener, AsyncListener {
+
+        private final AsyncContext asyncContext;
+        private final ServletOutputStream out;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean changed = new AtomicBoolean();
+        private final AtomicBoolean heartbeatDue = new AtomicBoolean();
+        private final AtomicBoolean writePossible = new AtomicBoolean();
+        //turns wait for the first onWritePossible, until then the stream is not in non-blocking mode
+        private volatile boolean started;
+        //fields below are touched by turns only
+        private String cursor;
+        private byte[] pending;
+        private boolean flushPending;
+        //when the connection stopped being ready for data which is waiting, 0 when nothing waits
+        private volatile long blockedSince;
+
+        private Subscriber(AsyncContext asyncContext, ServletOutputStream out, String cursor) {
+            this.asyncContext = asyncContext;
+            this.out = out;
+            this.cursor = cursor;
+        }
+
+        //container calls onWritePossible as soon as the listener is set and the connection is ready
+        //servlet containers support non-blocking writes since Servlet 3.1, MockMvc does not - there writes are
+        // blocking and always ready
+        void start() {
+            try {
+                out.setWriteListener(this);
+            } catch (UnsupportedOperationException e) {
+                started = true;
+                schedule();
+            }
+        }
+
+        void signal() {
+            changed.set(true);
+            schedule();
+        }
+
+        void heartbeat() {
+            heartbeatDue.set(true);
+            schedule();
+        }
+
+        @Override
+        public void onWritePossible() {
+            started = true;
+            writePossible.set(true);
+            schedule();
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            //client has gone
+            drop();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            drop();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            subscribers.remove(this);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            drop();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+
+        @Override
+        public void run() {
+            writePossible.set(false);
+            try {
+                if (write()) {
+                    if (changed.getAndSet(false)) {
+                        BeerChanges changes = beerService.readChangesAfter(cursor, batchSize);
+                        if (!changes.getChanges().isEmpty()) {
+                            pending = render(changes.getChanges());
+                            heartbeatDue.set(false);
+                        }
+                        cursor = changes.getCursor();
+                        if (changes.getChanges().size() == batchSize) {
+                            changed.set(true);
+                        }
+                    } else if (heartbeatDue.getAndSet(false)) {
+                        pending = HEARTBEAT;
+                    }
+                    write();
+                }
+            } catch (IOException | RuntimeException e) {
+                //client has gone, database is not available or request has timed out meanwhile - client reconnects
+                // with last id
+                drop();
+                return;
+            }
+            scheduled.set(false);
+            //nothing more is read while data waits for the connection, onWritePossible schedules the next turn then
+            if (writePossible.get() || pending == null && !flushPending && (changed.get() || heartbeatDue.get())) {
+                schedule();
+            }
+        }
+
+        //hands pending data to the container and flushes it as far as the connection is ready, true when all is done
+        //non-blocking write takes all given bytes, the container keeps what the connection does not take yet
+        private boolean write() throws IOException {
+            if (pending != null) {
+                if (!out.isReady()) {
+                    return blocked();
+                }
+                out.write(pending);
+                pending = null;
+                flushPending = true;
+            }
+            if (flushPending) {
+                if (!out.isReady()) {
+                    return blocked();
+                }
+                out.flush();
+                flushPending = false;
+            }
+            blockedSince = 0;
+            return true;
+        }
+
+        private boolean blocked() {
+            if (blockedSince == 0) {
+                blockedSince = System.nanoTime();
+            }
+            return false;
+        }
+
+        void drop() {
+            if (subscribers.remove(this)) {
+                try {
+                    asyncContext.complete();
+                } catch (IllegalStateException e) {
+                    //request has been completed meanwhile
+                }
+            }
+        }
+
+        private void schedule() {
+            if (started && scheduled.compareAndSet(false, true)) {
+                fanOut.execute(this);
+            }
+        }
+    }
+}
@@ -4,60 +4,80 @@ package pl.kukla.krzys.testing.restdocs.web.controller;
  * @author Krzysztof Kukla
  */
 
-import lombok.RequiredArgsConstructor;
-import org.springframework.http.HttpStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
-import pl.kukla.krzys.testing.restdocs.repository.BeerRepository;
-import pl.kukla.krzys.testing.restdocs.web.mapper.BeerMapper;
+import pl.kukla.krzys.testing.restdocs.services.BeerService;
+import pl.kukla.krzys.testing.restdocs.web.idempotency.IdempotencyStore;
 import pl.kukla.krzys.testing.restdocs.web.model.BeerDto;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerLookupResult;
 
+import javax.validation.Validator;
+import java.util.List;
 import java.util.UUID;
 
-@RequiredArgsConstructor
+//default execution mode - request is handled on servlet container thread
+@ConditionalOnProperty(name = "beer.async.enabled", havingValue = "false", matchIfMissing = true)
 @RequestMapping("/api/v1/beer")
 @RestController
-public class BeerController {
+public class BeerController extends AbstractBeerController {
 
-    private final BeerMapper beerMapper;
-
-    //typically we should use service layer here
-    //but to simplify we use repository directly
-    private final BeerRepository beerRepository;
+    public BeerController(BeerService beerService, ObjectMapper objectMapper, Validator validator,
+                          IdempotencyStore idempotencyStore, BeerChangeStream beerChangeStream) {
+        super(beerService, objectMapper, validator, idempotencyStore, beerChangeStream);
+    }
 
     @GetMapping("/{beerId}")
-    public ResponseEntity<BeerDto> getBeerById(@PathVariable("beerId") UUID beerId){
+    public ResponseEntity<?> getBeerById(@PathVariable("beerId") UUID beerId, @RequestHeader HttpHeaders headers){
 
-        return new ResponseEntity<>(beerMapper.BeerToBeerDto(beerRepository.findById(beerId).get()), HttpStatus.OK);
+        return doGetBeerById(beerId, headers);
     }
 
-    @PostMapping
-    public ResponseEntity saveNewBeer(@RequestBody @Validated BeerDto beerDto){
+    //barcode lookup for POS integrations
+    @GetMapping("/upc/{upc}")
+    public ResponseEntity<?> getBeerByUpc(@PathVariable("upc") Long upc, @RequestHeader HttpHeaders headers){
 
-        beerRepository.save(beerMapper.BeerDtoToBeer(beerDto));
+        return doGetBeerByUpc(upc, headers);
+    }
+
+    //many beers in one round trip, body is JSON array of ids
+    @PostMapping("/lookup")
+    public ResponseEntity<BeerLookupResult> lookupBeers(@RequestBody List<UUID> beerIds){
 
-        return new ResponseEntity(HttpStatus.CREATED);
+        return doLookupBeers(beerIds);
+    }
+
+    @PostMapping
+    public ResponseEntity saveNewBeer(@RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                      @RequestBody @Validated BeerDto beerDto){
+
+        return doSaveNewBeer(idempotencyKey, beerDto);
     }
 
     @PutMapping("/{beerId}")
-    public ResponseEntity updateBeerById(@PathVariable("beerId") UUID beerId, @RequestBody @Validated BeerDto beerDto){
-        beerRepository.findById(beerId).ifPresent(beer -> {
-            beer.setBeerName(beerDto.getBeerName());
-            beer.setBeerStyle(beerDto.getBeerStyle().name());
-            beer.setPrice(beerDto.getPrice());
-            beer.setUpc(beerDto.getUpc());
+    public ResponseEntity updateBeerById(@PathVariable("beerId") UUID beerId, @RequestHeader HttpHeaders headers,
+                                         @RequestBody @Validated BeerDto beerDto){
+
+        return doUpdateBeerById(beerId, headers, beerDto);
+    }
 
-            beerRepository.save(beer);
-        });
+    @PatchMapping("/{beerId}")
+    public ResponseEntity patchBeerById(@PathVariable("beerId") UUID beerId, @RequestHeader HttpHeaders headers,
+                                        @RequestBody BeerDto beerDto){
+        validatePatch(beerDto);
 
-        return new ResponseEntity(HttpStatus.NO_CONTENT);
+        return doPatchBeerById(beerId, headers, beerDto);
     }
 
 }
@@ -0,0 +1,68 @@
+package pl.kukla.krzys.testing.restdocs.web.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import pl.kukla.krzys.testing.restdocs.services.BeerInventoryService;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerInventory;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerInventoryRequest;
+
+import java.util.UUID;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//stock of beer is answered from memory of BeerInventoryService and written to database behind requests
+@RequestMapping("/api/v1/beer/{beerId}/inventory")
+@RestController
+public class BeerInventoryController {
+
+    private final BeerInventoryService beerInventoryService;
+
+    public BeerInventoryController(BeerInventoryService beerInventoryService) {
+        this.beerInventoryService = beerInventoryService;
+    }
+
+    @GetMapping
+    public ResponseEntity<BeerInventory> getInventory(@PathVariable("beerId") UUID beerId) {
+
+        return new ResponseEntity<>(beerInventoryService.getInventory(beerId), HttpStatus.OK);
+    }
+
+    @PostMapping("/reserve")
+    public ResponseEntity<BeerInventory> reserve(@PathVariable("beerId") UUID beerId,
+                                                 @RequestBody @Validated BeerInventoryRequest request) {
+
+        return new ResponseEntity<>(beerInventoryService.reserve(beerId, quantity(request)), HttpStatus.OK);
+    }
+
+    @PostMapping("/release")
+    public ResponseEntity<BeerInventory> release(@PathVariable("beerId") UUID beerId,
+                                                 @RequestBody @Validated BeerInventoryRequest request) {
+
+        return new ResponseEntity<>(beerInventoryService.release(beerId, quantity(request)), HttpStatus.OK);
+    }
+
+    //without body or quantity beer is brewed in its quantityToBrew
+    @PostMapping("/restock")
+    public ResponseEntity<BeerInventory> restock(@PathVariable("beerId") UUID beerId,
+                                                 @RequestBody(required = false) @Validated BeerInventoryRequest request) {
+
+        Integer quantity = request == null ? null : request.getQuantity();
+        return new ResponseEntity<>(beerInventoryService.restock(beerId, quantity), HttpStatus.OK);
+    }
+
+    private static int quantity(BeerInventoryRequest request) {
+        if (request.getQuantity() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Quantity is required");
+        }
+        return request.getQuantity();
+    }
+}
@@ -0,0 +1,148 @@
+package pl.kukla.krzys.testing.restdocs.web.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerDto;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//opt-in (beer.payload-cache.enabled=true) cache of single beer responses - JSON bytes of every beer and their gzip
+// version are kept by id and version, so the same version of beer is serialized and compressed only once
+//new version of beer has new key, old ones are dropped when cache exceeds its size in bytes
+//gzip version is prepared only for payloads of at least beer.payload-cache.compression-min-size and only when it is smaller
+@Component
+@ConditionalOnProperty(name = "beer.payload-cache.enabled", havingValue = "true")
+public class BeerPayloadCache implements MeterBinder {
+
+    private static final String CACHE_NAME = "beerPayload";
+    private static final String GZIP = "gzip";
+
+    private final ObjectWriter beerWriter;
+    private final int compressionMinSize;
+    private final Cache<String, Payload> cache;
+
+    public BeerPayloadCache(ObjectMapper objectMapper,
+                            @Value("${beer.payload-cache.maximum-size:64MB}") DataSize maximumSize,
+                            @Value("${beer.payload-cache.compression-min-size:256B}") DataSize compressionMinSize) {
+        this.beerWriter = objectMapper.writerFor(BeerDto.class);
+        this.compressionMinSize = (int) compressionMinSize.toBytes();
+        this.cache = Caffeine.newBuilder()
+            .maximumWeight(maximumSize.toBytes())
+            .<String, Payload>weigher((key, payload) -> payload.size())
+            .recordStats()
+            .build();
+    }
+
+    //beer without version can not be told from its other versions, so it is serialized every time and not cached
+    public ResponseEntity<byte[]> toResponse(BeerDto beerDto, HttpHeaders requestHeaders, HttpHeaders responseHeaders) {
+        Payload payload = beerDto.getVersion() == null
+            ? payload(beerDto)
+            : cache.get(beerDto.getId() + ":" + beerDto.getVersion(), key -> payload(beerDto));
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(responseHeaders);
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        //JSON is written only when it is preferred in Accept (see AbstractBeerController), so shared caches key on it too
+        headers.setVary(List.of(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING));
+        if (payload.gzip != null && acceptsGzip(requestHeaders.getFirst(HttpHeaders.ACCEPT_ENCODING))) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, GZIP);
+            return new ResponseEntity<>(payload.gzip, headers, HttpStatus.OK);
+        }
+        return new ResponseEntity<>(payload.json, headers, HttpStatus.OK);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+    }
+
+    //RFC 7231 - gzip is accepted when it is listed, or covered by '*', with quality greater than 0
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean wildcard = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            boolean accepted = quality(parts) > 0;
+            if (GZIP.equalsIgnoreCase(name) || "x-gzip".equalsIgnoreCase(name)) {
+                return accepted;
+            }
+            if ("*".equals(name)) {
+                wildcard = accepted;
+            }
+        }
+        return Boolean.TRUE.equals(wildcard);
+    }
+
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private Payload payload(BeerDto beerDto) {
+        try {
+            byte[] json = beerWriter.writeValueAsBytes(beerDto);
+            byte[] gzip = json.length >= compressionMinSize ? gzip(json) : null;
+            return new Payload(json, gzip != null && gzip.length < json.length ? gzip : null);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static class Payload {
+
+        private final byte[] json;
+        private final byte[] gzip;
+
+        private Payload(byte[] json, byte[] gzip) {
+            this.json = json;
+            this.gzip = gzip;
+        }
+
+        private int size() {
+            return json.length + (gzip == null ? 0 : gzip.length);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package pl.kukla.krzys.testing.restdocs.web.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//bounded pool for database work of async handlers, servlet container thread is released as soon as work is queued
+//when all threads are busy and queue is full, work is rejected at once - client gets 503 instead of waiting
+//time spent in queue and time of execution are measured separately
+@Component
+@ConditionalOnProperty(name = "beer.async.enabled", havingValue = "true")
+public class BeerRequestExecutor implements DisposableBean {
+
+    private final ThreadPoolExecutor executor;
+    private final Timer queueWaitTimer;
+    private final Timer executionTimer;
+
+    //threads should not outnumber database connections, otherwise they would just wait for the pool
+    public BeerRequestExecutor(@Value("${beer.async.threads:10}") int threads,
+                               @Value("${beer.async.queue-capacity:100}") int queueCapacity,
+                               MeterRegistry meterRegistry) {
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("beer-request-"),
+            new ThreadPoolExecutor.AbortPolicy());
+        this.queueWaitTimer = Timer.builder("beer.request.queue.wait")
+            .description("Time async beer request waits for free thread")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        this.executionTimer = Timer.builder("beer.request.execution")
+            .description("Time async beer request runs on its thread")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        new ExecutorServiceMetrics(executor, "beerRequest", Collections.emptyList()).bindTo(meterRegistry);
+    }
+
+    //throws RejectedExecutionException when executor is saturated
+    public <T> CompletableFuture<T> submit(Supplier<T> work) {
+        long queuedAt = System.nanoTime();
+        return CompletableFuture.supplyAsync(() -> {
+            long startedAt = System.nanoTime();
+            queueWaitTimer.record(startedAt - queuedAt, TimeUnit.NANOSECONDS);
+            try {
+                return work.get();
+            } finally {
+                executionTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            }
+        }, executor);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
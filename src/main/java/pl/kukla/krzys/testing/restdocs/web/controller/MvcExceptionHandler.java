@@ -3,14 +3,24 @@ package pl.kukla.krzys.testing.restdocs.web.controller;
 /**
  * @author Krzysztof Kukla
  */
+import com.fasterxml.jackson.core.JsonParseException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import pl.kukla.krzys.testing.restdocs.services.BeerNotFoundException;
+import pl.kukla.krzys.testing.restdocs.services.BeerVersionConflictException;
+import pl.kukla.krzys.testing.restdocs.services.InsufficientStockException;
+import pl.kukla.krzys.testing.restdocs.services.InvalidPageRequestException;
+import pl.kukla.krzys.testing.restdocs.services.StockLimitExceededException;
+import pl.kukla.krzys.testing.restdocs.web.idempotency.IdempotencyKeyReusedException;
 
 import javax.validation.ConstraintViolationException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Created by jt on 2019-05-25.
@@ -27,4 +37,52 @@ public class MvcExceptionHandler {
         return new ResponseEntity<>(errorsList, HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler(InvalidPageRequestException.class)
+    public ResponseEntity<List> invalidPageRequestHandler(InvalidPageRequestException ex){
+        return new ResponseEntity<>(Collections.singletonList(ex.getMessage()), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(BeerNotFoundException.class)
+    public ResponseEntity<List> beerNotFoundHandler(BeerNotFoundException ex){
+        return new ResponseEntity<>(Collections.singletonList(ex.getMessage()), HttpStatus.NOT_FOUND);
+    }
+
+    @ExceptionHandler(BeerVersionConflictException.class)
+    public ResponseEntity<List> beerVersionConflictHandler(BeerVersionConflictException ex){
+        return new ResponseEntity<>(Collections.singletonList(ex.getMessage()), HttpStatus.CONFLICT);
+    }
+
+    //reservation would take stock below minOnHand of beer
+    @ExceptionHandler(InsufficientStockException.class)
+    public ResponseEntity<List> insufficientStockHandler(InsufficientStockException ex){
+        return new ResponseEntity<>(Collections.singletonList(ex.getMessage()), HttpStatus.CONFLICT);
+    }
+
+    //release or restock would take stock above what database can hold
+    @ExceptionHandler(StockLimitExceededException.class)
+    public ResponseEntity<List> stockLimitExceededHandler(StockLimitExceededException ex){
+        return new ResponseEntity<>(Collections.singletonList(ex.getMessage()), HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    public ResponseEntity<List> idempotencyKeyReusedHandler(IdempotencyKeyReusedException ex){
+        return new ResponseEntity<>(Collections.singletonList(ex.getMessage()), HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    //malformed JSON in streamed request body, e.g. batch of beers
+    @ExceptionHandler(JsonParseException.class)
+    public ResponseEntity<List> jsonParseErrorHandler(JsonParseException ex){
+        return new ResponseEntity<>(Collections.singletonList(ex.getOriginalMessage()), HttpStatus.BAD_REQUEST);
+    }
+
+    //async request executor is saturated - client should come back later instead of queueing up
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<List> rejectedExecutionHandler(RejectedExecutionException ex){
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "1");
+
+        return new ResponseEntity<>(Collections.singletonList("Too many requests in progress"), headers,
+            HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
 }
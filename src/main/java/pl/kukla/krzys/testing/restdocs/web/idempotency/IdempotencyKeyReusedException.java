@@ -0,0 +1,12 @@
+package pl.kukla.krzys.testing.restdocs.web.idempotency;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//thrown when client sends the same Idempotency-Key with other request body - it is a client error, not a retry
+public class IdempotencyKeyReusedException extends RuntimeException {
+
+    public IdempotencyKeyReusedException(String message) {
+        super(message);
+    }
+}
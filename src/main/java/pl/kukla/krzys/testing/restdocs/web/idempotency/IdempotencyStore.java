@@ -0,0 +1,19 @@
+package pl.kukla.krzys.testing.restdocs.web.idempotency;
+
+import java.util.function.Supplier;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//remembers responses of requests sent with Idempotency-Key header, so retried request is answered with the same
+// response without being executed again
+//implementations have to be bounded and let keys expire; InMemoryIdempotencyStore is used by default, store shared
+// by more instances (e.g. JDBC one with key as primary key) replaces it when its bean is marked @Primary
+public interface IdempotencyStore {
+
+    //request is executed only for key seen first time, otherwise its stored response is returned as replayed one
+    //concurrent requests with the same key wait for the one which executes
+    //when request fails with exception, nothing is stored and key can be used again
+    //throws IdempotencyKeyReusedException when key was used with other fingerprint (other request body)
+    IdempotentResponse execute(String key, String fingerprint, Supplier<IdempotentResponse> request);
+}
@@ -0,0 +1,37 @@
+package pl.kukla.krzys.testing.restdocs.web.idempotency;
+
+import lombok.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//response which is replayed for retried request - status and headers only, so store does not need to serialize body
+//'replayed' tells whether the request which got it has not been executed, but answered by stored response
+@Value
+public class IdempotentResponse {
+
+    int status;
+    Map<String, List<String>> headers;
+    boolean replayed;
+
+    public static IdempotentResponse of(ResponseEntity<?> responseEntity) {
+        return new IdempotentResponse(responseEntity.getStatusCodeValue(), Map.copyOf(responseEntity.getHeaders()), false);
+    }
+
+    public IdempotentResponse replayed() {
+        return new IdempotentResponse(status, headers, true);
+    }
+
+    public ResponseEntity<?> toResponseEntity(HttpHeaders additionalHeaders) {
+        HttpHeaders responseHeaders = new HttpHeaders();
+        responseHeaders.putAll(headers);
+        responseHeaders.putAll(additionalHeaders);
+        return new ResponseEntity<>(responseHeaders, HttpStatus.valueOf(status));
+    }
+}
@@ -0,0 +1,84 @@
+package pl.kukla.krzys.testing.restdocs.web.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//keys live in bounded Caffeine cache of one application instance, they expire after given time since first request
+//key is stored together with future of its response before request is executed - concurrent duplicates wait
+// for that future, so cache itself is never locked while request runs
+@Component
+public class InMemoryIdempotencyStore implements IdempotencyStore, MeterBinder {
+
+    private static final String CACHE_NAME = "idempotency";
+
+    private final Cache<String, Entry> cache;
+
+    public InMemoryIdempotencyStore(@Value("${beer.idempotency.maximum-size:100000}") long maximumSize,
+                                    @Value("${beer.idempotency.expire-after-write:24h}") Duration expireAfterWrite) {
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(expireAfterWrite)
+            .recordStats()
+            .build();
+    }
+
+    @Override
+    public IdempotentResponse execute(String key, String fingerprint, Supplier<IdempotentResponse> request) {
+        Entry entry = new Entry(fingerprint);
+        Entry existing = cache.asMap().putIfAbsent(key, entry);
+        if (existing != null) {
+            if (!existing.fingerprint.equals(fingerprint)) {
+                throw new IdempotencyKeyReusedException("Idempotency-Key " + key + " was already used for other request");
+            }
+            return await(existing).replayed();
+        }
+
+        try {
+            IdempotentResponse response = request.get();
+            entry.response.complete(response);
+            return response;
+        } catch (RuntimeException | Error e) {
+            //failed request is not remembered, waiting duplicates get the same failure and client may retry
+            cache.asMap().remove(key, entry);
+            entry.response.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+    }
+
+    private static IdempotentResponse await(Entry entry) {
+        try {
+            return entry.response.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class Entry {
+
+        private final String fingerprint;
+        private final CompletableFuture<IdempotentResponse> response = new CompletableFuture<>();
+    }
+}
@@ -1,9 +1,13 @@
 package pl.kukla.krzys.testing.restdocs.web.mapper;
 
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import pl.kukla.krzys.testing.restdocs.domain.Beer;
+import pl.kukla.krzys.testing.restdocs.repository.BeerView;
 import pl.kukla.krzys.testing.restdocs.web.model.BeerDto;
 
+import java.util.List;
+
 /**
  * @author Krzysztof Kukla
  */
@@ -13,7 +17,21 @@ import pl.kukla.krzys.testing.restdocs.web.model.BeerDto;
 @Mapper(uses = {DateMapper.class})
 public interface BeerMapper {
 
+    //stock is not part of beer - reservations do not change its version and ETag, it is read from inventory endpoint
+    //quantityOnHand of new beer is its initial stock
+    @Mapping(target = "quantityOnHand", ignore = true)
     BeerDto BeerToBeerDto(Beer beer);
 
+    @Mapping(target = "minOnHand", ignore = true)
+    @Mapping(target = "quantityToBrew", ignore = true)
     Beer BeerDtoToBeer(BeerDto dto);
+
+    @Mapping(target = "quantityOnHand", ignore = true)
+    BeerDto BeerViewToBeerDto(BeerView beerView);
+
+    //rows of one read are mapped by one call, so mapping is timed once per read and not per row
+    // (see BeerLayerTimingAspect)
+    List<BeerDto> BeerToBeerDtos(List<Beer> beers);
+
+    List<BeerDto> BeerViewsToBeerDtos(List<BeerView> beerViews);
 }
@@ -3,19 +3,78 @@ package pl.kukla.krzys.testing.restdocs.web.mapper;
 import org.springframework.stereotype.Component;
 
 import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
+import java.time.ZoneId;
 import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
 
 /**
  * Created by jt on 2019-05-25.
  */
+//database Timestamp holds wall clock of JVM time zone and on web it is sent as the same wall clock with UTC offset
+//conversion goes straight from epoch seconds using offsets of JVM zone precomputed into primitive arrays,
+// so nothing except the result is allocated; outside of precomputed years (and close to ambiguous DST changes
+// for Timestamps) original java.sql.Timestamp conversion is used, so result is always identical
+//JVM time zone is read once, when mapper is created
 @Component
 public class DateMapper {
+
+    //1900-01-01T00:00:00Z - legacy java.util.Date calendar does not have to agree with java.time before it
+    private static final long MIN_EPOCH_SECOND = -2208988800L;
+    //2037-01-01T00:00:00Z - legacy time zones keep transitions only up to 2037 and do not follow java.time in that year
+    private static final long MAX_EPOCH_SECOND = 2114380800L;
+    //offsets are between -18 and +18 hours, so two offsets of one zone never differ by more than that
+    private static final long MAX_OFFSET_DIFFERENCE = 36 * 60 * 60;
+    private static final long UNRESOLVED = Long.MIN_VALUE;
+
+    //offsets[i] is valid from transitions[i] (inclusive) to transitions[i + 1] (exclusive)
+    private final long[] transitions;
+    private final int[] offsets;
+
+    public DateMapper() {
+        this(ZoneId.systemDefault());
+    }
+
+    DateMapper(ZoneId zoneId) {
+        ZoneRules rules = zoneId.getRules();
+        long[] transitions = new long[16];
+        int[] offsets = new int[16];
+        int size = 0;
+
+        long epochSecond = MIN_EPOCH_SECOND;
+        int offset = rules.getOffset(Instant.ofEpochSecond(epochSecond)).getTotalSeconds();
+        while (true) {
+            if (size == transitions.length) {
+                transitions = Arrays.copyOf(transitions, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            transitions[size] = epochSecond;
+            offsets[size] = offset;
+            size++;
+
+            ZoneOffsetTransition next = rules.nextTransition(Instant.ofEpochSecond(epochSecond));
+            if (next == null || next.toEpochSecond() >= MAX_EPOCH_SECOND) {
+                break;
+            }
+            epochSecond = next.toEpochSecond();
+            offset = next.getOffsetAfter().getTotalSeconds();
+        }
+        this.transitions = Arrays.copyOf(transitions, size);
+        this.offsets = Arrays.copyOf(offsets, size);
+    }
+
     public OffsetDateTime asOffsetDateTime(Timestamp ts){
         if (ts != null){
-            return OffsetDateTime.of(ts.toLocalDateTime().getYear(), ts.toLocalDateTime().getMonthValue(),
-                ts.toLocalDateTime().getDayOfMonth(), ts.toLocalDateTime().getHour(), ts.toLocalDateTime().getMinute(),
-                ts.toLocalDateTime().getSecond(), ts.toLocalDateTime().getNano(), ZoneOffset.UTC);
+            long epochSecond = Math.floorDiv(ts.getTime(), 1000);
+            if (epochSecond < MIN_EPOCH_SECOND || epochSecond >= MAX_EPOCH_SECOND) {
+                return OffsetDateTime.of(ts.toLocalDateTime(), ZoneOffset.UTC);
+            }
+            long wallClock = epochSecond + offsets[indexOf(epochSecond)];
+            return OffsetDateTime.of(LocalDateTime.ofEpochSecond(wallClock, ts.getNanos(), ZoneOffset.UTC), ZoneOffset.UTC);
         } else {
             return null;
         }
@@ -23,9 +82,45 @@ public class DateMapper {
 
     public Timestamp asTimestamp(OffsetDateTime offsetDateTime){
         if(offsetDateTime != null) {
-            return Timestamp.valueOf(offsetDateTime.atZoneSameInstant(ZoneOffset.UTC).toLocalDateTime());
+            //epoch seconds of UTC wall clock, which is then read as wall clock of JVM zone
+            long epochSecond = epochSecondOfWallClock(offsetDateTime.toEpochSecond());
+            if (epochSecond == UNRESOLVED) {
+                return Timestamp.valueOf(offsetDateTime.atZoneSameInstant(ZoneOffset.UTC).toLocalDateTime());
+            }
+            Timestamp timestamp = new Timestamp(epochSecond * 1000);
+            timestamp.setNanos(offsetDateTime.getNano());
+            return timestamp;
         } else {
             return null;
         }
     }
+
+    //instant is accepted only when it lies more than MAX_OFFSET_DIFFERENCE from both ends of its offset period,
+    // then no other offset can give the same wall clock - it is neither in DST gap nor in DST overlap
+    private long epochSecondOfWallClock(long wallClock) {
+        if (wallClock < MIN_EPOCH_SECOND + MAX_OFFSET_DIFFERENCE || wallClock >= MAX_EPOCH_SECOND - MAX_OFFSET_DIFFERENCE) {
+            return UNRESOLVED;
+        }
+        int offset = offsets[indexOf(wallClock)];
+        for (int attempt = 0; attempt < 2; attempt++) {
+            long epochSecond = wallClock - offset;
+            int index = indexOf(epochSecond);
+            if (offsets[index] == offset && isFarFromTransitions(index, epochSecond)) {
+                return epochSecond;
+            }
+            offset = offsets[index];
+        }
+        return UNRESOLVED;
+    }
+
+    private boolean isFarFromTransitions(int index, long epochSecond) {
+        long until = index + 1 < transitions.length ? transitions[index + 1] : MAX_EPOCH_SECOND;
+        return epochSecond - transitions[index] >= MAX_OFFSET_DIFFERENCE && until - epochSecond > MAX_OFFSET_DIFFERENCE;
+    }
+
+    //index of the last transition at or before given instant
+    private int indexOf(long epochSecond) {
+        int index = Arrays.binarySearch(transitions, epochSecond);
+        return index >= 0 ? index : -index - 2;
+    }
 }
@@ -0,0 +1,34 @@
+package pl.kukla.krzys.testing.restdocs.web.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//summary of batch create/upsert - items which failed are reported by their position in request body
+@Data
+@NoArgsConstructor
+public class BeerBatchResult {
+
+    private int created;
+    private int updated;
+    private List<BeerBatchError> errors = new ArrayList<>();
+
+    public void addError(int index, List<String> messages) {
+        errors.add(new BeerBatchError(index, messages));
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class BeerBatchError {
+
+        private int index;
+        private List<String> messages;
+    }
+}
@@ -0,0 +1,15 @@
+package pl.kukla.krzys.testing.restdocs.web.model;
+
+import lombok.Value;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//created or updated beer in change feed with cursor right after it - changes kept in memory are shared by all
+// subscribers, so it is immutable
+@Value
+public class BeerChange {
+
+    String cursor;
+    BeerDto beer;
+}
@@ -0,0 +1,20 @@
+package pl.kukla.krzys.testing.restdocs.web.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//one read of change feed - cursor is where next read continues, it can move even when there are no changes
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BeerChanges {
+
+    private List<BeerChange> changes;
+    private String cursor;
+}
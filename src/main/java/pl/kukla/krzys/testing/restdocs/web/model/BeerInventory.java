@@ -0,0 +1,22 @@
+package pl.kukla.krzys.testing.restdocs.web.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//stock of beer right after the operation - 'available' is how much can be reserved before minOnHand is reached
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BeerInventory {
+
+    private UUID beerId;
+    private int quantityOnHand;
+    private int minOnHand;
+    private int available;
+}
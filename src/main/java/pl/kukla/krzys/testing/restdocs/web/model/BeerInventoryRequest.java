@@ -0,0 +1,20 @@
+package pl.kukla.krzys.testing.restdocs.web.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Positive;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//quantity is required by reserve and release, restock without it brews quantityToBrew of beer
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BeerInventoryRequest {
+
+    @Positive
+    private Integer quantity;
+}
@@ -0,0 +1,38 @@
+package pl.kukla.krzys.testing.restdocs.web.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//beers looked up by ids - one item for every requested id in the same order, missing beer has found=false and no beer
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BeerLookupResult {
+
+    private List<BeerLookupItem> beers;
+
+    public static BeerLookupResult of(List<UUID> beerIds, Map<UUID, BeerDto> found) {
+        return new BeerLookupResult(beerIds.stream()
+            .map(beerId -> new BeerLookupItem(beerId, found.containsKey(beerId), found.get(beerId)))
+            .collect(Collectors.toList()));
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class BeerLookupItem {
+
+        private UUID id;
+        private boolean found;
+        private BeerDto beer;
+    }
+}
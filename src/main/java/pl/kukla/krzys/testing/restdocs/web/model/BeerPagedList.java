@@ -1,5 +1,8 @@
 package pl.kukla.krzys.testing.restdocs.web.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 
@@ -9,13 +12,57 @@ import java.util.List;
  * @author Krzysztof Kukla
  */
 //it extends PageImpl - standard Spring paging mechanism
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class BeerPagedList extends PageImpl<BeerDto> {
 
+    //false when count(*) query was skipped - then 'totalElements' and 'totalPages' are not sent to client
+    private final boolean totalKnown;
+
+    //opaque keyset cursor pointing to next page, null when there is no next page or page was read by offset
+    private final String nextCursor;
+
     public BeerPagedList(List<BeerDto> content, Pageable pageable, long total) {
         super(content, pageable, total);
+        this.totalKnown = true;
+        this.nextCursor = null;
     }
 
     public BeerPagedList(List<BeerDto> content) {
         super(content);
+        this.totalKnown = true;
+        this.nextCursor = null;
+    }
+
+    //page read without count(*) query - total is set to the smallest value PageImpl can derive hasNext() and isLast() from
+    public BeerPagedList(List<BeerDto> content, Pageable pageable, boolean hasNext, String nextCursor) {
+        super(content, pageable, pageable.getOffset() + content.size() + (hasNext ? 1 : 0));
+        this.totalKnown = false;
+        this.nextCursor = nextCursor;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    @JsonIgnore
+    @Override
+    public long getTotalElements() {
+        return super.getTotalElements();
+    }
+
+    @JsonIgnore
+    @Override
+    public int getTotalPages() {
+        return super.getTotalPages();
+    }
+
+    @JsonProperty("totalElements")
+    public Long getKnownTotalElements() {
+        return totalKnown ? super.getTotalElements() : null;
+    }
+
+    @JsonProperty("totalPages")
+    public Integer getKnownTotalPages() {
+        return totalKnown ? super.getTotalPages() : null;
     }
 }
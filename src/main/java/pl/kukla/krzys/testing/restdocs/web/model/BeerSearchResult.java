@@ -0,0 +1,30 @@
+package pl.kukla.krzys.testing.restdocs.web.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//typeahead suggestions - only what is needed to show and pick a beer, whole beer is read by its id
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BeerSearchResult {
+
+    private List<BeerSuggestion> beers;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class BeerSuggestion {
+
+        private UUID id;
+        private String beerName;
+        private BeerStyleEnum beerStyle;
+    }
+}
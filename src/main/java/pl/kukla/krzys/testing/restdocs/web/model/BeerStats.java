@@ -0,0 +1,33 @@
+package pl.kukla.krzys.testing.restdocs.web.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//catalog statistics, one entry for every style which has beers; prices are null when no beer of style has price
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BeerStats {
+
+    private List<BeerStyleStats> styles;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class BeerStyleStats {
+
+        private BeerStyleEnum beerStyle;
+        private long count;
+        private BigDecimal minPrice;
+        private BigDecimal avgPrice;
+        private BigDecimal maxPrice;
+        private long quantityOnHand;
+    }
+}
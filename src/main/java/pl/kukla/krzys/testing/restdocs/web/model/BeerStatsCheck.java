@@ -0,0 +1,20 @@
+package pl.kukla.krzys.testing.restdocs.web.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//incremental statistics compared with full recompute in database, every difference is described in one line
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BeerStatsCheck {
+
+    private boolean consistent;
+    private List<String> differences;
+}
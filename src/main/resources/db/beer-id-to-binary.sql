@@ -0,0 +1,26 @@
+-- converts beer.id of existing database from varchar(36) to binary(16), written for H2
+-- ids keep their values, so URLs and references held by clients stay valid; only new ids are time ordered
+-- MySQL: use UNHEX(REPLACE(id, '-', '')) instead of CAST, PostgreSQL: uuid type is already 16 bytes
+-- run it while application is stopped, it rebuilds primary key and indexes containing id
+-- it also brings the other indexes of baseline schema in line with Beer, so Hibernate does not add duplicates of them
+
+ALTER TABLE beer ADD COLUMN id_binary BINARY(16);
+
+UPDATE beer SET id_binary = CAST(REPLACE(id, '-', '') AS BINARY(16));
+
+DROP INDEX IF EXISTS ix_beer_created_date_id;
+DROP INDEX IF EXISTS ix_beer_beer_style_created_date_id;
+DROP INDEX IF EXISTS ix_beer_last_modified_date_id;
+ALTER TABLE beer DROP PRIMARY KEY;
+ALTER TABLE beer DROP COLUMN id;
+ALTER TABLE beer ALTER COLUMN id_binary RENAME TO id;
+ALTER TABLE beer ALTER COLUMN id SET NOT NULL;
+ALTER TABLE beer ADD PRIMARY KEY (id);
+CREATE INDEX ix_beer_created_date_id ON beer (created_date, id);
+CREATE INDEX ix_beer_beer_style_created_date_id ON beer (beer_style, created_date, id);
+CREATE INDEX ix_beer_last_modified_date_id ON beer (last_modified_date, id);
+
+-- baseline unique constraint of upc has name generated by Hibernate, ux_beer_upc declared by Beer replaces it
+ALTER TABLE beer DROP CONSTRAINT IF EXISTS UK_p9mb364xktkjqmprmg89u2etr;
+ALTER TABLE beer ADD CONSTRAINT IF NOT EXISTS ux_beer_upc UNIQUE (upc);
+CREATE INDEX IF NOT EXISTS ix_beer_beer_name ON beer (beer_name);
@@ -0,0 +1,7 @@
+-- adds stock column to existing database, written for H2
+-- every beer starts with one brewed batch on hand
+-- run it while application is stopped, stock is then changed only by inventory write-behind
+
+ALTER TABLE beer ADD COLUMN IF NOT EXISTS quantity_on_hand INTEGER;
+
+UPDATE beer SET quantity_on_hand = COALESCE(quantity_to_brew, 0) WHERE quantity_on_hand IS NULL;
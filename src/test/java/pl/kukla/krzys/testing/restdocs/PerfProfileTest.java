@@ -0,0 +1,119 @@
+package pl.kukla.krzys.testing.restdocs;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import pl.kukla.krzys.testing.restdocs.repository.BeerRepository;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerDto;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//with 'perf' profile database connection must be back in the pool before response body is written
+//every serialized BeerDto records how many connections are borrowed from the pool at that moment
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("perf")
+class PerfProfileTest {
+
+    private static final AtomicInteger SERIALIZED = new AtomicInteger();
+    private static final AtomicInteger MAX_ACTIVE_CONNECTIONS = new AtomicInteger();
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    BeerRepository beerRepository;
+
+    @BeforeEach
+    void setUp() {
+        SERIALIZED.set(0);
+        MAX_ACTIVE_CONNECTIONS.set(0);
+    }
+
+    @Test
+    void connectionIsReleasedBeforeBeerIsSerialized() throws Exception {
+        //beer is not cached yet, so it is read from database by this request
+        mockMvc.perform(get("/api/v1/beer/{beerId}", beerRepository.findAll().iterator().next().getId()))
+            .andExpect(status().isOk());
+
+        assertThat(SERIALIZED).hasValue(1);
+        assertThat(MAX_ACTIVE_CONNECTIONS).hasValue(0);
+    }
+
+    @Test
+    void connectionIsReleasedBeforePageIsSerialized() throws Exception {
+        mockMvc.perform(get("/api/v1/beer").param("withTotal", "true"))
+            .andExpect(status().isOk());
+
+        assertThat(SERIALIZED).hasPositiveValue();
+        assertThat(MAX_ACTIVE_CONNECTIONS).hasValue(0);
+    }
+
+    @Test
+    void poolMetricsArePublished() throws Exception {
+        mockMvc.perform(get("/api/v1/beer"))
+            .andExpect(status().isOk());
+
+        assertThat(meterRegistry.get("hikaricp.connections.active").tag("pool", "beer").gauge().value()).isZero();
+        assertThat(meterRegistry.get("hikaricp.connections.idle").tag("pool", "beer").gauge().value()).isPositive();
+        assertThat(meterRegistry.get("hikaricp.connections.pending").tag("pool", "beer").gauge().value()).isZero();
+        assertThat(meterRegistry.get("hikaricp.connections.acquire").tag("pool", "beer").timer().count()).isPositive();
+    }
+
+    @TestConfiguration
+    static class ActiveConnectionsProbe {
+
+        //Spring Boot registers Module beans into ObjectMapper used by MVC
+        @Bean
+        Module activeConnectionsProbe(DataSource dataSource) {
+            HikariDataSource pool = (HikariDataSource) dataSource;
+            return new SimpleModule().setSerializerModifier(new BeanSerializerModifier() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public JsonSerializer<?> modifySerializer(SerializationConfig config, BeanDescription description,
+                                                          JsonSerializer<?> serializer) {
+                    if (description.getBeanClass() != BeerDto.class) {
+                        return serializer;
+                    }
+                    JsonSerializer<Object> delegate = (JsonSerializer<Object>) serializer;
+                    return new JsonSerializer<Object>() {
+                        @Override
+                        public void serialize(Object value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+                            SERIALIZED.incrementAndGet();
+                            MAX_ACTIVE_CONNECTIONS.accumulateAndGet(pool.getHikariPoolMXBean().getActiveConnections(), Math::max);
+                            delegate.serialize(value, generator, provider);
+                        }
+                    };
+                }
+            });
+        }
+    }
+}
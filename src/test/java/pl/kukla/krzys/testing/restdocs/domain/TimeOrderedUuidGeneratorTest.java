@@ -0,0 +1,34 @@
+package pl.kukla.krzys.testing.restdocs.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Krzysztof Kukla
+ */
+class TimeOrderedUuidGeneratorTest {
+
+    @Test
+    void idIsVersion7WithTimestamp() {
+        long before = System.currentTimeMillis();
+        UUID id = TimeOrderedUuidGenerator.nextUuid();
+
+        assertThat(id.version()).isEqualTo(7);
+        assertThat(id.variant()).isEqualTo(2);
+        assertThat(id.getMostSignificantBits() >>> 16).isGreaterThanOrEqualTo(before);
+    }
+
+    //more ids than fit into sequence of one millisecond - order has to be kept when sequence overflows
+    @Test
+    void idsAreIncreasingAsBytes() {
+        UUID previous = TimeOrderedUuidGenerator.nextUuid();
+        for (int i = 0; i < 100_000; i++) {
+            UUID next = TimeOrderedUuidGenerator.nextUuid();
+            assertThat(Long.compareUnsigned(next.getMostSignificantBits(), previous.getMostSignificantBits())).isPositive();
+            previous = next;
+        }
+    }
+}
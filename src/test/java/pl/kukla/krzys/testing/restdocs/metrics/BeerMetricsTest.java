@@ -0,0 +1,50 @@
+package pl.kukla.krzys.testing.restdocs.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * @author Krzysztof Kukla
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class BeerMetricsTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void requestIsSplitIntoLayers() throws Exception {
+        mockMvc.perform(get("/api/v1/beer"))
+            .andExpect(status().isOk());
+
+        assertThat(meterRegistry.get("beer.repository").tag("method", "findBeerSlice").timer().count()).isPositive();
+        assertThat(meterRegistry.get("beer.mapper").tag("method", "BeerToBeerDtos").timer().count()).isPositive();
+        assertThat(meterRegistry.get("beer.serialization").tag("type", "BeerPagedList").timer().count()).isPositive();
+        assertThat(meterRegistry.get("beer.hibernate.statements").tag("uri", "/api/v1/beer").summary().max()).isPositive();
+    }
+
+    @Test
+    void metricsArePublishedForPrometheus() throws Exception {
+        mockMvc.perform(get("/api/v1/beer"))
+            .andExpect(status().isOk());
+
+        String scrape = mockMvc.perform(get("/actuator/prometheus"))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+
+        assertThat(scrape).contains("http_server_requests_seconds_bucket", "beer_repository_seconds_bucket",
+            "beer_hibernate_statements_bucket");
+    }
+}
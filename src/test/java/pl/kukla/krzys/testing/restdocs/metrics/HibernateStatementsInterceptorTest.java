@@ -0,0 +1,53 @@
+package pl.kukla.krzys.testing.restdocs.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Krzysztof Kukla
+ */
+class HibernateStatementsInterceptorTest {
+
+    private final HibernateStatementCounter hibernateStatementCounter = new HibernateStatementCounter();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final HibernateStatementsInterceptor interceptor =
+        new HibernateStatementsInterceptor(hibernateStatementCounter, meterRegistry);
+    private final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/beer/changes");
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    @Test
+    void statementsOfRequestAreRecorded() {
+        interceptor.preHandle(request, response, null);
+        hibernateStatementCounter.inspect("select 1");
+
+        interceptor.afterCompletion(request, response, null, null);
+
+        assertThat(meterRegistry.get("beer.hibernate.statements").summary().max()).isEqualTo(1);
+        assertThat(hibernateStatementCounter.stop()).isNegative();
+    }
+
+    @Test
+    void countingIsStoppedButNotRecordedForAsyncRequest() {
+        request.setAsyncSupported(true);
+        interceptor.preHandle(request, response, null);
+        request.startAsync();
+
+        interceptor.afterCompletion(request, response, null, null);
+
+        assertThat(hibernateStatementCounter.stop()).isNegative();
+        assertThat(meterRegistry.find("beer.hibernate.statements").summary()).isNull();
+    }
+
+    @Test
+    void countingIsStoppedWhenConcurrentHandlingStarts() {
+        interceptor.preHandle(request, response, null);
+
+        interceptor.afterConcurrentHandlingStarted(request, response, null);
+
+        assertThat(hibernateStatementCounter.stop()).isNegative();
+    }
+}
@@ -0,0 +1,212 @@
+package pl.kukla.krzys.testing.restdocs.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import pl.kukla.krzys.testing.restdocs.domain.Beer;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//here we use real H2 database, because these queries are built by hand
+@DataJpaTest
+class BeerRepositoryTest {
+
+    @Autowired
+    private BeerRepository beerRepository;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 7; i++) {
+            beerRepository.save(Beer.builder()
+                .beerName("beer " + i)
+                .beerStyle(i % 2 == 0 ? "IPA" : "ALE")
+                .upc(1000L + i)
+                .price(new BigDecimal("1.0" + i))
+                .build());
+        }
+    }
+
+    @Test
+    void findBeersAfterWalksWholeTableWithoutDuplicates() {
+        List<Beer> walked = new ArrayList<>();
+        List<Beer> page = beerRepository.findBeersAfter(null, null, null, null, 3);
+        while (!page.isEmpty()) {
+            walked.addAll(page);
+            Beer last = page.get(page.size() - 1);
+            page = beerRepository.findBeersAfter(null, null, last.getCreatedDate(), last.getId(), 3);
+        }
+
+        assertThat(walked).hasSize(7);
+        assertThat(walked.stream().map(Beer::getId).distinct().count()).isEqualTo(7);
+    }
+
+    @Test
+    void findBeersAfterAppliesFilters() {
+        List<Beer> ipas = beerRepository.findBeersAfter(null, "IPA", null, null, 10);
+
+        assertThat(ipas).hasSize(4).allMatch(beer -> "IPA".equals(beer.getBeerStyle()));
+    }
+
+    @Test
+    void findBeerSliceDoesNotNeedTotal() {
+        Slice<Beer> first = beerRepository.findBeerSlice(null, null, PageRequest.of(0, 5, Sort.by("upc")));
+        Slice<Beer> second = beerRepository.findBeerSlice(null, null, PageRequest.of(1, 5, Sort.by("upc")));
+
+        assertThat(first.hasNext()).isTrue();
+        assertThat(first.getContent()).hasSize(5);
+        assertThat(second.hasNext()).isFalse();
+        assertThat(second.getContent().stream().map(Beer::getUpc).collect(Collectors.toList())).containsExactly(1005L, 1006L);
+    }
+
+    @Test
+    void countBeers() {
+        assertThat(beerRepository.countBeers("beer 1", "ALE")).isEqualTo(1);
+        assertThat(beerRepository.countBeers(null, "ALE")).isEqualTo(3);
+    }
+
+    @Test
+    void findVersionById() {
+        Beer beer = beerRepository.findBeersAfter(null, null, null, null, 1).get(0);
+
+        BeerVersionView version = beerRepository.findVersionById(beer.getId()).get();
+
+        assertThat(version.getId()).isEqualTo(beer.getId());
+        assertThat(version.getVersion()).isEqualTo(beer.getVersion());
+    }
+
+    @Test
+    void findByUpc() {
+        BeerView beer = beerRepository.findByUpc(1003L).get();
+
+        assertThat(beer.getBeerName()).isEqualTo("beer 3");
+        assertThat(beer.getBeerStyle()).isEqualTo("ALE");
+        assertThat(beer.getPrice()).isEqualByComparingTo("1.03");
+        assertThat(beer.getCreatedDate()).isNotNull();
+        assertThat(beerRepository.findByUpc(999L)).isEmpty();
+    }
+
+    @Test
+    void streamAll() {
+        //@DataJpaTest runs every test in transaction, which is required to consume the stream
+        try (Stream<Beer> beers = beerRepository.streamAll()) {
+            assertThat(beers.count()).isEqualTo(7);
+        }
+    }
+
+    @Test
+    void updateBeerChangesOnlyGivenFieldsOfExpectedVersion() {
+        Beer beer = beerRepository.findAllByUpcIn(List.of(1000L)).get(0);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+
+        int updated = beerRepository.updateBeer(beer.getId(), beer.getVersion(), now, null, null, new BigDecimal("2.50"), null);
+        int stale = beerRepository.updateBeer(beer.getId(), beer.getVersion(), now, "stale", null, null, null);
+        beerRepository.clear();
+
+        Beer reloaded = beerRepository.findById(beer.getId()).get();
+        assertThat(updated).isEqualTo(1);
+        assertThat(stale).isZero();
+        assertThat(reloaded.getLastModifiedDate()).isEqualTo(now);
+        assertThat(reloaded.getVersion()).isEqualTo(beer.getVersion() + 1);
+        assertThat(reloaded.getPrice()).isEqualByComparingTo("2.50");
+        assertThat(reloaded.getBeerName()).isEqualTo("beer 0");
+    }
+
+    @Test
+    void insertBeersIsReadBackByHibernate() {
+        Beer inserted = Beer.builder().beerName("bulk").beerStyle("STOUT").upc(2000L).price(new BigDecimal("3.50")).build();
+
+        beerRepository.insertBeers(List.of(inserted));
+
+        Beer loaded = beerRepository.findById(inserted.getId()).get();
+        assertThat(loaded.getVersion()).isZero();
+        assertThat(loaded.getCreatedDate()).isNotNull();
+        assertThat(loaded.getUpc()).isEqualTo(2000L);
+        assertThat(loaded.getPrice()).isEqualByComparingTo("3.50");
+        assertThat(beerRepository.countBeers(null, "STOUT")).isEqualTo(1);
+    }
+
+    @Test
+    void findViewsByIdInIgnoresRepeatedIds() {
+        List<Beer> beers = beerRepository.findAllByUpcIn(List.of(1000L, 1001L));
+
+        List<BeerView> views = beerRepository.findViewsByIdIn(
+            List.of(beers.get(0).getId(), beers.get(1).getId(), beers.get(1).getId(), beers.get(1).getId()));
+
+        assertThat(views).extracting(BeerView::getUpc).containsExactlyInAnyOrder(1000L, 1001L);
+    }
+
+    @Test
+    void findChangesAfterWalksBeersChangedAtTheSameTime() {
+        //bulk inserted beers have the same lastModifiedDate, so pages end between them
+        beerRepository.insertBeers(Stream.of(2000L, 2001L, 2002L, 2003L)
+            .map(upc -> Beer.builder().beerName("bulk").beerStyle("STOUT").upc(upc).price(BigDecimal.ONE).build())
+            .collect(Collectors.toList()));
+        Beer updated = beerRepository.findAllByUpcIn(List.of(1000L)).get(0);
+        beerRepository.updateBeer(updated.getId(), null, new Timestamp(System.currentTimeMillis()), "updated", null, null, null);
+
+        List<BeerView> walked = new ArrayList<>();
+        List<BeerView> page = beerRepository.findChanges(PageRequest.of(0, 3));
+        while (!page.isEmpty()) {
+            walked.addAll(page);
+            BeerView last = page.get(page.size() - 1);
+            page = beerRepository.findChangesAfter(last.getLastModifiedDate(), last.getId(), PageRequest.of(0, 3));
+        }
+
+        assertThat(walked).hasSize(11);
+        assertThat(walked.stream().map(BeerView::getId).distinct().count()).isEqualTo(11);
+        assertThat(walked).isSortedAccordingTo((first, second) -> first.getLastModifiedDate().compareTo(second.getLastModifiedDate()));
+        assertThat(walked.get(10).getBeerName()).isEqualTo("updated");
+    }
+
+    @Test
+    void addQuantitiesOnHandIsRelativeToStockInDatabase() {
+        Beer stocked = Beer.builder().beerName("bulk").beerStyle("STOUT").upc(2000L).price(BigDecimal.ONE)
+            .quantityOnHand(10).minOnHand(2).build();
+        beerRepository.insertBeers(List.of(stocked));
+        Beer empty = beerRepository.findAllByUpcIn(List.of(1001L)).get(0);
+
+        beerRepository.addQuantitiesOnHand(Map.of(stocked.getId(), -3, empty.getId(), 5));
+
+        assertThat(beerRepository.findStockById(stocked.getId())).hasValue(new BeerStockView(7, 2, null));
+        //missing stock is taken as 0
+        assertThat(beerRepository.findStockById(empty.getId())).hasValue(new BeerStockView(5, null, null));
+    }
+
+    @Test
+    void styleStatsAreTheSameReadAsGroupByAndRowByRow() {
+        beerRepository.insertBeers(List.of(Beer.builder().beerName("bulk").beerStyle("IPA").upc(2000L).quantityOnHand(5).build()));
+
+        List<BeerStyleStatsView> grouped = beerRepository.findStyleStats();
+        Map<String, BigDecimal> sums = new HashMap<>();
+        Map<String, Long> stock = new HashMap<>();
+        beerRepository.readBeerStats((id, version, beerStyle, price, quantityOnHand) -> {
+            sums.merge(beerStyle, price == null ? BigDecimal.ZERO : price, BigDecimal::add);
+            stock.merge(beerStyle, quantityOnHand == null ? 0L : quantityOnHand, Long::sum);
+        });
+
+        assertThat(grouped).extracting(BeerStyleStatsView::getBeerStyle).containsExactlyInAnyOrder("IPA", "ALE");
+        BeerStyleStatsView ipa = grouped.stream().filter(view -> "IPA".equals(view.getBeerStyle())).findFirst().get();
+        assertThat(ipa.getCount()).isEqualTo(5);
+        assertThat(ipa.getPriced()).isEqualTo(4);
+        assertThat(ipa.getMinPrice()).isEqualByComparingTo("1.00");
+        assertThat(ipa.getMaxPrice()).isEqualByComparingTo("1.06");
+        assertThat(ipa.getSumPrice()).isEqualByComparingTo(sums.get("IPA")).isEqualByComparingTo("4.12");
+        assertThat(ipa.getQuantityOnHand()).isEqualTo(5).isEqualTo(stock.get("IPA"));
+    }
+}
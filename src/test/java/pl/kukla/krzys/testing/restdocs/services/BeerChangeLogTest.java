@@ -0,0 +1,108 @@
+package pl.kukla.krzys.testing.restdocs.services;
+
+import org.junit.jupiter.api.Test;
+import pl.kukla.krzys.testing.restdocs.web.mapper.DateMapper;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerChange;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerDto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Krzysztof Kukla
+ */
+class BeerChangeLogTest {
+
+    private static final Function<Collection<UUID>, Map<UUID, BeerDto>> NOTHING_TO_LOAD = ids -> Map.of();
+
+    private final DateMapper dateMapper = new DateMapper();
+    private final BeerChangeLog beerChangeLog = new BeerChangeLog(dateMapper, 4);
+
+    @Test
+    void changesAreReadInOrderOfAppends() {
+        beerChangeLog.append(List.of(beer("first"), beer("second")));
+        beerChangeLog.append(List.of(beer("third")));
+
+        List<BeerChange> changes = beerChangeLog.readAfter(0, 2, NOTHING_TO_LOAD);
+        List<BeerChange> rest = beerChangeLog.readAfter(2, 10, NOTHING_TO_LOAD);
+
+        assertThat(changes).extracting(change -> change.getBeer().getBeerName()).containsExactly("first", "second");
+        assertThat(rest).extracting(change -> change.getBeer().getBeerName()).containsExactly("third");
+        assertThat(beerChangeLog.readAfter(3, 10, NOTHING_TO_LOAD)).isEmpty();
+    }
+
+    @Test
+    void readerBehindTheBufferGetsNull() {
+        for (int i = 0; i < 6; i++) {
+            beerChangeLog.append(List.of(beer("beer " + i)));
+        }
+
+        assertThat(beerChangeLog.readAfter(1, 10, NOTHING_TO_LOAD)).isNull();
+        assertThat(beerChangeLog.readAfter(2, 10, NOTHING_TO_LOAD)).extracting(change -> change.getBeer().getBeerName())
+            .containsExactly("beer 2", "beer 3", "beer 4", "beer 5");
+    }
+
+    @Test
+    void cursorOfChangeContinuesAfterIt() {
+        AtomicInteger notified = new AtomicInteger();
+        beerChangeLog.addListener(notified::incrementAndGet);
+        BeerDto beer = beer("first");
+
+        beerChangeLog.append(List.of(beer));
+
+        BeerChangeCursor cursor = BeerChangeCursor.decode(beerChangeLog.readAfter(0, 1, NOTHING_TO_LOAD).get(0).getCursor());
+        assertThat(notified).hasValue(1);
+        assertThat(cursor.getEpoch()).isEqualTo(beerChangeLog.getEpoch());
+        assertThat(cursor.getSequence()).isEqualTo(1);
+        assertThat(cursor.isCatchingUp()).isFalse();
+        assertThat(cursor.getSeen()).isEqualTo(1);
+        assertThat(cursor.getId()).isEqualTo(beer.getId());
+        assertThat(cursor.getLastModifiedDate()).isEqualTo(dateMapper.asTimestamp(beer.getLastModifiedDate()));
+    }
+
+    @Test
+    void cursorWithoutSeenIsNotValid() {
+        String cursor = Base64.getUrlEncoder().withoutPadding().encodeToString("1:2:b".getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> BeerChangeCursor.decode(cursor)).isInstanceOf(InvalidPageRequestException.class);
+    }
+
+    @Test
+    void patchIsLoadedOnceWhenItIsRead() {
+        BeerDto beer = beer("updated");
+        BeerDto patch = BeerDto.builder().id(beer.getId()).version(1).lastModifiedDate(beer.getLastModifiedDate()).build();
+        AtomicInteger loads = new AtomicInteger();
+        Function<Collection<UUID>, Map<UUID, BeerDto>> loader = ids -> {
+            loads.incrementAndGet();
+            return Map.of(beer.getId(), beer);
+        };
+
+        beerChangeLog.appendPatch(patch);
+
+        assertThat(beerChangeLog.readLoggedAfter(0, 10)).extracting(BeerChangeLog.Logged::getBeer).containsExactly(patch);
+        assertThat(beerChangeLog.readAfter(0, 10, loader)).extracting(BeerChange::getBeer).containsExactly(beer);
+        assertThat(beerChangeLog.readAfter(0, 10, loader)).extracting(BeerChange::getBeer).containsExactly(beer);
+        assertThat(loads).hasValue(1);
+        assertThat(beerChangeLog.isAppendedUpTo(beer.getId(), 1, 1)).isTrue();
+    }
+
+    private static BeerDto beer(String beerName) {
+        return BeerDto.builder()
+            .id(UUID.randomUUID())
+            .version(0)
+            .lastModifiedDate(OffsetDateTime.now(ZoneOffset.UTC))
+            .beerName(beerName)
+            .build();
+    }
+}
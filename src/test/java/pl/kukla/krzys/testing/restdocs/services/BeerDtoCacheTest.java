@@ -0,0 +1,104 @@
+package pl.kukla.krzys.testing.restdocs.services;
+
+import org.junit.jupiter.api.Test;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerDto;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Krzysztof Kukla
+ */
+class BeerDtoCacheTest {
+
+    private final BeerDtoCache beerDtoCache = new BeerDtoCache(100, Duration.ofMinutes(1));
+
+    @Test
+    void loaderIsNotCalledOnHit() {
+        UUID beerId = UUID.randomUUID();
+        beerDtoCache.get(beerId, id -> beer(id, 0, "first"));
+
+        BeerDto cached = beerDtoCache.get(beerId, id -> beer(id, 0, "second"));
+
+        assertThat(cached.getBeerName()).isEqualTo("first");
+    }
+
+    @Test
+    void olderVersionDoesNotOverwriteNewerOne() {
+        UUID beerId = UUID.randomUUID();
+        Map<UUID, BeerDto> beers = beerDtoCache.getAll(List.of(beerId), missing -> {
+            //single read caches newer version while slow bulk read still holds the old one
+            beerDtoCache.get(beerId, id -> beer(id, 2, "fresh"));
+            return Map.of(beerId, beer(beerId, 1, "stale"));
+        });
+
+        assertThat(beers.get(beerId).getBeerName()).isEqualTo("fresh");
+        assertThat(beerDtoCache.get(beerId, id -> beer(id, 0, "loaded")).getBeerName()).isEqualTo("fresh");
+    }
+
+    @Test
+    void evictedBeerIsLoadedAgain() {
+        UUID beerId = UUID.randomUUID();
+        beerDtoCache.get(beerId, id -> beer(id, 1, "old"));
+        beerDtoCache.evict(beerId);
+
+        assertThat(beerDtoCache.get(beerId, id -> beer(id, 2, "new")).getBeerName()).isEqualTo("new");
+        assertThat(beerDtoCache.getIfPresent(beerId).getBeerName()).isEqualTo("new");
+    }
+
+    @Test
+    void beerEvictedWhileLoadedIsNotCached() {
+        UUID beerId = UUID.randomUUID();
+        beerDtoCache.get(beerId, id -> {
+            //update of the beer commits while its old version is being loaded
+            beerDtoCache.evict(id);
+            return beer(id, 1, "old");
+        });
+
+        assertThat(beerDtoCache.get(beerId, id -> beer(id, 2, "loaded")).getBeerName()).isEqualTo("loaded");
+    }
+
+    @Test
+    void missingBeerIsNotCached() {
+        UUID beerId = UUID.randomUUID();
+        assertThat(beerDtoCache.get(beerId, id -> null)).isNull();
+
+        assertThat(beerDtoCache.getIfPresent(beerId)).isNull();
+    }
+
+    @Test
+    void getAllLoadsOnlyBeersWhichAreNotCached() {
+        UUID cachedId = UUID.randomUUID();
+        UUID loadedId = UUID.randomUUID();
+        beerDtoCache.get(cachedId, id -> beer(id, 1, "cached"));
+
+        Map<UUID, BeerDto> beers = beerDtoCache.getAll(List.of(cachedId, loadedId, UUID.randomUUID()), missing -> {
+            assertThat(missing).hasSize(2).doesNotContain(cachedId);
+            return Map.of(loadedId, beer(loadedId, 1, "loaded"));
+        });
+
+        assertThat(beers).hasSize(2);
+        assertThat(beers.get(cachedId).getBeerName()).isEqualTo("cached");
+        assertThat(beerDtoCache.getIfPresent(loadedId).getBeerName()).isEqualTo("loaded");
+    }
+
+    @Test
+    void beersLoadedTogetherAreNotCachedWhenBeerWasEvictedMeanwhile() {
+        UUID beerId = UUID.randomUUID();
+        Map<UUID, BeerDto> beers = beerDtoCache.getAll(List.of(beerId), missing -> {
+            beerDtoCache.evict(beerId);
+            return Map.of(beerId, beer(beerId, 1, "old"));
+        });
+
+        assertThat(beers.get(beerId).getBeerName()).isEqualTo("old");
+        assertThat(beerDtoCache.getIfPresent(beerId)).isNull();
+    }
+
+    private BeerDto beer(UUID beerId, int version, String beerName) {
+        return BeerDto.builder().id(beerId).version(version).beerName(beerName).build();
+    }
+}
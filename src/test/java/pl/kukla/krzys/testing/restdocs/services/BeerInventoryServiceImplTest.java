@@ -0,0 +1,148 @@
+package pl.kukla.krzys.testing.restdocs.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import pl.kukla.krzys.testing.restdocs.repository.BeerRepository;
+import pl.kukla.krzys.testing.restdocs.repository.BeerStockView;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.times;
+
+/**
+ * @author Krzysztof Kukla
+ */
+class BeerInventoryServiceImplTest {
+
+    private static final UUID BEER_ID = UUID.randomUUID();
+    private static final int THREADS = 8;
+
+    private final BeerRepository beerRepository = Mockito.mock(BeerRepository.class);
+    //flushed only by tests
+    private final BeerStatsStore beerStatsStore = Mockito.mock(BeerStatsStore.class);
+    private final BeerInventoryServiceImpl beerInventoryService = new BeerInventoryServiceImpl(beerRepository, beerStatsStore,
+        Duration.ofHours(1), 2);
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+    @BeforeEach
+    void setUp() {
+        BDDMockito.willAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return null;
+        }).given(beerStatsStore).writeStock(any(), any());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        executor.shutdownNow();
+        beerInventoryService.destroy();
+    }
+
+    @Test
+    void concurrentReservationsNeverGoBelowMinOnHand() throws Exception {
+        BDDMockito.given(beerRepository.findStockById(BEER_ID)).willReturn(Optional.of(new BeerStockView(1000, 100, 200)));
+
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            results.add(executor.submit(reservation(3)));
+        }
+        int reserved = 0;
+        for (Future<Boolean> result : results) {
+            reserved += result.get(5, TimeUnit.SECONDS) ? 1 : 0;
+        }
+
+        //900 above the floor is 300 reservations of 3, stock was read from database once
+        assertThat(reserved).isEqualTo(300);
+        assertThat(beerInventoryService.getInventory(BEER_ID).getQuantityOnHand()).isEqualTo(100);
+        assertThat(beerInventoryService.getInventory(BEER_ID).getAvailable()).isZero();
+        then(beerRepository).should(times(1)).findStockById(BEER_ID);
+    }
+
+    @Test
+    void reservationTakingStockBelowMinOnHandIsRefused() {
+        BDDMockito.given(beerRepository.findStockById(BEER_ID)).willReturn(Optional.of(new BeerStockView(12, 10, 50)));
+
+        assertThatThrownBy(() -> beerInventoryService.reserve(BEER_ID, 3)).isInstanceOf(InsufficientStockException.class);
+        assertThat(beerInventoryService.reserve(BEER_ID, 2).getQuantityOnHand()).isEqualTo(10);
+        assertThat(beerInventoryService.restock(BEER_ID, null).getAvailable()).isEqualTo(50);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flushWritesSumOfChangesOncePerBeer() {
+        UUID other = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+        BDDMockito.given(beerRepository.findStockById(any())).willReturn(Optional.of(new BeerStockView(100, 0, 20)));
+
+        beerInventoryService.reserve(BEER_ID, 5);
+        beerInventoryService.reserve(BEER_ID, 5);
+        beerInventoryService.release(BEER_ID, 3);
+        beerInventoryService.restock(other, null);
+        beerInventoryService.reserve(third, 1);
+        beerInventoryService.release(third, 1);
+        beerInventoryService.flush();
+
+        //changes which add up to nothing are not written, two beers fit into one batch
+        ArgumentCaptor<Map<UUID, Integer>> batches = ArgumentCaptor.forClass(Map.class);
+        then(beerRepository).should(times(1)).addQuantitiesOnHand(batches.capture());
+        assertThat(batches.getValue()).containsOnly(Map.entry(BEER_ID, -7), Map.entry(other, 20));
+        then(beerStatsStore).should().writeStock(eq(batches.getValue()), any());
+
+        beerInventoryService.flush();
+        then(beerRepository).should(times(1)).addQuantitiesOnHand(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void failedBatchIsWrittenByNextFlush() {
+        BDDMockito.given(beerRepository.findStockById(BEER_ID)).willReturn(Optional.of(new BeerStockView(100, 0, 20)));
+        BDDMockito.willThrow(new IllegalStateException("database is down")).willDoNothing()
+            .given(beerRepository).addQuantitiesOnHand(any());
+
+        beerInventoryService.reserve(BEER_ID, 5);
+        beerInventoryService.flush();
+        beerInventoryService.reserve(BEER_ID, 1);
+        beerInventoryService.flush();
+
+        ArgumentCaptor<Map<UUID, Integer>> batches = ArgumentCaptor.forClass(Map.class);
+        then(beerRepository).should(times(2)).addQuantitiesOnHand(batches.capture());
+        assertThat(batches.getValue()).containsOnly(Map.entry(BEER_ID, -6));
+    }
+
+    @Test
+    void unknownBeerIsNotFound() {
+        BDDMockito.given(beerRepository.findStockById(BEER_ID)).willReturn(Optional.empty());
+
+        assertThatThrownBy(() -> beerInventoryService.getInventory(BEER_ID)).isInstanceOf(BeerNotFoundException.class);
+    }
+
+    private Callable<Boolean> reservation(int quantity) {
+        return () -> {
+            try {
+                beerInventoryService.reserve(BEER_ID, quantity);
+                return true;
+            } catch (InsufficientStockException e) {
+                return false;
+            }
+        };
+    }
+}
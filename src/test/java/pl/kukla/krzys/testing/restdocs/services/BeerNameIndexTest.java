@@ -0,0 +1,134 @@
+package pl.kukla.krzys.testing.restdocs.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import pl.kukla.krzys.testing.restdocs.repository.BeerNameHandler;
+import pl.kukla.krzys.testing.restdocs.repository.BeerRepository;
+import pl.kukla.krzys.testing.restdocs.web.mapper.DateMapper;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerDto;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerSearchResult.BeerSuggestion;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerStyleEnum;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+
+/**
+ * @author Krzysztof Kukla
+ */
+class BeerNameIndexTest {
+
+    private static final UUID GALAXY_CAT = UUID.randomUUID();
+
+    private final BeerRepository beerRepository = Mockito.mock(BeerRepository.class);
+    private final BeerChangeLog beerChangeLog = new BeerChangeLog(new DateMapper(), 100);
+    private final BeerNameIndex beerNameIndex = new BeerNameIndex(beerRepository, beerChangeLog, 3);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void tearDown() {
+        beerNameIndex.destroy();
+    }
+
+    @Test
+    void beersFromDatabaseAreFoundByPrefixOfAnyWord() {
+        buildFromDatabase();
+
+        assertThat(names(beerNameIndex.search("cat", null, 10))).containsExactly("Galaxy Cat", "Hoppy Cat 1", "Catalina");
+        assertThat(names(beerNameIndex.search("CAT", BeerStyleEnum.IPA, 10))).containsExactly("Hoppy Cat 1");
+        assertThat(names(beerNameIndex.search("cat", null, 2))).containsExactly("Galaxy Cat", "Hoppy Cat 1");
+        assertThat(names(beerNameIndex.search("hoppy c", null, 10))).containsExactly("Hoppy Cat 1");
+        assertThat(beerNameIndex.search("owls", null, 10)).isEmpty();
+        assertThat(beerNameIndex.search("galaxy", null, 10)).extracting(BeerSuggestion::getId, BeerSuggestion::getBeerStyle)
+            .containsExactly(tuple(GALAXY_CAT, BeerStyleEnum.PALE_ALE));
+    }
+
+    @Test
+    void changedBeerIsFoundByItsNewNameOnly() {
+        buildFromDatabase();
+
+        beerChangeLog.append(List.of(beer(GALAXY_CAT, 1, "Galaxy Dog"), beer(UUID.randomUUID(), 0, "Sour Cat")));
+        //late change of older version does not bring old name back
+        beerChangeLog.append(List.of(beer(GALAXY_CAT, 0, "Galaxy Cat")));
+
+        assertThat(names(beerNameIndex.search("cat", null, 10))).containsExactly("Sour Cat", "Hoppy Cat 1", "Catalina");
+        assertThat(names(beerNameIndex.search("dog", null, 10))).containsExactly("Galaxy Dog");
+    }
+
+    @Test
+    void patchOfStyleKeepsNameFromIndex() {
+        buildFromDatabase();
+
+        //version of update without If-Match is not known, it is the next one
+        beerChangeLog.appendPatch(BeerDto.builder().id(GALAXY_CAT).lastModifiedDate(OffsetDateTime.now(ZoneOffset.UTC))
+            .beerStyle(BeerStyleEnum.STOUT).build());
+        beerChangeLog.append(List.of(beer(GALAXY_CAT, 0, "Galaxy Cat")));
+
+        assertThat(names(beerNameIndex.search("galaxy", BeerStyleEnum.STOUT, 10))).containsExactly("Galaxy Cat");
+        assertThat(beerNameIndex.search("galaxy", BeerStyleEnum.ALE, 10)).isEmpty();
+    }
+
+    @Test
+    void fullDeltaIsMergedIntoSegment() {
+        buildFromDatabase();
+        beerNameIndex.bindTo(meterRegistry);
+
+        for (int i = 0; i < 5; i++) {
+            beerChangeLog.append(List.of(beer(UUID.randomUUID(), 0, "Midnight Fox " + i)));
+        }
+        beerChangeLog.append(List.of(beer(GALAXY_CAT, 1, "Galaxy Fox")));
+
+        //four beers from database, old version of Galaxy Cat is dropped by merge
+        await(() -> meterRegistry.get("beer.search.index.beers").gauge().value() == 9);
+        assertThat(names(beerNameIndex.search("fox", null, 10))).containsExactly("Galaxy Fox", "Midnight Fox 0", "Midnight Fox 1",
+            "Midnight Fox 2", "Midnight Fox 3", "Midnight Fox 4");
+        assertThat(names(beerNameIndex.search("cat", null, 10))).containsExactly("Hoppy Cat 1", "Catalina");
+    }
+
+    private void buildFromDatabase() {
+        BDDMockito.willAnswer(invocation -> {
+            BeerNameHandler handler = invocation.getArgument(0);
+            handler.accept(UUID.randomUUID(), 0, "Hoppy Cat 1", "IPA");
+            handler.accept(GALAXY_CAT, 0, "Galaxy Cat", "PALE_ALE");
+            handler.accept(UUID.randomUUID(), 0, "Catalina", "LAGER");
+            handler.accept(UUID.randomUUID(), 0, "Dark Owl", "STOUT");
+            return null;
+        }).given(beerRepository).readBeerNames(any());
+
+        beerNameIndex.rebuild();
+        await(() -> !beerNameIndex.search("owl", null, 1).isEmpty());
+    }
+
+    private static List<String> names(List<BeerSuggestion> suggestions) {
+        return suggestions.stream().map(BeerSuggestion::getBeerName).collect(Collectors.toList());
+    }
+
+    //index is built on background thread
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("condition met in time").isLessThan(deadline);
+            Thread.onSpinWait();
+        }
+    }
+
+    private static BeerDto beer(UUID id, int version, String beerName) {
+        return BeerDto.builder()
+            .id(id)
+            .version(version)
+            .lastModifiedDate(OffsetDateTime.now(ZoneOffset.UTC))
+            .beerName(beerName)
+            .beerStyle(BeerStyleEnum.ALE)
+            .build();
+    }
+}
@@ -0,0 +1,119 @@
+package pl.kukla.krzys.testing.restdocs.services;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import pl.kukla.krzys.testing.restdocs.domain.Beer;
+import pl.kukla.krzys.testing.restdocs.repository.BeerRepository;
+import pl.kukla.krzys.testing.restdocs.repository.BeerView;
+import pl.kukla.krzys.testing.restdocs.web.mapper.BeerMapper;
+import pl.kukla.krzys.testing.restdocs.web.mapper.BeerMapperImpl;
+import pl.kukla.krzys.testing.restdocs.web.mapper.DateMapper;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerChanges;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerDto;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerStyleEnum;
+
+import java.sql.Timestamp;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.then;
+
+/**
+ * @author Krzysztof Kukla
+ */
+class BeerServiceImplTest {
+
+    private static final long BASE = Timestamp.valueOf("2020-02-01 10:00:00").getTime();
+
+    private final DateMapper dateMapper = new DateMapper();
+    private final BeerMapper beerMapper = beerMapper(dateMapper);
+    private final BeerRepository beerRepository = Mockito.mock(BeerRepository.class);
+    private final BeerDtoCache beerDtoCache = Mockito.mock(BeerDtoCache.class);
+    //ring of two changes, so the subscriber falls behind after a few more
+    private final BeerChangeLog beerChangeLog = new BeerChangeLog(dateMapper, 2);
+    private final BeerServiceImpl beerService = new BeerServiceImpl(beerRepository, beerMapper, dateMapper,
+        beerDtoCache, beerChangeLog, Mockito.mock(BeerNameIndex.class), Mockito.mock(BeerStatsStore.class),
+        Mockito.mock(BeerInventoryService.class));
+
+    @Test
+    void beerCommittedAfterLaterChangeIsNotMissedWhenSubscriberFallsBehind() {
+        BeerView first = beer("first", 10);
+        //changed before the first one, but committed after it
+        BeerView late = beer("late", 5);
+        BeerView third = beer("third", 11);
+        BeerView fourth = beer("fourth", 12);
+        givenDatabaseWith(first, late, third, fourth);
+
+        String subscribed = beerService.latestChangeCursor();
+        append(first);
+        BeerChanges received = beerService.readChangesAfter(subscribed, 10);
+        append(late);
+        append(third);
+        append(fourth);
+
+        BeerChanges caughtUp = beerService.readChangesAfter(received.getCursor(), 10);
+
+        assertThat(received.getChanges()).extracting(change -> change.getBeer().getBeerName()).containsExactly("first");
+        //the first beer is not sent again - it was received from the log in the same version
+        assertThat(caughtUp.getChanges()).extracting(change -> change.getBeer().getBeerName())
+            .containsExactly("late", "third", "fourth");
+        assertThat(beerService.readChangesAfter(caughtUp.getCursor(), 10).getChanges()).isEmpty();
+    }
+
+    @Test
+    void upsertEvictsUpdatedBeersFromCache() {
+        Beer existing = Beer.builder().id(UUID.randomUUID()).version(1L).beerName("old").beerStyle("IPA").upc(1L).build();
+        BDDMockito.given(beerRepository.findAllByUpcIn(any())).willReturn(List.of(existing));
+
+        int created = beerService.upsertBeers(List.of(
+            BeerDto.builder().beerName("new").beerStyle(BeerStyleEnum.IPA).upc(1L).build(),
+            BeerDto.builder().beerName("created").beerStyle(BeerStyleEnum.ALE).upc(2L).build()));
+
+        //load of the old version which is in flight is forgotten, so it can not be cached after the update
+        assertThat(created).isEqualTo(1);
+        then(beerDtoCache).should().evict(existing.getId());
+        then(beerDtoCache).shouldHaveNoMoreInteractions();
+    }
+
+    //(lastModifiedDate, id) keyset over given beers, as the database does it
+    private void givenDatabaseWith(BeerView... beers) {
+        Comparator<BeerView> order = Comparator.comparing(BeerView::getLastModifiedDate).thenComparing(BeerView::getId);
+        BDDMockito.given(beerRepository.findChangesAfter(any(Timestamp.class), any(UUID.class), any(Pageable.class)))
+            .willAnswer(invocation -> {
+                BeerView after = BeerView.builder().lastModifiedDate(invocation.getArgument(0)).id(invocation.getArgument(1)).build();
+                Pageable pageable = invocation.getArgument(2);
+                return Stream.of(beers)
+                    .filter(beer -> order.compare(beer, after) > 0)
+                    .sorted(order)
+                    .limit(pageable.getPageSize())
+                    .collect(Collectors.toList());
+            });
+    }
+
+    private void append(BeerView beer) {
+        beerChangeLog.append(List.of(beerMapper.BeerViewToBeerDto(beer)));
+    }
+
+    private static BeerView beer(String beerName, int secondsAfterBase) {
+        return BeerView.builder()
+            .id(UUID.randomUUID())
+            .version(0L)
+            .lastModifiedDate(new Timestamp(BASE + secondsAfterBase * 1000L))
+            .beerName(beerName)
+            .build();
+    }
+
+    private static BeerMapper beerMapper(DateMapper dateMapper) {
+        BeerMapper beerMapper = new BeerMapperImpl();
+        ReflectionTestUtils.setField(beerMapper, "dateMapper", dateMapper);
+        return beerMapper;
+    }
+}
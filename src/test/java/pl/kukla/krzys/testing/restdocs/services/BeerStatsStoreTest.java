@@ -0,0 +1,220 @@
+package pl.kukla.krzys.testing.restdocs.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import pl.kukla.krzys.testing.restdocs.repository.BeerRepository;
+import pl.kukla.krzys.testing.restdocs.repository.BeerStatsHandler;
+import pl.kukla.krzys.testing.restdocs.repository.BeerStyleStatsView;
+import pl.kukla.krzys.testing.restdocs.web.mapper.DateMapper;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerDto;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerStats.BeerStyleStats;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerStyleEnum;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+
+/**
+ * @author Krzysztof Kukla
+ */
+class BeerStatsStoreTest {
+
+    private static final UUID CHEAPEST = UUID.randomUUID();
+    private static final UUID DEAREST = UUID.randomUUID();
+
+    private final BeerRepository beerRepository = Mockito.mock(BeerRepository.class);
+    private final BeerChangeLog beerChangeLog = new BeerChangeLog(new DateMapper(), 100);
+    private final BeerStatsStore beerStatsStore = new BeerStatsStore(beerRepository, beerChangeLog);
+
+    @AfterEach
+    void tearDown() {
+        beerStatsStore.destroy();
+    }
+
+    @Test
+    void statisticsAreBuiltFromDatabase() {
+        buildFromDatabase();
+
+        assertThat(beerStatsStore.getStats().getStyles())
+            .extracting(BeerStyleStats::getBeerStyle, BeerStyleStats::getCount, BeerStyleStats::getQuantityOnHand)
+            .containsExactly(tuple(BeerStyleEnum.STOUT, 1L, 0L), tuple(BeerStyleEnum.IPA, 3L, 60L));
+        assertThat(ipa()).isEqualTo(new BeerStyleStats(BeerStyleEnum.IPA, 3, new BigDecimal("1.00"), new BigDecimal("2.33"),
+            new BigDecimal("4.00"), 60));
+    }
+
+    @Test
+    void beerLeavingMinAndMaxMakesThemFoundAgain() {
+        buildFromDatabase();
+
+        //the dearest IPA becomes the cheapest stout, the cheapest IPA gets dearer
+        beerChangeLog.append(List.of(beer(DEAREST, 1, BeerStyleEnum.STOUT, "0.50"), beer(CHEAPEST, 1, BeerStyleEnum.IPA, "3.00")));
+        //late change of older version does not bring old values back
+        beerChangeLog.append(List.of(beer(DEAREST, 0, BeerStyleEnum.IPA, "4.00")));
+
+        assertThat(ipa()).isEqualTo(new BeerStyleStats(BeerStyleEnum.IPA, 2, new BigDecimal("2.00"), new BigDecimal("2.50"),
+            new BigDecimal("3.00"), 30));
+        assertThat(beerStatsStore.getStats().getStyles().get(0)).isEqualTo(new BeerStyleStats(BeerStyleEnum.STOUT, 2,
+            new BigDecimal("0.50"), new BigDecimal("0.50"), new BigDecimal("0.50"), 30));
+    }
+
+    @Test
+    void patchChangesOnlyItsFields() {
+        buildFromDatabase();
+
+        //version of update without If-Match is not known, it is the next one
+        beerChangeLog.appendPatch(BeerDto.builder().id(CHEAPEST).lastModifiedDate(OffsetDateTime.now(ZoneOffset.UTC))
+            .price(new BigDecimal("3.00")).build());
+        beerChangeLog.append(List.of(beer(CHEAPEST, 0, BeerStyleEnum.IPA, "1.00")));
+
+        assertThat(ipa()).isEqualTo(new BeerStyleStats(BeerStyleEnum.IPA, 3, new BigDecimal("2.00"), new BigDecimal("3.00"),
+            new BigDecimal("4.00"), 60));
+    }
+
+    @Test
+    void stockOfCreatedBeerIsCountedWhenItsStyleIsKnown() {
+        buildFromDatabase();
+        UUID created = UUID.randomUUID();
+
+        beerStatsStore.addStock(Map.of(created, 5, CHEAPEST, -10));
+        assertThat(ipa().getQuantityOnHand()).isEqualTo(50);
+
+        beerChangeLog.append(List.of(beer(created, 0, BeerStyleEnum.IPA, null)));
+        assertThat(ipa().getCount()).isEqualTo(4);
+        assertThat(ipa().getQuantityOnHand()).isEqualTo(55);
+        assertThat(ipa().getAvgPrice()).isEqualByComparingTo("2.33");
+    }
+
+    @Test
+    void stockWrittenWhileDatabaseIsReadIsCountedOnce() throws Exception {
+        buildFromDatabase();
+        AtomicInteger quantityOnHand = new AtomicInteger(30);
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch written = new CountDownLatch(1);
+        BDDMockito.willAnswer(invocation -> {
+            reading.countDown();
+            //write waits for the read, otherwise it would be both in the read and added after it
+            assertThat(written.await(200, TimeUnit.MILLISECONDS)).isFalse();
+            BeerStatsHandler handler = invocation.getArgument(0);
+            handler.accept(CHEAPEST, 0, "IPA", new BigDecimal("1.00"), quantityOnHand.get());
+            return null;
+        }).given(beerRepository).readBeerStats(any());
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+
+        beerStatsStore.rebuild();
+        assertThat(reading.await(5, TimeUnit.SECONDS)).isTrue();
+        Future<?> write = writer.submit(() -> beerStatsStore.writeStock(Map.of(CHEAPEST, -10), () -> {
+            quantityOnHand.addAndGet(-10);
+            written.countDown();
+        }));
+        write.get(5, TimeUnit.SECONDS);
+        writer.shutdown();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (ipa().getCount() != 1) {
+            assertThat(System.currentTimeMillis()).as("statistics built in time").isLessThan(deadline);
+            Thread.onSpinWait();
+        }
+        assertThat(ipa().getQuantityOnHand()).isEqualTo(20);
+    }
+
+    @Test
+    void writesDoNotWaitForReadOfStatistics() throws Exception {
+        buildFromDatabase();
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch read = new CountDownLatch(1);
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        //read which holds the store, as scan of beers for min and max does
+        Future<?> slowRead = reader.submit(() -> {
+            synchronized (beerStatsStore) {
+                reading.countDown();
+                read.await();
+            }
+            return null;
+        });
+        assertThat(reading.await(5, TimeUnit.SECONDS)).isTrue();
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+
+        Future<?> write = writer.submit(() -> {
+            beerChangeLog.append(List.of(beer(DEAREST, 1, BeerStyleEnum.IPA, "5.00")));
+            beerStatsStore.addStock(Map.of(CHEAPEST, -10));
+        });
+        write.get(5, TimeUnit.SECONDS);
+        read.countDown();
+        slowRead.get(5, TimeUnit.SECONDS);
+        reader.shutdown();
+        writer.shutdown();
+
+        assertThat(ipa()).isEqualTo(new BeerStyleStats(BeerStyleEnum.IPA, 3, new BigDecimal("1.00"), new BigDecimal("2.67"),
+            new BigDecimal("5.00"), 50));
+    }
+
+    @Test
+    void comparisonWithRecomputeReportsDifferentStyles() {
+        buildFromDatabase();
+
+        List<String> same = beerStatsStore.compareWith(List.of(
+            new BeerStyleStatsView("IPA", 3L, 3L, new BigDecimal("1.00"), new BigDecimal("4.00"), new BigDecimal("7.00"), 60L),
+            new BeerStyleStatsView("STOUT", 1L, 0L, null, null, null, null),
+            new BeerStyleStatsView("UNKNOWN", 7L, 0L, null, null, null, null)));
+        List<String> different = beerStatsStore.compareWith(List.of(
+            new BeerStyleStatsView("IPA", 3L, 3L, new BigDecimal("1.00"), new BigDecimal("4.00"), new BigDecimal("7.00"), 61L)));
+
+        assertThat(same).isEmpty();
+        assertThat(different).hasSize(2);
+        assertThat(different.get(0)).startsWith("IPA");
+        assertThat(different.get(1)).startsWith("STOUT");
+    }
+
+    private void buildFromDatabase() {
+        BDDMockito.willAnswer(invocation -> {
+            BeerStatsHandler handler = invocation.getArgument(0);
+            handler.accept(CHEAPEST, 0, "IPA", new BigDecimal("1.00"), 30);
+            handler.accept(DEAREST, 0, "IPA", new BigDecimal("4.00"), 30);
+            handler.accept(UUID.randomUUID(), 0, "IPA", new BigDecimal("2.00"), null);
+            handler.accept(UUID.randomUUID(), 0, "STOUT", null, null);
+            handler.accept(UUID.randomUUID(), 0, "UNKNOWN", BigDecimal.TEN, 100);
+            return null;
+        }).given(beerRepository).readBeerStats(any());
+
+        beerStatsStore.rebuild();
+        long deadline = System.currentTimeMillis() + 5000;
+        //statistics are built on background thread
+        while (beerStatsStore.getStats().getStyles().isEmpty()) {
+            assertThat(System.currentTimeMillis()).as("statistics built in time").isLessThan(deadline);
+            Thread.onSpinWait();
+        }
+    }
+
+    private BeerStyleStats ipa() {
+        return beerStatsStore.getStats().getStyles().stream()
+            .filter(style -> style.getBeerStyle() == BeerStyleEnum.IPA)
+            .findFirst()
+            .orElseThrow();
+    }
+
+    private static BeerDto beer(UUID id, int version, BeerStyleEnum beerStyle, String price) {
+        return BeerDto.builder()
+            .id(id)
+            .version(version)
+            .lastModifiedDate(OffsetDateTime.now(ZoneOffset.UTC))
+            .beerName("beer")
+            .beerStyle(beerStyle)
+            .price(price == null ? null : new BigDecimal(price))
+            .build();
+    }
+}
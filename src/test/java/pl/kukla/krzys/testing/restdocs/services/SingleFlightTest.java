@@ -0,0 +1,106 @@
+package pl.kukla.krzys.testing.restdocs.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Krzysztof Kukla
+ */
+class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>("test");
+    private final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallsShareOneLoad() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(() -> singleFlight.execute("beer", () -> {
+                loads.incrementAndGet();
+                await(release);
+                return "loaded";
+            })));
+        }
+        //leader is blocked in loader until every other caller joined it
+        waitUntil(() -> singleFlight.coalescedCount() == CALLERS - 1);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("loaded");
+        }
+        assertThat(loads).hasValue(1);
+        assertThat(singleFlight.leaderCount()).isEqualTo(1);
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        singleFlight.bindTo(registry);
+        assertThat(registry.get("beer.singleflight.calls").tag("role", "coalesced").functionCounter().count())
+            .isEqualTo(CALLERS - 1);
+        assertThat(registry.get("beer.singleflight.in.flight").gauge().value()).isZero();
+    }
+
+    @Test
+    void exceptionOfLoaderIsSharedAndKeyIsLoadedAgainAfterIt() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> leader = executor.submit(() -> singleFlight.execute("beer", () -> {
+            await(release);
+            throw new BeerNotFoundException("missing");
+        }));
+        waitUntil(() -> singleFlight.leaderCount() == 1);
+        Future<String> follower = executor.submit(() -> singleFlight.execute("beer", () -> "not called"));
+        waitUntil(() -> singleFlight.coalescedCount() == 1);
+        release.countDown();
+
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(BeerNotFoundException.class);
+        assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(BeerNotFoundException.class);
+
+        assertThat(singleFlight.execute("beer", () -> "loaded")).isEqualTo("loaded");
+    }
+
+    @Test
+    void sequentialCallsAreNotCoalesced() {
+        singleFlight.execute("beer", () -> "first");
+
+        assertThat(singleFlight.execute("beer", () -> "second")).isEqualTo("second");
+        assertThat(singleFlight.coalescedCount()).isZero();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+}
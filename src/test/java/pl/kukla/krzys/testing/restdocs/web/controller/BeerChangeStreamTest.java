@@ -0,0 +1,160 @@
+package pl.kukla.krzys.testing.restdocs.web.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import pl.kukla.krzys.testing.restdocs.services.BeerChangeLog;
+import pl.kukla.krzys.testing.restdocs.services.BeerService;
+import pl.kukla.krzys.testing.restdocs.web.mapper.DateMapper;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerChange;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerChanges;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerDto;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+
+/**
+ * @author Krzysztof Kukla
+ */
+class BeerChangeStreamTest {
+
+    private static final int BEERS = 50;
+
+    //feed of the test - cursor is number of changes read so far
+    private final List<BeerDto> published = new CopyOnWriteArrayList<>();
+    private final BeerService beerService = Mockito.mock(BeerService.class);
+    private final BeerChangeLog beerChangeLog = new BeerChangeLog(new DateMapper(), 100);
+    //one fan-out thread - with blocking writes the subscriber which stopped reading would take it
+    private final BeerChangeStream beerChangeStream = new BeerChangeStream(beerService, beerChangeLog,
+        Jackson2ObjectMapperBuilder.json().build(), 100, 10, 1, 10, Duration.ofMinutes(1), Duration.ofHours(1),
+        Duration.ofMillis(500));
+    private final CountDownLatch unblocked = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        unblocked.countDown();
+        beerChangeStream.destroy();
+    }
+
+    @Test
+    void subscriberWhichStoppedReadingDoesNotStopTheOthers() throws Exception {
+        BDDMockito.given(beerService.latestChangeCursor()).willAnswer(invocation -> String.valueOf(published.size()));
+        BDDMockito.given(beerService.readChangesAfter(anyString(), anyInt())).willAnswer(invocation -> {
+            int from = Integer.parseInt(invocation.getArgument(0));
+            int to = Math.min(published.size(), from + (int) invocation.getArgument(1));
+            List<BeerChange> changes = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                changes.add(new BeerChange(String.valueOf(i + 1), published.get(i)));
+            }
+            return new BeerChanges(changes, String.valueOf(to));
+        });
+        MockHttpServletRequest stalledRequest = new MockHttpServletRequest();
+        stalledRequest.setAsyncSupported(true);
+        Connection stalled = new Connection(1);
+        Connection reading = new Connection(Integer.MAX_VALUE);
+        MockHttpServletRequest readingRequest = new MockHttpServletRequest();
+        readingRequest.setAsyncSupported(true);
+
+        beerChangeStream.subscribe(null, stalledRequest, response(stalled));
+        beerChangeStream.subscribe(null, readingRequest, response(reading));
+        for (int i = 0; i < BEERS; i++) {
+            BeerDto beer = BeerDto.builder().id(UUID.randomUUID()).version(0).beerName("beer " + i)
+                .lastModifiedDate(OffsetDateTime.now()).build();
+            published.add(beer);
+            beerChangeLog.append(List.of(beer));
+        }
+
+        await(() -> reading.events() == BEERS);
+        //connection which has not been ready for write timeout is closed
+        await(() -> !stalledRequest.isAsyncStarted());
+        assertThat(stalled.events()).isLessThan(BEERS);
+        assertThat(readingRequest.isAsyncStarted()).isTrue();
+    }
+
+    private static MockHttpServletResponse response(Connection connection) {
+        return new MockHttpServletResponse() {
+            @Override
+            public ServletOutputStream getOutputStream() {
+                return connection;
+            }
+        };
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("condition met in time").isLessThan(deadline);
+            Thread.onSpinWait();
+        }
+    }
+
+    //connection of servlet container - it takes writes until its buffer of given capacity is full, then it is not
+    // ready and the client does not read anymore, so write of full buffer blocks as blocking write of socket would
+    private class Connection extends ServletOutputStream {
+
+        private final int capacity;
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+        private Connection(int capacity) {
+            this.capacity = capacity;
+        }
+
+        @Override
+        public synchronized boolean isReady() {
+            return written.size() < capacity;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            try {
+                writeListener.onWritePossible();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (!isReady()) {
+                try {
+                    unblocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IOException("Connection reset");
+            }
+            synchronized (this) {
+                written.write(bytes, offset, length);
+            }
+        }
+
+        private synchronized int events() {
+            return written.toString(StandardCharsets.UTF_8).split("event:beer\n", -1).length - 1;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package pl.kukla.krzys.testing.restdocs.web.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.BDDMockito;
@@ -9,9 +11,15 @@ import org.springframework.boot.test.autoconfigure.restdocs.AutoConfigureRestDoc
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.restdocs.RestDocumentationExtension;
 import org.springframework.restdocs.constraints.ConstraintDescriptions;
+import org.springframework.restdocs.headers.HeaderDocumentation;
 import org.springframework.restdocs.mockmvc.MockMvcRestDocumentation;
 import org.springframework.restdocs.mockmvc.RestDocumentationRequestBuilders;
 import org.springframework.restdocs.payload.FieldDescriptor;
@@ -19,17 +27,36 @@ import org.springframework.restdocs.payload.PayloadDocumentation;
 import org.springframework.restdocs.request.RequestDocumentation;
 import org.springframework.restdocs.snippet.Attributes;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.util.StringUtils;
 import pl.kukla.krzys.testing.restdocs.domain.Beer;
 import pl.kukla.krzys.testing.restdocs.repository.BeerRepository;
+import pl.kukla.krzys.testing.restdocs.repository.BeerVersionView;
+import pl.kukla.krzys.testing.restdocs.repository.BeerView;
 import pl.kukla.krzys.testing.restdocs.web.model.BeerDto;
 import pl.kukla.krzys.testing.restdocs.web.model.BeerStyleEnum;
 
 import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.never;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /**
@@ -40,7 +67,9 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 //here we change default configuration for @AutoConfigureRestDocs
 @AutoConfigureRestDocs(uriScheme = "https", uriHost = "dev.someserver", uriPort = 80)
 @WebMvcTest(controllers = BeerController.class)
-@ComponentScan(value = "pl.kukla.krzys.testing.restdocs.web.mapper")
+@ComponentScan(value = {"pl.kukla.krzys.testing.restdocs.web.mapper", "pl.kukla.krzys.testing.restdocs.services",
+    "pl.kukla.krzys.testing.restdocs.web.idempotency"})
+@Import(BeerChangeStream.class)
 class BeerControllerTest {
 
     @Autowired
@@ -53,10 +82,23 @@ class BeerControllerTest {
     @Autowired
     private MockMvc mockMvc;
 
+    //saved beer gets what Hibernate would assign, change feed publishes it
+    @BeforeEach
+    void setUp() {
+        BDDMockito.given(beerRepository.save(any(Beer.class))).willAnswer(invocation -> {
+            Beer beer = invocation.getArgument(0);
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            beer.setId(UUID.randomUUID());
+            beer.setVersion(0L);
+            beer.setCreatedDate(now);
+            beer.setLastModifiedDate(now);
+            return beer;
+        });
+    }
+
     @Test
     void getBeerById() throws Exception {
-        Beer beer = Beer.builder().build();
-        BDDMockito.given(beerRepository.findById(any(UUID.class))).willReturn(Optional.of(beer));
+        BDDMockito.given(beerRepository.findViewById(any(UUID.class))).willReturn(Optional.of(BeerView.builder().build()));
 
         mockMvc.perform(RestDocumentationRequestBuilders.get("/api/v1/beer/{beerId}/", UUID.randomUUID().toString())
             //this controller does not take any parameter, but for our goal - to demonstrate we adding 'isCold' parameter
@@ -90,6 +132,315 @@ class BeerControllerTest {
 
     }
 
+    @Test
+    void getBeerByIdReturnsValidators() throws Exception {
+        UUID beerId = UUID.randomUUID();
+        BeerView beer = BeerView.builder().id(beerId).version(3L).lastModifiedDate(new Timestamp(1_500_000_000_000L)).build();
+        BDDMockito.given(beerRepository.findViewById(beerId)).willReturn(Optional.of(beer));
+
+        mockMvc.perform(RestDocumentationRequestBuilders.get("/api/v1/beer/{beerId}", beerId)
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"" + beerId + "-3\""))
+            .andExpect(header().exists(HttpHeaders.LAST_MODIFIED));
+    }
+
+    @Test
+    void getBeerByIdNotFound() throws Exception {
+        mockMvc.perform(RestDocumentationRequestBuilders.get("/api/v1/beer/{beerId}", UUID.randomUUID())
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getBeerByIdNotModified() throws Exception {
+        UUID beerId = UUID.randomUUID();
+        BeerVersionView version = new SpelAwareProxyProjectionFactory().createProjection(BeerVersionView.class,
+            Map.of("id", beerId, "version", 3L, "lastModifiedDate", new Timestamp(1_500_000_000_000L)));
+        BDDMockito.given(beerRepository.findVersionById(beerId)).willReturn(Optional.of(version));
+
+        mockMvc.perform(RestDocumentationRequestBuilders.get("/api/v1/beer/{beerId}", beerId)
+            .header(HttpHeaders.IF_NONE_MATCH, "\"" + beerId + "-3\"")
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isNotModified())
+            .andDo(MockMvcRestDocumentation.document("v1/beer-get-not-modified",
+                RequestDocumentation.pathParameters(
+                    RequestDocumentation.parameterWithName("beerId").description("UUID of desired beer to get")
+                )
+                )
+            );
+
+        //beer has not changed, so whole beer is not loaded at all
+        then(beerRepository).should(never()).findViewById(any(UUID.class));
+    }
+
+    @Test
+    void getBeerByIdModifiedSinceETag() throws Exception {
+        UUID beerId = UUID.randomUUID();
+        BeerVersionView version = new SpelAwareProxyProjectionFactory().createProjection(BeerVersionView.class,
+            Map.of("id", beerId, "version", 4L));
+        BDDMockito.given(beerRepository.findVersionById(beerId)).willReturn(Optional.of(version));
+        BDDMockito.given(beerRepository.findViewById(beerId)).willReturn(Optional.of(BeerView.builder().id(beerId).version(4L).build()));
+
+        mockMvc.perform(RestDocumentationRequestBuilders.get("/api/v1/beer/{beerId}", beerId)
+            .header(HttpHeaders.IF_NONE_MATCH, "\"" + beerId + "-3\"")
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"" + beerId + "-4\""))
+            .andExpect(jsonPath("$.version").value(4));
+    }
+
+    @Test
+    void listBeers() throws Exception {
+        Beer beer = Beer.builder().id(UUID.randomUUID()).beerName("Mango Bobs").beerStyle("IPA").build();
+        BDDMockito.given(beerRepository.findBeerSlice(eq("Mango Bobs"), eq("IPA"), any(Pageable.class)))
+            .willAnswer(invocation -> new SliceImpl<>(List.of(beer), invocation.getArgument(2), true));
+
+        mockMvc.perform(RestDocumentationRequestBuilders.get("/api/v1/beer")
+            .param("pageNumber", "0")
+            .param("pageSize", "1")
+            .param("beerName", "Mango Bobs")
+            .param("beerStyle", "IPA")
+            .param("sort", "price,desc")
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.content[0].beerName").value("Mango Bobs"))
+            .andExpect(jsonPath("$.last").value(false))
+            //count(*) was not requested, so totals are not known
+            .andExpect(jsonPath("$.totalElements").doesNotExist())
+            .andDo(MockMvcRestDocumentation.document("v1/beer-list",
+                RequestDocumentation.requestParameters(
+                    RequestDocumentation.parameterWithName("pageNumber").description("Number of page, starts from 0"),
+                    RequestDocumentation.parameterWithName("pageSize").description("Size of page, default 25"),
+                    RequestDocumentation.parameterWithName("beerName").description("Optional beerName filter"),
+                    RequestDocumentation.parameterWithName("beerStyle").description("Optional beerStyle filter"),
+                    RequestDocumentation.parameterWithName("sort").description("Sort property and direction, e.g. price,desc")
+                ),
+                //page metadata is inherited from Spring PageImpl, so only beer specific fields are documented
+                PayloadDocumentation.relaxedResponseFields(
+                    PayloadDocumentation.subsectionWithPath("content").description("Beers on this page"),
+                    PayloadDocumentation.fieldWithPath("last").description("Is this the last page?")
+                )
+                )
+            );
+    }
+
+    @Test
+    void listBeersWithTotal() throws Exception {
+        BDDMockito.given(beerRepository.findBeerSlice(isNull(), isNull(), any(Pageable.class)))
+            .willAnswer(invocation -> new SliceImpl<>(List.of(Beer.builder().build()), invocation.getArgument(2), true));
+        BDDMockito.given(beerRepository.countBeers(null, null)).willReturn(5L);
+
+        mockMvc.perform(RestDocumentationRequestBuilders.get("/api/v1/beer")
+            .param("pageSize", "1")
+            .param("withTotal", "true")
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.totalElements").value(5))
+            .andExpect(jsonPath("$.totalPages").value(5));
+    }
+
+    @Test
+    void listBeersByCursor() throws Exception {
+        Beer first = Beer.builder().id(UUID.randomUUID()).createdDate(new Timestamp(1000L)).build();
+        Beer second = Beer.builder().id(UUID.randomUUID()).createdDate(new Timestamp(2000L)).build();
+        BDDMockito.given(beerRepository.findBeersAfter(isNull(), isNull(), isNull(), isNull(), anyInt()))
+            .willReturn(List.of(first, second));
+
+        mockMvc.perform(RestDocumentationRequestBuilders.get("/api/v1/beer")
+            .param("cursor", "")
+            .param("pageSize", "1")
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.content.length()").value(1))
+            .andExpect(jsonPath("$.nextCursor").isNotEmpty())
+            .andDo(MockMvcRestDocumentation.document("v1/beer-list-cursor",
+                RequestDocumentation.requestParameters(
+                    RequestDocumentation.parameterWithName("cursor").description("Keyset cursor, 'nextCursor' of previous page "
+                        + "or empty for first page"),
+                    RequestDocumentation.parameterWithName("pageSize").description("Size of page, default 25")
+                ),
+                PayloadDocumentation.relaxedResponseFields(
+                    PayloadDocumentation.subsectionWithPath("content").description("Beers on this page"),
+                    PayloadDocumentation.fieldWithPath("nextCursor").description("Cursor of next page, absent on last page")
+                )
+                )
+            );
+    }
+
+    @Test
+    void listBeersByInvalidCursor() throws Exception {
+        mockMvc.perform(RestDocumentationRequestBuilders.get("/api/v1/beer")
+            .param("cursor", "not-a-cursor")
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getBeerByUpc() throws Exception {
+        UUID beerId = UUID.randomUUID();
+        BeerView beer = BeerView.builder().id(beerId).version(1L).beerName("Mango Bobs").beerStyle("IPA")
+            .upc(337010000001L).price(new BigDecimal("12.95")).build();
+        BDDMockito.given(beerRepository.findByUpc(337010000001L)).willReturn(Optional.of(beer));
+
+        mockMvc.perform(RestDocumentationRequestBuilders.get("/api/v1/beer/upc/{upc}", 337010000001L)
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.id").value(beerId.toString()))
+            .andExpect(jsonPath("$.beerStyle").value("IPA"))
+            .andExpect(header().string(HttpHeaders.ETAG, "\"" + beerId + "-1\""))
+            .andDo(MockMvcRestDocumentation.document("v1/beer-get-upc",
+                RequestDocumentation.pathParameters(
+                    RequestDocumentation.parameterWithName("upc").description("UPC (barcode) of desired beer")
+                )
+                )
+            );
+
+        then(beerRepository).should(never()).findById(any());
+    }
+
+    @Test
+    void getBeerByUnknownUpc() throws Exception {
+        mockMvc.perform(RestDocumentationRequestBuilders.get("/api/v1/beer/upc/{upc}", 1L)
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void lookupBeers() throws Exception {
+        UUID first = UUID.randomUUID();
+        UUID missing = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        BDDMockito.given(beerRepository.findViewsByIdIn(any())).willReturn(List.of(
+            BeerView.builder().id(second).version(1L).beerName("Galaxy Cat").beerStyle("PALE_ALE").upc(337010000002L)
+                .price(new BigDecimal("11.95")).build(),
+            BeerView.builder().id(first).version(1L).beerName("Mango Bobs").beerStyle("IPA").upc(337010000001L)
+                .price(new BigDecimal("12.95")).build()));
+
+        mockMvc.perform(RestDocumentationRequestBuilders.post("/api/v1/beer/lookup")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(List.of(first, missing, second))))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.beers[0].id").value(first.toString()))
+            .andExpect(jsonPath("$.beers[0].beer.beerName").value("Mango Bobs"))
+            .andExpect(jsonPath("$.beers[1].id").value(missing.toString()))
+            .andExpect(jsonPath("$.beers[1].found").value(false))
+            .andExpect(jsonPath("$.beers[1].beer").doesNotExist())
+            .andExpect(jsonPath("$.beers[2].beer.beerName").value("Galaxy Cat"))
+            .andDo(MockMvcRestDocumentation.document("v1/beer-lookup",
+                PayloadDocumentation.requestFields(
+                    PayloadDocumentation.fieldWithPath("[]").description("Ids of beers")
+                        .attributes(Attributes.key("constraints").value("At most 100 ids"))
+                ),
+                PayloadDocumentation.responseFields(
+                    PayloadDocumentation.fieldWithPath("beers[]").description("One item for every requested id, in the same order"),
+                    PayloadDocumentation.fieldWithPath("beers[].id").description("Requested id"),
+                    PayloadDocumentation.fieldWithPath("beers[].found").description("False when there is no beer with this id"),
+                    PayloadDocumentation.subsectionWithPath("beers[].beer").optional().description("Beer, null when not found")
+                )
+                )
+            );
+
+        //three ids are read by one query with IN list padded to four
+        then(beerRepository).should().findViewsByIdIn(argThat(ids -> ids.size() == 4));
+    }
+
+    @Test
+    void searchBeers() throws Exception {
+        BeerDto beerDto = createBeerDto();
+        beerDto.setBeerName("Velvet Owl");
+        mockMvc.perform(RestDocumentationRequestBuilders.post("/api/v1/beer/")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(beerDto)))
+            .andExpect(status().isCreated());
+
+        //created beer is in the index right after commit, search itself does not touch database
+        mockMvc.perform(RestDocumentationRequestBuilders.get("/api/v1/beer/search")
+            .param("prefix", "ow")
+            .param("style", "LAGER")
+            .param("limit", "5"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.beers[0].beerName").value("Velvet Owl"))
+            .andExpect(jsonPath("$.beers[0].beerStyle").value("LAGER"))
+            .andDo(MockMvcRestDocumentation.document("v1/beer-search",
+                RequestDocumentation.requestParameters(
+                    RequestDocumentation.parameterWithName("prefix").description("Beginning of any word of beer name, case insensitive"),
+                    RequestDocumentation.parameterWithName("style").description("Optional beerStyle filter"),
+                    RequestDocumentation.parameterWithName("limit").description("Maximum number of beers, default 10, at most 100")
+                ),
+                PayloadDocumentation.responseFields(
+                    PayloadDocumentation.fieldWithPath("beers[]").description("Beers ordered by name from the matching word on"),
+                    PayloadDocumentation.fieldWithPath("beers[].id").description("Id of beer"),
+                    PayloadDocumentation.fieldWithPath("beers[].beerName").description("Name of beer"),
+                    PayloadDocumentation.fieldWithPath("beers[].beerStyle").description("Style of beer")
+                )
+                )
+            );
+    }
+
+    @Test
+    void getBeerStats() throws Exception {
+        BeerDto beerDto = createBeerDto();
+        beerDto.setBeerStyle(BeerStyleEnum.SAISON);
+        beerDto.setQuantityOnHand(24);
+        mockMvc.perform(RestDocumentationRequestBuilders.post("/api/v1/beer/")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(beerDto)))
+            .andExpect(status().isCreated());
+
+        //created beer is counted right after commit, statistics are not read from database
+        mockMvc.perform(RestDocumentationRequestBuilders.get("/api/v1/beer/stats"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.styles[?(@.beerStyle == 'SAISON')].count").value(Matchers.contains(1)))
+            .andExpect(jsonPath("$.styles[?(@.beerStyle == 'SAISON')].maxPrice").value(Matchers.contains(9.99)))
+            .andExpect(jsonPath("$.styles[?(@.beerStyle == 'SAISON')].quantityOnHand").value(Matchers.contains(24)))
+            .andDo(MockMvcRestDocumentation.document("v1/beer-stats",
+                PayloadDocumentation.responseFields(
+                    PayloadDocumentation.fieldWithPath("styles[]").description("Styles which have beers, in order of BeerStyleEnum"),
+                    PayloadDocumentation.fieldWithPath("styles[].beerStyle").description("Style of beer"),
+                    PayloadDocumentation.fieldWithPath("styles[].count").description("Number of beers"),
+                    PayloadDocumentation.fieldWithPath("styles[].minPrice").description("Lowest price, null when no beer has price"),
+                    PayloadDocumentation.fieldWithPath("styles[].avgPrice").description("Average price of beers with price"),
+                    PayloadDocumentation.fieldWithPath("styles[].maxPrice").description("Highest price"),
+                    PayloadDocumentation.fieldWithPath("styles[].quantityOnHand").description("Total stock written to database")
+                )
+                )
+            );
+        then(beerRepository).should(never()).findStyleStats();
+    }
+
+    @Test
+    void searchBeersWithBlankPrefix() throws Exception {
+        mockMvc.perform(RestDocumentationRequestBuilders.get("/api/v1/beer/search").param("prefix", " "))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void lookupBeersUsesCacheOfGetBeerById() throws Exception {
+        UUID beerId = UUID.randomUUID();
+        BDDMockito.given(beerRepository.findViewById(beerId)).willReturn(Optional.of(BeerView.builder().id(beerId).version(1L).build()));
+        mockMvc.perform(RestDocumentationRequestBuilders.get("/api/v1/beer/{beerId}", beerId))
+            .andExpect(status().isOk());
+
+        mockMvc.perform(RestDocumentationRequestBuilders.post("/api/v1/beer/lookup")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(List.of(beerId))))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.beers[0].found").value(true));
+
+        then(beerRepository).should(never()).findViewsByIdIn(any());
+    }
+
+    @Test
+    void lookupOfTooManyBeersIsRejected() throws Exception {
+        List<UUID> beerIds = Stream.generate(UUID::randomUUID).limit(101).collect(Collectors.toList());
+
+        mockMvc.perform(RestDocumentationRequestBuilders.post("/api/v1/beer/lookup")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(beerIds)))
+            .andExpect(status().isBadRequest());
+    }
+
     @Test
     void saveNewBeer() throws Exception {
         BeerDto beerDto = createBeerDto();
@@ -125,9 +476,182 @@ class BeerControllerTest {
 
     }
 
+    @Test
+    void saveNewBeerRetriedWithIdempotencyKey() throws Exception {
+        String beerDtoJson = objectMapper.writeValueAsString(createBeerDto());
+        String idempotencyKey = UUID.randomUUID().toString();
+
+        mockMvc.perform(RestDocumentationRequestBuilders.post("/api/v1/beer/")
+            .header(BeerController.IDEMPOTENCY_KEY_HEADER, idempotencyKey)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(beerDtoJson))
+            .andExpect(status().isCreated())
+            .andExpect(header().doesNotExist(BeerController.IDEMPOTENT_REPLAYED_HEADER));
+
+        mockMvc.perform(RestDocumentationRequestBuilders.post("/api/v1/beer/")
+            .header(BeerController.IDEMPOTENCY_KEY_HEADER, idempotencyKey)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(beerDtoJson))
+            .andExpect(status().isCreated())
+            .andExpect(header().string(BeerController.IDEMPOTENT_REPLAYED_HEADER, "true"))
+            .andDo(MockMvcRestDocumentation.document("v1/beer-new-replayed"));
+
+        //the same beer written differently is the same request
+        mockMvc.perform(RestDocumentationRequestBuilders.post("/api/v1/beer/")
+            .header(BeerController.IDEMPOTENCY_KEY_HEADER, idempotencyKey)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(beerDtoJson.replace("9.99", "9.990")))
+            .andExpect(status().isCreated())
+            .andExpect(header().string(BeerController.IDEMPOTENT_REPLAYED_HEADER, "true"));
+
+        mockMvc.perform(RestDocumentationRequestBuilders.post("/api/v1/beer/")
+            .header(BeerController.IDEMPOTENCY_KEY_HEADER, idempotencyKey)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(beerDtoJson.replace("beer name", "other beer")))
+            .andExpect(status().isUnprocessableEntity());
+
+        then(beerRepository).should().save(any(Beer.class));
+    }
+
+    @Test
+    void saveBeersFromNdjson() throws Exception {
+        String valid = objectMapper.writeValueAsString(createBeerDto());
+        String body = valid + "\n"
+            + "{\"beerName\":\"\",\"beerStyle\":\"LAGER\",\"upc\":1,\"price\":1.00}\n"
+            + "{\"beerName\":\"unknown style\",\"beerStyle\":\"CIDER\",\"upc\":2,\"price\":1.00}\n"
+            + valid.replace("12345678", "12345679") + "\n";
+
+        mockMvc.perform(RestDocumentationRequestBuilders.post("/api/v1/beer/batch")
+            .contentType(BeerController.APPLICATION_NDJSON_VALUE)
+            .content(body))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.created").value(2))
+            .andExpect(jsonPath("$.updated").value(0))
+            .andExpect(jsonPath("$.errors[0].index").value(1))
+            .andExpect(jsonPath("$.errors[1].index").value(2))
+            .andDo(MockMvcRestDocumentation.document("v1/beer-batch",
+                PayloadDocumentation.responseFields(
+                    PayloadDocumentation.fieldWithPath("created").description("Number of created beers"),
+                    PayloadDocumentation.fieldWithPath("updated").description("Number of beers updated, matched on upc"),
+                    PayloadDocumentation.fieldWithPath("errors[].index").description("Position of rejected beer in request body"),
+                    PayloadDocumentation.fieldWithPath("errors[].messages").description("Why beer was rejected")
+                )
+                )
+            );
+    }
+
+    @Test
+    void saveBeersFromJsonArrayUpdatesByUpc() throws Exception {
+        BeerDto beerDto = createBeerDto();
+        BDDMockito.given(beerRepository.findAllByUpcIn(any()))
+            .willReturn(List.of(Beer.builder().id(UUID.randomUUID()).upc(beerDto.getUpc()).build()));
+
+        mockMvc.perform(RestDocumentationRequestBuilders.post("/api/v1/beer/batch")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(List.of(beerDto))))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.created").value(0))
+            .andExpect(jsonPath("$.updated").value(1))
+            .andExpect(jsonPath("$.errors").isEmpty());
+    }
+
+    @Test
+    void exportBeersAsNdjson() throws Exception {
+        BDDMockito.given(beerRepository.streamAll()).willReturn(Stream.of(
+            Beer.builder().beerName("Mango Bobs").build(),
+            Beer.builder().beerName("Galaxy Cat").build()));
+
+        String body = mockMvc.perform(RestDocumentationRequestBuilders.get("/api/v1/beer/export")
+            .accept(BeerController.APPLICATION_NDJSON_VALUE))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(BeerController.APPLICATION_NDJSON_VALUE))
+            .andDo(MockMvcRestDocumentation.document("v1/beer-export"))
+            .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(objectMapper.readValue(lines[1], BeerDto.class).getBeerName())
+            .isEqualTo("Galaxy Cat");
+    }
+
+    @Test
+    void exportBeersAsCsv() throws Exception {
+        BDDMockito.given(beerRepository.streamAll()).willReturn(Stream.of(
+            Beer.builder().beerName("Mango, \"Bobs\"").beerStyle("IPA").price(new BigDecimal("12.95")).build()));
+
+        mockMvc.perform(RestDocumentationRequestBuilders.get("/api/v1/beer/export")
+            .accept("text/csv"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith("text/csv"))
+            .andExpect(content().string(
+                "id,version,createdDate,lastModifiedDate,beerName,beerStyle,upc,price,quantityOnHand\n"
+                    + ",,,,\"Mango, \"\"Bobs\"\"\",IPA,,12.95,\n"));
+    }
+
+    @Test
+    void streamChangesFromBeginning() throws Exception {
+        Timestamp modified = Timestamp.valueOf("2020-02-01 10:00:00");
+        BDDMockito.given(beerRepository.findChanges(any(Pageable.class))).willReturn(List.of(
+            BeerView.builder().id(UUID.randomUUID()).version(0L).lastModifiedDate(modified).beerName("Mango Bobs").build(),
+            BeerView.builder().id(UUID.randomUUID()).version(3L).lastModifiedDate(modified).beerName("Galaxy Cat").build()));
+
+        MvcResult result = mockMvc.perform(RestDocumentationRequestBuilders.get("/api/v1/beer/changes")
+            .param("cursor", "")
+            .accept(MediaType.TEXT_EVENT_STREAM))
+            .andExpect(request().asyncStarted())
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM))
+            .andDo(MockMvcRestDocumentation.document("v1/beer-changes",
+                RequestDocumentation.requestParameters(
+                    RequestDocumentation.parameterWithName("cursor")
+                        .description("Where the feed starts - id of the last received event, empty for the beginning")
+                ),
+                HeaderDocumentation.requestHeaders(
+                    HeaderDocumentation.headerWithName(HttpHeaders.ACCEPT).description("text/event-stream")
+                )
+            ))
+            .andReturn();
+
+        String[] events = awaitEvents(result, 2);
+        assertThat(events[0]).startsWith("id:").contains("\nevent:beer\n").contains("\"beerName\":\"Mango Bobs\"");
+        assertThat(events[1]).contains("\"beerName\":\"Galaxy Cat\"");
+
+        //feed is resumed after the first event from database, as it is older than what is kept in memory
+        String lastEventId = events[0].substring("id:".length(), events[0].indexOf('\n'));
+        mockMvc.perform(RestDocumentationRequestBuilders.get("/api/v1/beer/changes")
+            .header(BeerController.LAST_EVENT_ID_HEADER, lastEventId))
+            .andExpect(request().asyncStarted());
+        then(beerRepository).should().findChangesAfter(eq(modified), any(UUID.class), any(Pageable.class));
+    }
+
+    @Test
+    void streamChangesSendsNewBeers() throws Exception {
+        MvcResult result = mockMvc.perform(RestDocumentationRequestBuilders.get("/api/v1/beer/changes"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        mockMvc.perform(RestDocumentationRequestBuilders.post("/api/v1/beer/")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(createBeerDto())))
+            .andExpect(status().isCreated());
+
+        //only changes made after subscription are sent, all of them from memory
+        assertThat(awaitEvents(result, 1)[0]).contains("\"beerName\":\"beer name\"");
+        then(beerRepository).should(never()).findChanges(any());
+    }
+
+    @Test
+    void streamChangesWithInvalidCursor() throws Exception {
+        mockMvc.perform(RestDocumentationRequestBuilders.get("/api/v1/beer/changes")
+            .header(BeerController.LAST_EVENT_ID_HEADER, "not a cursor"))
+            .andExpect(status().isBadRequest());
+    }
+
     @Test
     void updateBeerById() throws Exception {
         BeerDto beerDto = createBeerDto();
+        BDDMockito.given(beerRepository.updateBeer(any(UUID.class), isNull(), any(Timestamp.class), eq("beer name"), eq("LAGER"), any(), eq(12345678L)))
+            .willReturn(1);
 
         String beerDtoJson = objectMapper.writeValueAsString(beerDto);
 
@@ -135,6 +659,76 @@ class BeerControllerTest {
             .contentType(MediaType.APPLICATION_JSON)
             .content(beerDtoJson))
             .andExpect(status().isNoContent());
+
+        then(beerRepository).should(never()).findById(any());
+    }
+
+    @Test
+    void updateBeerByIdNotFound() throws Exception {
+        String beerDtoJson = objectMapper.writeValueAsString(createBeerDto());
+
+        mockMvc.perform(RestDocumentationRequestBuilders.put("/api/v1/beer/" + UUID.randomUUID())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(beerDtoJson))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void updateBeerByIdWithStaleVersion() throws Exception {
+        UUID beerId = UUID.randomUUID();
+        BDDMockito.given(beerRepository.existsById(beerId)).willReturn(true);
+
+        String beerDtoJson = objectMapper.writeValueAsString(createBeerDto());
+
+        mockMvc.perform(RestDocumentationRequestBuilders.put("/api/v1/beer/{beerId}", beerId)
+            .header(HttpHeaders.IF_MATCH, "\"" + beerId + "-2\"")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(beerDtoJson))
+            .andExpect(status().isConflict());
+
+        then(beerRepository).should().updateBeer(eq(beerId), eq(2L), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void patchBeerById() throws Exception {
+        UUID beerId = UUID.randomUUID();
+        BDDMockito.given(beerRepository.updateBeer(eq(beerId), eq(3L), any(Timestamp.class), isNull(), isNull(), eq(new BigDecimal("10.49")), isNull())).willReturn(1);
+
+        mockMvc.perform(RestDocumentationRequestBuilders.patch("/api/v1/beer/{beerId}", beerId)
+            .header(HttpHeaders.IF_MATCH, "\"" + beerId + "-3\"")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("{\"price\": 10.49}"))
+            .andExpect(status().isNoContent())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"" + beerId + "-4\""))
+            .andDo(MockMvcRestDocumentation.document("v1/beer-patch",
+                RequestDocumentation.pathParameters(
+                    RequestDocumentation.parameterWithName("beerId").description("UUID of beer to update")
+                )
+                )
+            );
+    }
+
+    @Test
+    void patchBeerByIdValidatesPresentFieldsOnly() throws Exception {
+        mockMvc.perform(RestDocumentationRequestBuilders.patch("/api/v1/beer/{beerId}", UUID.randomUUID())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("{\"price\": -1}"))
+            .andExpect(status().isBadRequest());
+
+        then(beerRepository).should(never()).updateBeer(any(), any(), any(), any(), any(), any(), any());
+    }
+
+    //events are written by fan-out threads, so they are waited for
+    private static String[] awaitEvents(MvcResult result, int count) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        String[] events = new String[0];
+        while (events.length < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            String body = result.getResponse().getContentAsString();
+            events = body.isEmpty() ? new String[0] : body.split("\n\n");
+        }
+        assertThat(events).hasSize(count);
+        return events;
     }
 
     private BeerDto createBeerDto() {
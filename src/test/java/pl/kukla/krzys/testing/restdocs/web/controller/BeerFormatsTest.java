@@ -0,0 +1,157 @@
+package pl.kukla.krzys.testing.restdocs.web.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerBatchResult;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerDto;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerStyleEnum;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//the whole application, so converters are the ones Spring Boot and MetricsConfig configure
+@SpringBootTest
+@AutoConfigureMockMvc
+class BeerFormatsTest {
+
+    private static final MediaType APPLICATION_SMILE = MediaType.parseMediaType(AbstractBeerController.APPLICATION_SMILE_VALUE);
+
+    private final ObjectMapper cbor = Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build();
+    private final ObjectMapper smile = Jackson2ObjectMapperBuilder.json().factory(new SmileFactory()).build();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void beerIsCreatedAndReadInCbor() throws Exception {
+        mockMvc.perform(post("/api/v1/beer")
+            .contentType(MediaType.APPLICATION_CBOR)
+            .content(cbor.writeValueAsBytes(beer("Cbor Cat", 4000001L))))
+            .andExpect(status().isCreated());
+
+        MvcResult result = mockMvc.perform(get("/api/v1/beer/upc/{upc}", 4000001L).accept(MediaType.APPLICATION_CBOR))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+            .andReturn();
+
+        BeerDto read = cbor.readValue(result.getResponse().getContentAsByteArray(), BeerDto.class);
+        assertThat(read.getBeerName()).isEqualTo("Cbor Cat");
+        assertThat(read.getPrice()).isEqualByComparingTo("12.95");
+        assertThat(read.getId()).isNotNull();
+        assertThat(read.getCreatedDate()).isNotNull();
+    }
+
+    @Test
+    void eTagOfBeerDependsOnFormat() throws Exception {
+        mockMvc.perform(post("/api/v1/beer")
+            .contentType(MediaType.APPLICATION_CBOR)
+            .content(cbor.writeValueAsBytes(beer("Cbor Fox", 4000005L))))
+            .andExpect(status().isCreated());
+        BeerDto created = cbor.readValue(mockMvc.perform(get("/api/v1/beer/upc/{upc}", 4000005L).accept(MediaType.APPLICATION_CBOR))
+            .andReturn().getResponse().getContentAsByteArray(), BeerDto.class);
+        String cborETag = "\"" + created.getId() + "-" + created.getVersion() + "-cbor\"";
+
+        mockMvc.perform(get("/api/v1/beer/{beerId}", created.getId()).accept(MediaType.APPLICATION_CBOR))
+            .andExpect(header().string(HttpHeaders.ETAG, cborETag))
+            .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT));
+        //JSON cached by a client is not valid as CBOR, and the other way round
+        mockMvc.perform(get("/api/v1/beer/{beerId}", created.getId()).accept(MediaType.APPLICATION_CBOR)
+            .header(HttpHeaders.IF_NONE_MATCH, cborETag))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT));
+        mockMvc.perform(get("/api/v1/beer/{beerId}", created.getId()).accept(MediaType.APPLICATION_JSON)
+            .header(HttpHeaders.IF_NONE_MATCH, cborETag))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"" + created.getId() + "-" + created.getVersion() + "\""));
+
+        //ETag of any format is a precondition of update
+        mockMvc.perform(patch("/api/v1/beer/{beerId}", created.getId())
+            .contentType(MediaType.APPLICATION_CBOR)
+            .accept(MediaType.APPLICATION_CBOR)
+            .header(HttpHeaders.IF_MATCH, cborETag)
+            .content(cbor.writeValueAsBytes(BeerDto.builder().price(new BigDecimal("13.95")).build())))
+            .andExpect(status().isNoContent())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"" + created.getId() + "-" + (created.getVersion() + 1) + "-cbor\""));
+    }
+
+    @Test
+    void invalidBeerIsRejectedInEveryFormat() throws Exception {
+        BeerDto invalid = beer("", 4000002L);
+
+        mockMvc.perform(post("/api/v1/beer").contentType(MediaType.APPLICATION_JSON).content(new ObjectMapper().writeValueAsBytes(invalid)))
+            .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/v1/beer").contentType(MediaType.APPLICATION_CBOR).content(cbor.writeValueAsBytes(invalid)))
+            .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/v1/beer").contentType(APPLICATION_SMILE).content(smile.writeValueAsBytes(invalid)))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void batchIsReadAsSequenceOfSmileBeers() throws Exception {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (SequenceWriter beers = smile.writerFor(BeerDto.class).writeValues(body)) {
+            beers.write(beer("Smile Owl", 4000003L));
+            beers.write(beer("x", 4000004L));
+        }
+
+        MvcResult result = mockMvc.perform(post("/api/v1/beer/batch")
+            .contentType(APPLICATION_SMILE)
+            .accept(APPLICATION_SMILE)
+            .content(body.toByteArray()))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(APPLICATION_SMILE))
+            .andReturn();
+
+        BeerBatchResult batch = smile.readValue(result.getResponse().getContentAsByteArray(), BeerBatchResult.class);
+        assertThat(batch.getCreated()).isEqualTo(1);
+        assertThat(batch.getErrors()).hasSize(1);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void pageIsWrittenInSmileAndJsonStaysDefault() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/v1/beer").accept(APPLICATION_SMILE))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(APPLICATION_SMILE))
+            .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+            .andReturn();
+        Map<String, Object> page = smile.readValue(result.getResponse().getContentAsByteArray(), Map.class);
+        assertThat((List<Object>) page.get("content")).isNotEmpty();
+
+        mockMvc.perform(get("/api/v1/beer").accept(MediaType.ALL))
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+    }
+
+    private static BeerDto beer(String beerName, long upc) {
+        return BeerDto.builder()
+            .beerName(beerName)
+            .beerStyle(BeerStyleEnum.GOSE)
+            .upc(upc)
+            .price(new BigDecimal("12.95"))
+            .build();
+    }
+}
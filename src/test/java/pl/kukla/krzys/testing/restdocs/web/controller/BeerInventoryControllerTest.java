@@ -0,0 +1,180 @@
+package pl.kukla.krzys.testing.restdocs.web.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.restdocs.AutoConfigureRestDocs;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.restdocs.RestDocumentationExtension;
+import org.springframework.restdocs.constraints.ConstraintDescriptions;
+import org.springframework.restdocs.mockmvc.MockMvcRestDocumentation;
+import org.springframework.restdocs.mockmvc.RestDocumentationRequestBuilders;
+import org.springframework.restdocs.payload.FieldDescriptor;
+import org.springframework.restdocs.payload.PayloadDocumentation;
+import org.springframework.restdocs.request.RequestDocumentation;
+import org.springframework.restdocs.snippet.Attributes;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.util.StringUtils;
+import pl.kukla.krzys.testing.restdocs.repository.BeerRepository;
+import pl.kukla.krzys.testing.restdocs.repository.BeerStockView;
+import pl.kukla.krzys.testing.restdocs.services.BeerInventoryService;
+import pl.kukla.krzys.testing.restdocs.services.BeerInventoryServiceImpl;
+import pl.kukla.krzys.testing.restdocs.services.BeerStatsStore;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerInventoryRequest;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.never;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * @author Krzysztof Kukla
+ */
+@ExtendWith(value = RestDocumentationExtension.class)
+@AutoConfigureRestDocs(uriScheme = "https", uriHost = "dev.someserver", uriPort = 80)
+//write-behind is not run by its timer during tests, so a request can be checked not to write stock itself
+@WebMvcTest(controllers = BeerInventoryController.class, properties = "beer.inventory.flush-interval=1d")
+@Import(BeerInventoryServiceImpl.class)
+class BeerInventoryControllerTest {
+
+    private static final String RESERVATION = "{\"quantity\": 30}";
+
+    @MockBean
+    private BeerRepository beerRepository;
+
+    @MockBean
+    private BeerStatsStore beerStatsStore;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BeerInventoryService beerInventoryService;
+
+    private final UUID beerId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        BDDMockito.given(beerRepository.findStockById(beerId)).willReturn(Optional.of(new BeerStockView(200, 100, 150)));
+        BDDMockito.willAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return null;
+        }).given(beerStatsStore).writeStock(any(), any());
+    }
+
+    @Test
+    void getInventory() throws Exception {
+        mockMvc.perform(RestDocumentationRequestBuilders.get("/api/v1/beer/{beerId}/inventory", beerId))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.available").value(100))
+            .andDo(MockMvcRestDocumentation.document("v1/beer-inventory-get",
+                RequestDocumentation.pathParameters(
+                    RequestDocumentation.parameterWithName("beerId").description("UUID of desired beer to get")
+                ),
+                PayloadDocumentation.responseFields(inventoryFields())
+                )
+            );
+    }
+
+    @Test
+    void reserve() throws Exception {
+        mockMvc.perform(RestDocumentationRequestBuilders.post("/api/v1/beer/{beerId}/inventory/reserve", beerId)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(RESERVATION))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.quantityOnHand").value(170))
+            .andExpect(jsonPath("$.available").value(70))
+            .andDo(MockMvcRestDocumentation.document("v1/beer-inventory-reserve",
+                PayloadDocumentation.requestFields(
+                    PayloadDocumentation.fieldWithPath("quantity").description("Quantity to take from stock")
+                        .attributes(Attributes.key("constraints").value(StringUtils.collectionToDelimitedString(
+                            new ConstraintDescriptions(BeerInventoryRequest.class).descriptionsForProperty("quantity"), ". ")))
+                ),
+                PayloadDocumentation.responseFields(inventoryFields())
+                )
+            );
+        //written behind the request, not by it
+        then(beerRepository).should(never()).addQuantitiesOnHand(any());
+        beerInventoryService.flush();
+        then(beerRepository).should().addQuantitiesOnHand(Map.of(beerId, -30));
+    }
+
+    @Test
+    void reserveBelowMinOnHandIsConflict() throws Exception {
+        mockMvc.perform(RestDocumentationRequestBuilders.post("/api/v1/beer/{beerId}/inventory/reserve", beerId)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("{\"quantity\": 101}"))
+            .andExpect(status().isConflict());
+
+        mockMvc.perform(RestDocumentationRequestBuilders.get("/api/v1/beer/{beerId}/inventory", beerId))
+            .andExpect(jsonPath("$.quantityOnHand").value(200));
+    }
+
+    @Test
+    void reserveWithoutPositiveQuantityIsBadRequest() throws Exception {
+        mockMvc.perform(RestDocumentationRequestBuilders.post("/api/v1/beer/{beerId}/inventory/reserve", beerId)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("{}"))
+            .andExpect(status().isBadRequest());
+        mockMvc.perform(RestDocumentationRequestBuilders.post("/api/v1/beer/{beerId}/inventory/release", beerId)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("{\"quantity\": -1}"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void releaseAndRestock() throws Exception {
+        mockMvc.perform(RestDocumentationRequestBuilders.post("/api/v1/beer/{beerId}/inventory/release", beerId)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(RESERVATION))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.quantityOnHand").value(230));
+
+        //without body one batch of quantityToBrew is brewed
+        mockMvc.perform(RestDocumentationRequestBuilders.post("/api/v1/beer/{beerId}/inventory/restock", beerId))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.quantityOnHand").value(380))
+            .andDo(MockMvcRestDocumentation.document("v1/beer-inventory-restock",
+                PayloadDocumentation.responseFields(inventoryFields())
+                )
+            );
+    }
+
+    @Test
+    void releaseAboveIntegerRangeIsConflict() throws Exception {
+        mockMvc.perform(RestDocumentationRequestBuilders.post("/api/v1/beer/{beerId}/inventory/release", beerId)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("{\"quantity\": " + (Integer.MAX_VALUE - 200) + "}"))
+            .andExpect(status().isOk());
+
+        mockMvc.perform(RestDocumentationRequestBuilders.post("/api/v1/beer/{beerId}/inventory/restock", beerId))
+            .andExpect(status().isConflict());
+        mockMvc.perform(RestDocumentationRequestBuilders.get("/api/v1/beer/{beerId}/inventory", beerId))
+            .andExpect(jsonPath("$.quantityOnHand").value(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void unknownBeerIsNotFound() throws Exception {
+        mockMvc.perform(RestDocumentationRequestBuilders.get("/api/v1/beer/{beerId}/inventory", UUID.randomUUID()))
+            .andExpect(status().isNotFound());
+    }
+
+    private static FieldDescriptor[] inventoryFields() {
+        return new FieldDescriptor[]{
+            PayloadDocumentation.fieldWithPath("beerId").description("Id of beer"),
+            PayloadDocumentation.fieldWithPath("quantityOnHand").description("Stock of beer"),
+            PayloadDocumentation.fieldWithPath("minOnHand").description("Stock which is never reserved"),
+            PayloadDocumentation.fieldWithPath("available").description("Quantity which can be reserved")
+        };
+    }
+}
@@ -0,0 +1,90 @@
+package pl.kukla.krzys.testing.restdocs.web.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.unit.DataSize;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerDto;
+import pl.kukla.krzys.testing.restdocs.web.model.BeerStyleEnum;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Krzysztof Kukla
+ */
+class BeerPayloadCacheTest {
+
+    //built the way Spring builds its ObjectMapper - well-known modules, e.g. of java.time dates, are registered
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final BeerPayloadCache beerPayloadCache = new BeerPayloadCache(objectMapper, DataSize.ofMegabytes(1),
+        DataSize.ofBytes(100));
+
+    @Test
+    void sameVersionIsSerializedOnce() {
+        BeerDto beerDto = beer(UUID.randomUUID(), 1, "Mango Bobs");
+
+        byte[] first = beerPayloadCache.toResponse(beerDto, new HttpHeaders(), new HttpHeaders()).getBody();
+        byte[] second = beerPayloadCache.toResponse(beerDto, new HttpHeaders(), new HttpHeaders()).getBody();
+        byte[] newVersion = beerPayloadCache.toResponse(beer(beerDto.getId(), 2, "Mango Bobs"), new HttpHeaders(),
+            new HttpHeaders()).getBody();
+
+        assertThat(second).isSameAs(first);
+        assertThat(newVersion).isNotSameAs(first);
+    }
+
+    @Test
+    void gzipIsSentWhenAccepted() throws Exception {
+        BeerDto beerDto = beer(UUID.randomUUID(), 1, "Mango Bobs");
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+
+        ResponseEntity<byte[]> response = beerPayloadCache.toResponse(beerDto, requestHeaders, new HttpHeaders());
+
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(response.getHeaders().getVary()).containsExactly(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+        byte[] json = StreamUtils.copyToByteArray(new GZIPInputStream(new ByteArrayInputStream(response.getBody())));
+        assertThat(objectMapper.readValue(json, BeerDto.class)).isEqualTo(beerDto);
+    }
+
+    @Test
+    void smallPayloadIsNotCompressed() {
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+
+        BeerPayloadCache compressingLargeOnly = new BeerPayloadCache(objectMapper, DataSize.ofMegabytes(1), DataSize.ofKilobytes(1));
+
+        ResponseEntity<byte[]> response = compressingLargeOnly.toResponse(beer(UUID.randomUUID(), 1, "Mango Bobs"),
+            requestHeaders, new HttpHeaders());
+
+        assertThat(response.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)).isFalse();
+    }
+
+    @Test
+    void acceptEncodingNegotiation() {
+        assertThat(BeerPayloadCache.acceptsGzip("gzip")).isTrue();
+        assertThat(BeerPayloadCache.acceptsGzip("br;q=1.0, gzip;q=0.8")).isTrue();
+        assertThat(BeerPayloadCache.acceptsGzip("*")).isTrue();
+        assertThat(BeerPayloadCache.acceptsGzip("gzip;q=0, *")).isFalse();
+        assertThat(BeerPayloadCache.acceptsGzip("identity")).isFalse();
+        assertThat(BeerPayloadCache.acceptsGzip(null)).isFalse();
+    }
+
+    private static BeerDto beer(UUID id, int version, String beerName) {
+        return BeerDto.builder()
+            .id(id)
+            .version(version)
+            .beerName(beerName)
+            .beerStyle(BeerStyleEnum.IPA)
+            .upc(337010000001L)
+            .price(new BigDecimal("12.95"))
+            .build();
+    }
+}
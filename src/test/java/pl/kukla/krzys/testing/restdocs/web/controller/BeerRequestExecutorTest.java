@@ -0,0 +1,51 @@
+package pl.kukla.krzys.testing.restdocs.web.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Krzysztof Kukla
+ */
+class BeerRequestExecutorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BeerRequestExecutor beerRequestExecutor = new BeerRequestExecutor(1, 1, meterRegistry);
+
+    @AfterEach
+    void tearDown() {
+        beerRequestExecutor.destroy();
+    }
+
+    @Test
+    void workIsRejectedWhenThreadAndQueueAreBusy() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> running = beerRequestExecutor.submit(() -> await(release));
+        CompletableFuture<String> queued = beerRequestExecutor.submit(() -> await(release));
+
+        assertThatThrownBy(() -> beerRequestExecutor.submit(() -> "rejected"))
+            .isInstanceOf(RejectedExecutionException.class);
+
+        release.countDown();
+        assertThat(running.get()).isEqualTo("done");
+        assertThat(queued.get()).isEqualTo("done");
+        assertThat(meterRegistry.get("beer.request.execution").timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("beer.request.queue.wait").timer().count()).isEqualTo(2);
+    }
+
+    private String await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "done";
+    }
+}
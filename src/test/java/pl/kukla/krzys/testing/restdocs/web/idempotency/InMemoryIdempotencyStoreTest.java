@@ -0,0 +1,87 @@
+package pl.kukla.krzys.testing.restdocs.web.idempotency;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Krzysztof Kukla
+ */
+class InMemoryIdempotencyStoreTest {
+
+    private static final IdempotentResponse CREATED = new IdempotentResponse(201, Map.of(), false);
+
+    private final InMemoryIdempotencyStore idempotencyStore = new InMemoryIdempotencyStore(100, Duration.ofMinutes(1));
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @Test
+    void retryIsReplayedWithoutExecution() {
+        IdempotentResponse executed = idempotencyStore.execute("key", "body", this::create);
+
+        IdempotentResponse replayed = idempotencyStore.execute("key", "body", this::create);
+
+        assertThat(executed).isEqualTo(CREATED);
+        assertThat(replayed).isEqualTo(CREATED.replayed());
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void concurrentDuplicateWaitsForFirstRequest() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<IdempotentResponse> first = CompletableFuture.supplyAsync(() ->
+            idempotencyStore.execute("key", "body", () -> {
+                started.countDown();
+                await(release);
+                return create();
+            }));
+        started.await();
+
+        CompletableFuture<IdempotentResponse> duplicate = CompletableFuture.supplyAsync(() ->
+            idempotencyStore.execute("key", "body", this::create));
+        release.countDown();
+
+        assertThat(first.get()).isEqualTo(CREATED);
+        assertThat(duplicate.get()).isEqualTo(CREATED.replayed());
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void failedRequestIsNotRemembered() {
+        assertThatThrownBy(() -> idempotencyStore.execute("key", "body", () -> {
+            throw new IllegalStateException("database is down");
+        })).isInstanceOf(IllegalStateException.class);
+
+        idempotencyStore.execute("key", "body", this::create);
+
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void keyCanNotBeReusedForOtherBody() {
+        idempotencyStore.execute("key", "body", this::create);
+
+        assertThatThrownBy(() -> idempotencyStore.execute("key", "other body", this::create))
+            .isInstanceOf(IdempotencyKeyReusedException.class);
+    }
+
+    private IdempotentResponse create() {
+        executions.incrementAndGet();
+        return CREATED;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package pl.kukla.krzys.testing.restdocs.web.mapper;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Krzysztof Kukla
+ */
+//property based comparison with the original conversion (through ts.toLocalDateTime() and Timestamp.valueOf)
+//every zone known to JVM is checked around each of its DST transitions and on random dates from year 1 to 9999
+class DateMapperTest {
+
+    private static final long SEED = 20200115L;
+    private static final int RANDOM_SAMPLES_PER_ZONE = 200;
+    private static final long MIN_EPOCH_SECOND = OffsetDateTime.of(1, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC).toEpochSecond();
+    private static final long MAX_EPOCH_SECOND = OffsetDateTime.of(9999, 12, 31, 0, 0, 0, 0, ZoneOffset.UTC).toEpochSecond();
+    //around transition: exact change, one hour (usual DST shift) and edge of fast path safety margin
+    private static final long[] TRANSITION_DELTAS = {-129601, -129600, -7201, -3601, -3600, -1, 0, 1, 3599, 3600, 7200, 129600};
+
+    private final TimeZone defaultTimeZone = TimeZone.getDefault();
+
+    @AfterEach
+    void tearDown() {
+        TimeZone.setDefault(defaultTimeZone);
+    }
+
+    @Test
+    void nullIsMappedToNull() {
+        DateMapper dateMapper = new DateMapper();
+
+        assertThat(dateMapper.asOffsetDateTime(null)).isNull();
+        assertThat(dateMapper.asTimestamp(null)).isNull();
+    }
+
+    @Test
+    void conversionIsIdenticalToOriginalOneInEveryZone() {
+        Random random = new Random(SEED);
+
+        for (String zone : ZoneId.getAvailableZoneIds()) {
+            TimeZone timeZone = TimeZone.getTimeZone(zone);
+            if (!timeZone.getID().equals(zone)) {
+                //zone unknown to legacy java.util.TimeZone, original conversion could not run in it
+                continue;
+            }
+            TimeZone.setDefault(timeZone);
+            DateMapper dateMapper = new DateMapper();
+            ZoneRules rules = ZoneId.of(zone).getRules();
+
+            for (ZoneOffsetTransition transition : transitionsOf(rules)) {
+                for (long delta : TRANSITION_DELTAS) {
+                    int nanos = random.nextInt(1_000_000_000);
+                    assertSameOffsetDateTime(dateMapper, zone, transition.toEpochSecond() + delta, nanos);
+                    //wall clocks just before and after the change - they fall into DST gap or overlap
+                    assertSameTimestamp(dateMapper, zone, transition.getDateTimeBefore().toEpochSecond(ZoneOffset.UTC) + delta,
+                        nanos);
+                    assertSameTimestamp(dateMapper, zone, transition.getDateTimeAfter().toEpochSecond(ZoneOffset.UTC) + delta,
+                        nanos);
+                }
+            }
+
+            for (int i = 0; i < RANDOM_SAMPLES_PER_ZONE; i++) {
+                long epochSecond = MIN_EPOCH_SECOND + (long) (random.nextDouble() * (MAX_EPOCH_SECOND - MIN_EPOCH_SECOND));
+                int nanos = random.nextInt(1_000_000_000);
+                assertSameOffsetDateTime(dateMapper, zone, epochSecond, nanos);
+                assertSameTimestamp(dateMapper, zone, epochSecond, nanos);
+            }
+        }
+    }
+
+    private Iterable<ZoneOffsetTransition> transitionsOf(ZoneRules rules) {
+        List<ZoneOffsetTransition> transitions = new ArrayList<>();
+        ZoneOffsetTransition transition = rules.nextTransition(Instant.parse("1899-01-01T00:00:00Z"));
+        while (transition != null && transition.getInstant().isBefore(Instant.parse("2039-01-01T00:00:00Z"))) {
+            transitions.add(transition);
+            transition = rules.nextTransition(transition.getInstant());
+        }
+        return transitions;
+    }
+
+    private void assertSameOffsetDateTime(DateMapper dateMapper, String zone, long epochSecond, int nanos) {
+        Timestamp timestamp = new Timestamp(epochSecond * 1000);
+        timestamp.setNanos(nanos);
+
+        assertThat(dateMapper.asOffsetDateTime(timestamp))
+            .as("%s in %s", timestamp, zone)
+            .isEqualTo(originalAsOffsetDateTime(timestamp));
+    }
+
+    private void assertSameTimestamp(DateMapper dateMapper, String zone, long epochSecond, int nanos) {
+        OffsetDateTime offsetDateTime = OffsetDateTime.ofInstant(Instant.ofEpochSecond(epochSecond, nanos), ZoneOffset.UTC);
+
+        assertThat(dateMapper.asTimestamp(offsetDateTime))
+            .as("%s in %s", offsetDateTime, zone)
+            .isEqualTo(originalAsTimestamp(offsetDateTime));
+    }
+
+    private static OffsetDateTime originalAsOffsetDateTime(Timestamp ts) {
+        return OffsetDateTime.of(ts.toLocalDateTime().getYear(), ts.toLocalDateTime().getMonthValue(),
+            ts.toLocalDateTime().getDayOfMonth(), ts.toLocalDateTime().getHour(), ts.toLocalDateTime().getMinute(),
+            ts.toLocalDateTime().getSecond(), ts.toLocalDateTime().getNano(), ZoneOffset.UTC);
+    }
+
+    private static Timestamp originalAsTimestamp(OffsetDateTime offsetDateTime) {
+        return Timestamp.valueOf(offsetDateTime.atZoneSameInstant(ZoneOffset.UTC).toLocalDateTime());
+    }
+}